@@ -0,0 +1,141 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a sequential consumer loop, on Channel.receive(), and a sequential producer loop, on
+ * Channel.sendAndAwaitWritable(), for each of many channels over pairs of LoopbackConnections.  Loops run on virtual
+ * threads when the JVM has them, platform threads otherwise.
+ *
+ * Arguments: connections, channels per connection, messages per channel, message size
+ */
+public class BlockingConsumerBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(BlockingConsumerBenchmark.class);
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private final int connectionCount;
+    private final int channelsPerConnection;
+    private final int messagesPerChannel;
+    private final int messageSize;
+    private final Method startVirtualThread;
+
+    public BlockingConsumerBenchmark(int connectionCount, int channelsPerConnection, int messagesPerChannel, int messageSize) {
+        this.connectionCount = connectionCount;
+        this.channelsPerConnection = channelsPerConnection;
+        this.messagesPerChannel = messagesPerChannel;
+        this.messageSize = messageSize;
+        this.startVirtualThread = findStartVirtualThread();
+    }
+
+    private static Method findStartVirtualThread() {
+        try {
+            return Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    private void start(String name, Runnable task) throws Exception {
+        if (this.startVirtualThread != null) {
+            this.startVirtualThread.invoke(null, task);
+        } else {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void run() throws Exception {
+        List<LoopbackConnection> connections = new ArrayList<>();
+        List<ChannelPair> channels = new ArrayList<>();
+        for (int c = 0; c < this.connectionCount; c++) {
+            Configuration cfg = new Configuration();
+            cfg.setPairingCode("blocking" + c);
+            LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+            connection.initializeOffer();
+            if (!connection.awaitOpen(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new Exception(String.format("Connection %d not open", c));
+            }
+            connections.add(connection);
+            for (int i = 0; i < this.channelsPerConnection; i++) {
+                ChannelPair pair = ChannelPair.open(connection, "consumer" + i, TIMEOUT_SECONDS * 1000);
+                pair.remote.enableReceiveQueue(Channel.DEFAULT_RECEIVE_QUEUE_CAPACITY);
+                channels.add(pair);
+            }
+        }
+        logger.info("Opened {} channels on {} connections", channels.size(), connections.size());
+
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong received = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(channels.size());
+        long start = System.nanoTime();
+        for (ChannelPair pair : channels) {
+            this.start("consumer-" + pair.remote.getName(), () -> {
+                try {
+                    for (int i = 0; i < this.messagesPerChannel; i++) {
+                        ChannelMessage message = pair.remote.receive(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        if (message == null) {
+                            errors.incrementAndGet();
+                            break;
+                        }
+                        latency.record(System.nanoTime() - message.getData().getLong());
+                        received.incrementAndGet();
+                    }
+                } catch (InterruptedException ex) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+            this.start("producer-" + pair.local.getName(), () -> {
+                ByteBuffer message = ByteBuffer.allocate(Math.max(this.messageSize, Long.BYTES));
+                try {
+                    for (int i = 0; i < this.messagesPerChannel; i++) {
+                        message.clear();
+                        message.putLong(0, System.nanoTime());
+                        pair.local.sendAndAwaitWritable(message);
+                    }
+                } catch (Exception ex) {
+                    logger.error("Error sending on channel {}", pair.local.getName(), ex);
+                    errors.incrementAndGet();
+                }
+            });
+        }
+        done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long dropped = 0;
+        for (ChannelPair pair : channels) {
+            dropped += pair.remote.getDroppedReceivedMessages();
+        }
+        var threads = ManagementFactory.getThreadMXBean();
+        logger.info("{} {} consumers: {} messages in {} s, {} messages/sec, {} errors, {} dropped, " +
+                        "peak platform threads {}, latency {}", channels.size(),
+                this.startVirtualThread != null ? "virtual thread" : "platform thread", received.get(), Math.round(seconds * 10) / 10.0,
+                Math.round(received.get() / seconds), errors.get(), dropped, threads.getPeakThreadCount(), latency.toMicrosString());
+        for (LoopbackConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connectionCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int channelsPerConnection = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int messagesPerChannel = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int messageSize = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        new BlockingConsumerBenchmark(connectionCount, channelsPerConnection, messagesPerChannel, messageSize).run();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,129 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures throughput of sending the same stream to 10, 50 and 100 peers, each a LoopbackConnection pair, with a
+ * BroadcastGroup and with Channel.send(String) per peer.  Messages are JSON updates, like a hub would publish.
+ *
+ * Arguments: seconds per run, message size, bufferedAmount limit of broadcast members
+ */
+public class BroadcastBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(BroadcastBenchmark.class);
+    private static final int[] PEER_COUNTS = {10, 50, 100};
+    private static final long TIMEOUT_MILLIS = 30000;
+
+    private final int seconds;
+    private final int messageSize;
+    private final long bufferedAmountLimit;
+
+    public BroadcastBenchmark(int seconds, int messageSize, long bufferedAmountLimit) {
+        this.seconds = seconds;
+        this.messageSize = messageSize;
+        this.bufferedAmountLimit = bufferedAmountLimit;
+    }
+
+    private String createMessage(long sequence) {
+        JSONObject message = new JSONObject();
+        message.put("sequence", sequence);
+        message.put("timestamp", System.currentTimeMillis());
+        message.put("payload", "x".repeat(Math.max(this.messageSize - 64, 0)));
+        return message.toString();
+    }
+
+    private void run(int peerCount) throws Exception {
+        List<LoopbackConnection> connections = new ArrayList<>();
+        List<ChannelPair> peers = new ArrayList<>();
+        LongAdder received = new LongAdder();
+        for (int i = 0; i < peerCount; i++) {
+            Configuration cfg = new Configuration();
+            cfg.setPairingCode("broadcast" + i);
+            LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+            connection.initializeOffer();
+            connections.add(connection);
+            ChannelPair pair = ChannelPair.open(connection, "broadcast", TIMEOUT_MILLIS);
+            pair.remote.addChannelListener(new ChannelListener() {
+                @Override
+                public void onStateChange(State state) {
+                }
+                @Override
+                public void onMessage(String message) {
+                }
+                @Override
+                public void onMessage(ChannelMessage message) {
+                    received.increment();
+                }
+            });
+            peers.add(pair);
+        }
+
+        // baseline: send(String) of each peer encodes the message again
+        long sequence = 0;
+        long start = System.nanoTime();
+        long end = start + this.seconds * 1000_000_000L / 2;
+        long skipped = 0;
+        while (System.nanoTime() < end) {
+            String message = this.createMessage(sequence++);
+            for (ChannelPair pair : peers) {
+                if (pair.local.getBufferedAmount() > this.bufferedAmountLimit) {
+                    skipped++;
+                    continue;
+                }
+                pair.local.send(message);
+            }
+        }
+        this.report(peerCount, "send per peer", sequence, start, received, skipped);
+
+        BroadcastGroup group = new BroadcastGroup(this.bufferedAmountLimit, BroadcastGroup.SlowMemberPolicy.SKIP);
+        for (ChannelPair pair : peers) {
+            group.add(pair.local);
+        }
+        Thread.sleep(1000);
+        received.reset();
+        sequence = 0;
+        start = System.nanoTime();
+        end = start + this.seconds * 1000_000_000L / 2;
+        while (System.nanoTime() < end) {
+            group.broadcast(this.createMessage(sequence++));
+        }
+        skipped = 0;
+        long maxLag = 0;
+        for (var member : group.getMembers()) {
+            skipped += member.getSkippedMessages();
+            maxLag = Math.max(maxLag, member.getMaxLag());
+        }
+        this.report(peerCount, "BroadcastGroup", sequence, start, received, skipped);
+        logger.info("{} peers: {}, max member lag {} bytes", peerCount, group, maxLag);
+
+        for (LoopbackConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void report(int peerCount, String name, long messages, long start, LongAdder received, long skipped) throws Exception {
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        // let in-flight messages arrive
+        Thread.sleep(1000);
+        logger.info("{} peers, {}: {} messages/sec, {} deliveries/sec, {} MB/s delivered, {} skipped",
+                peerCount, name, Math.round(messages / elapsed), Math.round(received.sum() / elapsed),
+                Math.round(received.sum() * (double) this.messageSize / elapsed / 1e5) / 10.0, skipped);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int messageSize = args.length > 1 ? Integer.parseInt(args[1]) : 512;
+        long bufferedAmountLimit = args.length > 2 ? Long.parseLong(args[2]) : BroadcastGroup.DEFAULT_BUFFERED_AMOUNT_LIMIT;
+        BroadcastBenchmark benchmark = new BroadcastBenchmark(seconds, messageSize, bufferedAmountLimit);
+        for (int peerCount : PEER_COUNTS) {
+            benchmark.run(peerCount);
+        }
+        System.exit(0);
+    }
+}
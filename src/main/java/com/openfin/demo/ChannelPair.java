@@ -0,0 +1,66 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.Channel;
+import com.openfin.webrtc.ConnectionListener;
+import com.openfin.webrtc.LoopbackConnection;
+import com.openfin.webrtc.ReliabilityOptions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Both ends of a Channel between a pair of LoopbackConnections, for benchmarks
+ */
+public class ChannelPair {
+    public final Channel local;
+    public final Channel remote;
+
+    private ChannelPair(Channel local, Channel remote) {
+        this.local = local;
+        this.remote = remote;
+    }
+
+    /**
+     * Create a channel on the offering side of the pair and wait until it is open on both sides.
+     */
+    public static ChannelPair open(LoopbackConnection connection, String name, long timeoutMillis) throws Exception {
+        return open(connection, name, null, timeoutMillis);
+    }
+
+    /**
+     * Create a channel with delivery options on the offering side of the pair and wait until it is open on both sides.
+     */
+    public static ChannelPair open(LoopbackConnection connection, String name, ReliabilityOptions reliability, long timeoutMillis) throws Exception {
+        CompletableFuture<Channel> remoteChannel = new CompletableFuture<>();
+        ConnectionListener listener = new ConnectionListener() {
+            @Override
+            public void onStateChange(State state) {
+            }
+            @Override
+            public void onChannel(Channel channel) {
+                if (name.equals(channel.getName())) {
+                    remoteChannel.complete(channel);
+                }
+            }
+        };
+        connection.getPeer().addConnectionListener(listener);
+        try {
+            Channel local = connection.createChannel(name, reliability);
+            Channel remote = remoteChannel.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            awaitOpen(local, timeoutMillis);
+            awaitOpen(remote, timeoutMillis);
+            return new ChannelPair(local, remote);
+        } finally {
+            connection.getPeer().removeConnectionListener(listener);
+        }
+    }
+
+    static void awaitOpen(Channel channel, long timeoutMillis) throws Exception {
+        try {
+            channel.getOpenFuture().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new Exception(String.format("Channel %s not open", channel.getName()), ex);
+        }
+    }
+}
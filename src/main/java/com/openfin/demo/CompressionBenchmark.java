@@ -0,0 +1,78 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.ChannelCompressor;
+import com.openfin.webrtc.CompressionOptions;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Measures CPU cost vs bytes saved of Channel compression for messages in the shape sent by WebRTCPerf
+ */
+public class CompressionBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(CompressionBenchmark.class);
+
+    private static final int[] MESSAGE_SIZES = { 64, 256, 1024, 4096, 16384, 65536 };
+    private static final String[] WORDS = { "bid", "ask", "last", "EURUSD", "GBPUSD", "USDJPY", "AAPL", "MSFT", "qty", "px" };
+    private static final byte[] DICTIONARY = "{\"payload\":\"\",\"id\":bid ask last EURUSD GBPUSD USDJPY AAPL MSFT qty px"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final Random random = new Random(8);
+
+    private byte[] createMessage(int size, long id) {
+        StringBuilder payload = new StringBuilder(size);
+        while (payload.length() < size) {
+            payload.append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(random.nextInt(100000)).append(' ');
+        }
+        payload.setLength(size);
+        JSONObject message = new JSONObject();
+        message.put("payload", payload.toString());
+        message.put("id", id);
+        return message.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void run(int size, byte[] dictionary, int iterations) throws Exception {
+        CompressionOptions options = new CompressionOptions();
+        options.setThreshold(0);
+        options.setDictionary(dictionary);
+        ChannelCompressor compressor = new ChannelCompressor(options);
+        ByteBuffer[] messages = new ByteBuffer[64];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = ByteBuffer.wrap(createMessage(size, i));
+        }
+        // warm up
+        for (int i = 0; i < iterations; i++) {
+            compressor.decode(compressor.encode(messages[i % messages.length], true));
+        }
+        long encodeNanos = 0, decodeNanos = 0;
+        long payloadBytes = compressor.getPayloadBytes(), frameBytes = compressor.getFrameBytes();
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            ByteBuffer frame = compressor.encode(messages[i % messages.length], true);
+            long encoded = System.nanoTime();
+            compressor.decode(frame);
+            decodeNanos += System.nanoTime() - encoded;
+            encodeNanos += encoded - start;
+        }
+        payloadBytes = compressor.getPayloadBytes() - payloadBytes;
+        frameBytes = compressor.getFrameBytes() - frameBytes;
+        logger.info("size {} dictionary {} ratio {} saved {} bytes/msg encode {} ns decode {} ns",
+                size, dictionary != null, Math.round(frameBytes * 1000.0 / payloadBytes) / 1000.0,
+                Math.round((payloadBytes - frameBytes) * 10.0 / iterations) / 10.0,
+                encodeNanos / iterations, decodeNanos / iterations);
+        compressor.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        CompressionBenchmark benchmark = new CompressionBenchmark();
+        for (int size : MESSAGE_SIZES) {
+            benchmark.run(size, null, iterations);
+            benchmark.run(size, DICTIONARY, iterations);
+        }
+    }
+}
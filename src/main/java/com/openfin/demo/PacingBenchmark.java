@@ -0,0 +1,85 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sends like WebRTCPerf.spam(), a second's worth of messages at once every second, with and without pacing by
+ * ChannelRateLimiter, and reports one-way latency and jitter (p99 - p50) of the messages.  Latency of paced messages
+ * includes the time they are queued by the rate limiter.
+ *
+ * Arguments: messages per second, message size, seconds per run
+ */
+public class PacingBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(PacingBenchmark.class);
+
+    private final int mps;
+    private final int messageSize;
+    private final int seconds;
+
+    public PacingBenchmark(int mps, int messageSize, int seconds) {
+        this.mps = mps;
+        this.messageSize = messageSize;
+        this.seconds = seconds;
+    }
+
+    private void run(LoopbackConnection connection, boolean paced) throws Exception {
+        ChannelPair channels = ChannelPair.open(connection, paced ? "paced" : "burst", 30000);
+        if (paced) {
+            RateLimitOptions options = new RateLimitOptions();
+            options.setMessagesPerSecond(this.mps);
+            options.setMessageBurst(Math.max(this.mps / 100, 1));
+            options.setMaxQueuedMessages(this.mps * 2);
+            channels.local.setRateLimit(options);
+        }
+        LatencyHistogram latency = new LatencyHistogram();
+        channels.remote.addChannelListener(new ChannelListener() {
+            @Override
+            public void onStateChange(State state) {
+            }
+            @Override
+            public void onMessage(String message) {
+            }
+            @Override
+            public void onMessage(ChannelMessage message) {
+                latency.record(System.nanoTime() - message.getData().getLong());
+            }
+        });
+
+        ByteBuffer message = ByteBuffer.allocate(Math.max(this.messageSize, Long.BYTES));
+        for (int second = 0; second < this.seconds; second++) {
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < this.mps; i++) {
+                message.clear();
+                message.putLong(0, System.nanoTime());
+                channels.local.send(message);
+            }
+            Thread.sleep(Math.max(1000 - (System.currentTimeMillis() - start), 0));
+        }
+        Thread.sleep(1000);
+        long jitter = latency.getValueAtPercentile(99) - latency.getValueAtPercentile(50);
+        logger.info("{}: jitter {} us, latency {}", paced ? "paced" : "burst", jitter / 1000, latency.toMicrosString());
+        if (paced) {
+            logger.info("rate limiter {}", channels.local.getRateLimiter());
+        }
+        channels.local.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int mps = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int messageSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode("pacingBenchmark");
+        LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+        connection.initializeOffer();
+        PacingBenchmark benchmark = new PacingBenchmark(mps, messageSize, seconds);
+        benchmark.run(connection, false);
+        benchmark.run(connection, true);
+        connection.close();
+        System.exit(0);
+    }
+}
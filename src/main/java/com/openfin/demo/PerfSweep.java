@@ -0,0 +1,299 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs every combination of message size, rate per channel, channel count, channel reliability and batching between a
+ * pair of LoopbackConnections, instead of typing sizes and rates into WebRTCPerf.  Each run appends a JSON line with its
+ * parameters and results to the results file.  Runs are compared with the same runs of a baseline, the results file of
+ * an earlier sweep, and a throughput drop or p99 latency growth beyond the threshold is flagged as a regression.  The
+ * exit code is 1 if any run regressed.
+ *
+ * Channel does not batch messages, so batching packs messages into frames of up to 16KB as [length][message], sent when
+ * full or when the sender would wait for the next message.
+ *
+ * Reliabilities: reliable, unordered, or lossy for unordered without retransmissions.
+ *
+ * Arguments: results file, baseline file or "-", threshold percent, seconds per run, comma separated message sizes,
+ * rates per channel (0 for as fast as possible), channel counts, reliabilities, batching (off, on)
+ */
+public class PerfSweep {
+    private final static Logger logger = LoggerFactory.getLogger(PerfSweep.class);
+    private static final int BATCH_BYTES = 16 * 1024;
+    private static final long TIMEOUT_MILLIS = 30000;
+    private static final long DRAIN_MILLIS = 1000;
+
+    private final LoopbackConnection connection;
+    private final int seconds;
+    private final BufferedWriter results;
+    private final Map<String, JSONObject> baseline;
+    private final double threshold;
+    private int runs;
+    private int regressions;
+
+    public PerfSweep(LoopbackConnection connection, int seconds, BufferedWriter results, Map<String, JSONObject> baseline, double threshold) {
+        this.connection = connection;
+        this.seconds = seconds;
+        this.results = results;
+        this.baseline = baseline;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Receiving side of a run, shared by its channels.  Every message starts with System.nanoTime() of the sender
+     */
+    private static class Receiver implements ChannelListener {
+        private final boolean batching;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder messages = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+
+        Receiver(boolean batching) {
+            this.batching = batching;
+        }
+
+        @Override
+        public void onStateChange(State state) {
+        }
+        @Override
+        public void onMessage(String message) {
+        }
+        @Override
+        public void onMessage(ChannelMessage message) {
+            ByteBuffer data = message.getData();
+            long now = System.nanoTime();
+            if (!this.batching) {
+                this.onMessage(now, data.getLong(data.position()), data.remaining());
+                return;
+            }
+            while (data.remaining() >= Integer.BYTES + Long.BYTES) {
+                int size = data.getInt();
+                this.onMessage(now, data.getLong(data.position()), size);
+                data.position(data.position() + size);
+            }
+        }
+
+        private void onMessage(long now, long sent, int size) {
+            this.latency.record(now - sent);
+            this.messages.increment();
+            this.bytes.add(size);
+        }
+    }
+
+    private static ReliabilityOptions createReliability(String reliability) {
+        ReliabilityOptions options = new ReliabilityOptions();
+        switch (reliability) {
+            case "reliable":
+                break;
+            case "unordered":
+                options.setOrdered(false);
+                break;
+            case "lossy":
+                options.setOrdered(false);
+                options.setMaxRetransmits(0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown reliability " + reliability);
+        }
+        return options;
+    }
+
+    /**
+     * Send messages until the end time, at the rate or as fast as the channel takes them
+     */
+    private Thread startSender(Channel channel, int messageSize, double rate, boolean batching, LongAdder sent) {
+        Thread thread = new Thread(() -> {
+            try {
+                ByteBuffer message = ByteBuffer.allocate(messageSize);
+                ByteBuffer batch = ByteBuffer.allocate(Math.max(BATCH_BYTES, Integer.BYTES + messageSize));
+                long start = System.nanoTime();
+                long end = start + this.seconds * 1000_000_000L;
+                long interval = rate > 0 ? (long) (1e9 / rate) : 0;
+                long next = start;
+                for (long now = start; now < end; now = System.nanoTime()) {
+                    if (interval > 0) {
+                        if (now < next) {
+                            flush(channel, batch);
+                            LockSupport.parkNanos(next - now);
+                            continue;
+                        }
+                        next += interval;
+                    }
+                    if (batching) {
+                        if (batch.remaining() < Integer.BYTES + messageSize) {
+                            flush(channel, batch);
+                        }
+                        batch.putInt(messageSize).putLong(batch.position(), System.nanoTime());
+                        batch.position(batch.position() + messageSize);
+                    } else {
+                        message.clear();
+                        message.putLong(0, System.nanoTime());
+                        channel.sendAndAwaitWritable(message);
+                    }
+                    sent.increment();
+                }
+                flush(channel, batch);
+            } catch (Exception ex) {
+                logger.error("Error sending on channel {}", channel.getName(), ex);
+            }
+        }, "PerfSweepSender-" + channel.getName());
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void flush(Channel channel, ByteBuffer batch) throws Exception {
+        if (batch.position() > 0) {
+            batch.flip();
+            channel.sendAndAwaitWritable(batch);
+            batch.clear();
+        }
+    }
+
+    private static String keyOf(JSONObject run) {
+        return String.format("size=%d rate=%s channels=%d reliability=%s batching=%b", run.getInt("size"),
+                run.getDouble("rate"), run.getInt("channels"), run.getString("reliability"), run.getBoolean("batching"));
+    }
+
+    private void run(int messageSize, double rate, int channelCount, String reliability, boolean batching) throws Exception {
+        int id = this.runs++;
+        Receiver receiver = new Receiver(batching);
+        LongAdder sent = new LongAdder();
+        List<ChannelPair> pairs = new ArrayList<>();
+        List<Thread> senders = new ArrayList<>();
+        try {
+            for (int c = 0; c < channelCount; c++) {
+                ChannelPair pair = ChannelPair.open(this.connection, String.format("sweep%d-%d", id, c),
+                        createReliability(reliability), TIMEOUT_MILLIS);
+                pair.remote.addChannelListener(receiver);
+                pairs.add(pair);
+            }
+            long start = System.nanoTime();
+            for (ChannelPair pair : pairs) {
+                senders.add(this.startSender(pair.local, messageSize, rate, batching, sent));
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            Thread.sleep(DRAIN_MILLIS);
+
+            JSONObject result = new JSONObject();
+            result.put("size", messageSize);
+            result.put("rate", rate);
+            result.put("channels", channelCount);
+            result.put("reliability", reliability);
+            result.put("batching", batching);
+            result.put("sent", sent.sum());
+            result.put("received", receiver.messages.sum());
+            result.put("messagesPerSecond", receiver.messages.sum() / elapsed);
+            result.put("bytesPerSecond", receiver.bytes.sum() / elapsed);
+            result.put("p50Micros", TimeUnit.NANOSECONDS.toMicros(receiver.latency.getValueAtPercentile(50)));
+            result.put("p99Micros", TimeUnit.NANOSECONDS.toMicros(receiver.latency.getValueAtPercentile(99)));
+            result.put("maxMicros", TimeUnit.NANOSECONDS.toMicros(receiver.latency.getMax()));
+            this.results.write(result.toString());
+            this.results.newLine();
+            this.results.flush();
+            this.compare(result);
+        } finally {
+            for (ChannelPair pair : pairs) {
+                pair.local.close();
+            }
+        }
+    }
+
+    private void compare(JSONObject result) {
+        String key = keyOf(result);
+        double throughput = result.getDouble("messagesPerSecond");
+        long p99 = result.getLong("p99Micros");
+        JSONObject base = this.baseline.get(key);
+        if (base == null) {
+            logger.info("{}: {} messages/s p99 {} us, no baseline", key, Math.round(throughput), p99);
+            return;
+        }
+        double baseThroughput = base.getDouble("messagesPerSecond");
+        long baseP99 = base.getLong("p99Micros");
+        double throughputChange = baseThroughput > 0 ? (throughput - baseThroughput) / baseThroughput * 100 : 0;
+        double p99Change = baseP99 > 0 ? (double) (p99 - baseP99) / baseP99 * 100 : 0;
+        String report = String.format("%s: %.0f messages/s (%+.1f%%) p99 %d us (%+.1f%%)", key, throughput,
+                throughputChange, p99, p99Change);
+        if (throughputChange < -this.threshold || p99Change > this.threshold) {
+            this.regressions++;
+            logger.warn("REGRESSION {}", report);
+        } else {
+            logger.info(report);
+        }
+    }
+
+    private static Map<String, JSONObject> readBaseline(String file) throws Exception {
+        Map<String, JSONObject> baseline = new HashMap<>();
+        if (!"-".equals(file)) {
+            for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    JSONObject run = new JSONObject(line);
+                    baseline.put(keyOf(run), run);
+                }
+            }
+        }
+        return baseline;
+    }
+
+    private static String[] list(String[] args, int index, String defaultValue) {
+        return (args.length > index ? args[index] : defaultValue).split(",");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path resultsFile = Paths.get(args.length > 0 ? args[0] : "perf-sweep.jsonl");
+        Map<String, JSONObject> baseline = readBaseline(args.length > 1 ? args[1] : "-");
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        String[] sizes = list(args, 4, "64,1024,16384");
+        String[] rates = list(args, 5, "1000,0");
+        String[] channelCounts = list(args, 6, "1,4");
+        String[] reliabilities = list(args, 7, "reliable,lossy");
+        String[] batchings = list(args, 8, "off,on");
+
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode("perfSweep");
+        LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+        connection.initializeOffer();
+        int regressions;
+        try (BufferedWriter results = Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8)) {
+            PerfSweep sweep = new PerfSweep(connection, seconds, results, baseline, threshold);
+            for (String size : sizes) {
+                for (String rate : rates) {
+                    for (String channelCount : channelCounts) {
+                        for (String reliability : reliabilities) {
+                            for (String batching : batchings) {
+                                sweep.run(Math.max(Integer.parseInt(size), Long.BYTES), Double.parseDouble(rate),
+                                        Integer.parseInt(channelCount), reliability, "on".equals(batching));
+                            }
+                        }
+                    }
+                }
+            }
+            regressions = sweep.regressions;
+            logger.info("{} runs written to {}, {} regressions beyond {}%", sweep.runs, resultsFile, regressions, threshold);
+        } finally {
+            connection.close();
+        }
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+}
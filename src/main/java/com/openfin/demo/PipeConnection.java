@@ -0,0 +1,126 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.Configuration;
+import com.openfin.webrtc.Connection;
+import com.openfin.webrtc.SetupPhase;
+import dev.onvoid.webrtc.RTCSdpType;
+import dev.onvoid.webrtc.RTCSessionDescription;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Consumer;
+
+/**
+ * Connection signaled over a pipe, like standard input and output of a child process, for benchmarks between two
+ * JVMs.  Offer and answer are sent once ICE gathering completes, with shared memory negotiated like LocalConnection.
+ */
+class PipeConnection extends Connection {
+    private final static Logger logger = LoggerFactory.getLogger(PipeConnection.class);
+
+    private final boolean offerer;
+    private final Consumer<JSONObject> signal;
+    private JSONObject sharedMemoryAccepted;    // guarded by this
+    private boolean answerCreated;
+    private boolean descriptionSent;
+
+    /**
+     * @param signal sends a message to the peer, which passes it to onSignal
+     */
+    PipeConnection(Configuration configuration, boolean offerer, Consumer<JSONObject> signal) {
+        super(configuration);
+        this.offerer = offerer;
+        this.signal = signal;
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        this.createPeerConnection(null);
+    }
+
+    @Override
+    protected boolean isOfferer() {
+        return this.offerer;
+    }
+
+    @Override
+    public void initializeOffer() throws Exception {
+        super.initializeOffer();
+        if (this.isGatheringComplete()) {
+            this.sendDescription();
+        }
+    }
+
+    @Override
+    protected void makeOffer() throws Exception {
+        var offer = this.createOfferPayload();
+        var sharedMemory = this.createSharedMemoryOffer();
+        if (sharedMemory != null) {
+            offer.put("sharedMemory", sharedMemory);
+        }
+        this.signal.accept(offer);
+        this.markSetupPhase(SetupPhase.DESCRIPTION_SENT);
+    }
+
+    private void makeAnswer() {
+        JSONObject description = new JSONObject();
+        description.put("type", Connection.SDPAnswer);
+        description.put("sdp", this.getLocalSdp());
+        JSONObject answer = new JSONObject();
+        answer.put("description", description);
+        if (this.sharedMemoryAccepted != null) {
+            answer.put("sharedMemory", this.sharedMemoryAccepted);
+        }
+        this.signal.accept(answer);
+        this.markSetupPhase(SetupPhase.DESCRIPTION_SENT);
+    }
+
+    @Override
+    protected void onLastIceCandidate() {
+        super.onLastIceCandidate();
+        this.sendDescription();
+    }
+
+    private synchronized void sendDescription() {
+        if (this.descriptionSent || (this.offerer ? !this.isOfferInitialized() : !this.answerCreated)) {
+            return;
+        }
+        this.descriptionSent = true;
+        if (this.offerer) {
+            try {
+                this.makeOffer();
+            } catch (Exception ex) {
+                logger.error("Error creating offer", ex);
+            }
+        } else {
+            this.makeAnswer();
+        }
+    }
+
+    /**
+     * Process a message sent by the peer
+     */
+    void onSignal(JSONObject message) {
+        JSONObject description = message.getJSONObject("description");
+        if (Connection.SDPOffer.equals(description.getString("type"))) {
+            try {
+                synchronized (this) {
+                    this.sharedMemoryAccepted = this.acceptSharedMemory(message.optJSONObject("sharedMemory"));
+                }
+                this.setRemoteDescription(new RTCSessionDescription(RTCSdpType.OFFER, description.getString("sdp")));
+                this.createAnswer();
+                synchronized (this) {
+                    this.answerCreated = true;
+                }
+                if (this.isGatheringComplete()) {
+                    this.sendDescription();
+                }
+            } catch (Exception ex) {
+                logger.error("Error answering offer", ex);
+            }
+        } else {
+            this.onSharedMemoryAnswer(message.optJSONObject("sharedMemory"));
+            this.onAnswer(description);
+        }
+    }
+}
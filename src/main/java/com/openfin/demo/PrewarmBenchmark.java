@@ -0,0 +1,63 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time from initializeOffer to connected of LoopbackConnection pairs, with and without pre-gathered
+ * candidates of RTCOptions iceCandidatePoolSize.  The offer is initialized a while after the pair is created, like
+ * an application that creates its connection at startup and offers when it needs it.
+ *
+ * Arguments: iterations, milliseconds between creating a pair and initializeOffer
+ */
+public class PrewarmBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(PrewarmBenchmark.class);
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final int iterations;
+    private final long offerDelayMillis;
+
+    public PrewarmBenchmark(int iterations, long offerDelayMillis) {
+        this.iterations = iterations;
+        this.offerDelayMillis = offerDelayMillis;
+    }
+
+    private void run(String name, int iceCandidatePoolSize) throws Exception {
+        LatencyHistogram offerToConnected = new LatencyHistogram();
+        int errors = 0;
+        for (int i = 0; i < this.iterations; i++) {
+            Configuration cfg = new Configuration();
+            cfg.setPairingCode(name + i);
+            cfg.setRTCOptions(RTCOptions.builder().iceCandidatePoolSize(iceCandidatePoolSize).build());
+            LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+            try {
+                Thread.sleep(this.offerDelayMillis);
+                long start = System.nanoTime();
+                connection.initializeOffer();
+                if (!connection.awaitOpen(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    logger.error("{} iteration {} not connected, {}", name, i, connection.getSetupTrace());
+                    errors++;
+                    continue;
+                }
+                offerToConnected.record(connection.getSetupTrace().getTimestamp(SetupPhase.CONNECTED) - start);
+            } finally {
+                connection.close();
+            }
+        }
+        logger.info("{}: {} iterations, {} errors, offer to connected p50 {} p90 {} max {} us",
+                name, this.iterations, errors, offerToConnected.getValueAtPercentile(50) / 1000,
+                offerToConnected.getValueAtPercentile(90) / 1000, offerToConnected.getMax() / 1000);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        long offerDelayMillis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        PrewarmBenchmark benchmark = new PrewarmBenchmark(iterations, offerDelayMillis);
+        benchmark.run("noPool", 0);
+        benchmark.run("pool", 1);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import dev.onvoid.webrtc.RTCDataChannelBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures time and bytes allocated per message of the Channel receive path, for listeners reading the view, the
+ * lazily decoded text and onMessage(String), with heap and direct buffers.
+ */
+public class ReceiveBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(ReceiveBenchmark.class);
+
+    private final Channel channel;
+    private final com.sun.management.ThreadMXBean threadBean;
+    private long checksum;
+
+    public ReceiveBenchmark(Channel channel) {
+        this.channel = channel;
+        this.threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    private static ByteBuffer heap(byte[] bytes) {
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    }
+
+    private void measure(String name, ChannelListener listener, ByteBuffer data, int iterations) {
+        this.channel.addChannelListener(listener);
+        RTCDataChannelBuffer buffer = new RTCDataChannelBuffer(data, false);
+        for (int i = 0; i < iterations; i++) {
+            this.channel.onMessage(buffer);
+        }
+        long thread = Thread.currentThread().getId();
+        long allocated = this.threadBean.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            this.channel.onMessage(buffer);
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = this.threadBean.getThreadAllocatedBytes(thread) - allocated;
+        this.channel.removeChannelListener(listener);
+        logger.info("{} {} {} bytes: {} ns/msg {} bytes allocated/msg", name, data.isDirect() ? "direct" : "heap",
+                data.remaining(), Math.round(elapsed * 10.0 / iterations) / 10.0, Math.round(allocated * 10.0 / iterations) / 10.0);
+    }
+
+    private void measureAll(int iterations) {
+        ChannelListener view = new ChannelListener() {
+            @Override
+            public void onStateChange(State state) {
+            }
+            @Override
+            public void onMessage(String message) {
+            }
+            @Override
+            public void onMessage(ChannelMessage message) {
+                checksum += message.getData().get(message.size() - 1);
+            }
+        };
+        ChannelListener text = new ChannelListener() {
+            @Override
+            public void onStateChange(State state) {
+            }
+            @Override
+            public void onMessage(String message) {
+                checksum += message.length();
+            }
+        };
+        for (int size : new int[] { 64, 1024, 16384 }) {
+            byte[] bytes = String.format("%0" + size + "d", 8).getBytes(StandardCharsets.UTF_8);
+            for (ByteBuffer data : new ByteBuffer[] { heap(bytes), direct(bytes) }) {
+                measure("view", view, data, iterations);
+                measure("text", text, data, iterations);
+            }
+        }
+        logger.debug("checksum {}", checksum);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode("receiveBenchmark");
+        LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+        // messages are injected into the channel directly, so the connection does not have to be established
+        ReceiveBenchmark benchmark = new ReceiveBenchmark(connection.createChannel("receive"));
+        benchmark.measureAll(iterations);
+        connection.close();
+    }
+}
@@ -0,0 +1,83 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Replays traffic captured by ChannelRecorder, like with WebRTCPerf, through a pair of LoopbackConnections at each
+ * given speed, and reports throughput, schedule lag of the sender and one-way latency of the messages.  Messages are
+ * matched to their send times by order, since channels are ordered.
+ *
+ * Arguments: recording file, comma separated speeds as multiples of the recorded speed or "max", recorded channel
+ */
+public class ReplayBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(ReplayBenchmark.class);
+    private static final long DRAIN_TIMEOUT_MILLIS = 30000;
+
+    private final Path recording;
+    private final String recordedChannel;
+
+    public ReplayBenchmark(Path recording, String recordedChannel) {
+        this.recording = recording;
+        this.recordedChannel = recordedChannel;
+    }
+
+    private void run(LoopbackConnection connection, String speed) throws Exception {
+        ChannelPair channels = ChannelPair.open(connection, "replay-" + speed, 30000);
+        ConcurrentLinkedQueue<Long> sendTimes = new ConcurrentLinkedQueue<>();
+        LatencyHistogram latency = new LatencyHistogram();
+        ReceiveStats received = new ReceiveStats(null);
+        channels.remote.addChannelListener(new ChannelListener() {
+            @Override
+            public void onStateChange(State state) {
+            }
+            @Override
+            public void onMessage(String message) {
+            }
+            @Override
+            public void onMessage(ChannelMessage message) {
+                Long sent = sendTimes.poll();
+                if (sent != null) {
+                    latency.record(System.nanoTime() - sent);
+                }
+                received.onMessage(message);
+            }
+        });
+        ChannelReplayer replayer = new ChannelReplayer(channels.local,
+                "max".equals(speed) ? ChannelReplayer.MAX_SPEED : Double.parseDouble(speed));
+        replayer.setChannel(this.recordedChannel);
+        replayer.setSendListener(sendTimes::add);
+        replayer.replay(this.recording);
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (received.getMessages() < replayer.getMessages() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        logger.info("speed {}: {}", speed, replayer);
+        logger.info("speed {}: received {}", speed, received);
+        logger.info("speed {}: latency {}", speed, latency.toMicrosString());
+        channels.local.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayBenchmark recording [speeds] [channel]");
+            System.exit(1);
+        }
+        String[] speeds = (args.length > 1 ? args[1] : "1,10,max").split(",");
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode("replayBenchmark");
+        LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+        connection.initializeOffer();
+        ReplayBenchmark benchmark = new ReplayBenchmark(Paths.get(args[0]), args.length > 2 ? args[2] : null);
+        for (String speed : speeds) {
+            benchmark.run(connection, speed);
+        }
+        connection.close();
+        System.exit(0);
+    }
+}
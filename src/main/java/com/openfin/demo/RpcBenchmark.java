@@ -0,0 +1,160 @@
+package com.openfin.demo;
+
+import com.openfin.desktop.*;
+import com.openfin.desktop.channel.ChannelAction;
+import com.openfin.desktop.channel.ChannelClient;
+import com.openfin.desktop.channel.ChannelProvider;
+import com.openfin.webrtc.*;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Compares pipelined request/response over ChannelRpc, between a pair of LoopbackConnections, with OpenFin channel actions.
+ *
+ * Arguments: number of calls, number of outstanding calls
+ */
+public class RpcBenchmark implements DesktopStateListener {
+    private final static Logger logger = LoggerFactory.getLogger(RpcBenchmark.class);
+    private static final CountDownLatch latch = new CountDownLatch(1);
+    private static final String ECHO_ACTION = "echo";
+    private static final String OPENFIN_CHANNEL_NAME = "RpcBenchmarkChannel";
+
+    private final int calls;
+    private final int pipelineDepth;
+    private final DesktopConnection desktopConnection;
+
+    public RpcBenchmark(int calls, int pipelineDepth) throws Exception {
+        this.calls = calls;
+        this.pipelineDepth = pipelineDepth;
+        this.runWebRTC();
+
+        this.desktopConnection = new DesktopConnection(RpcBenchmark.class.getName());
+        String desktopVersion = java.lang.System.getProperty("com.openfin.demo.runtime.version", "stable");
+        RuntimeConfiguration configuration = new RuntimeConfiguration();
+        configuration.setRuntimeVersion(desktopVersion);
+        this.desktopConnection.connect(configuration, this, 60);
+    }
+
+    private void runWebRTC() throws Exception {
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode("rpcBenchmark");
+        LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+        connection.initializeOffer();
+        ChannelPair channels = ChannelPair.open(connection, "rpc", 30000);
+
+        ChannelRpc server = new ChannelRpc(channels.remote);
+        server.register(ECHO_ACTION, (action, payload) -> payload);
+        ChannelRpc client = new ChannelRpc(channels.local, this.pipelineDepth * 2, Runnable::run);
+        this.run("WebRTC ChannelRpc", payload -> client.dispatch(ECHO_ACTION, payload));
+        connection.close();
+    }
+
+    private void runOpenFin() {
+        this.desktopConnection.getChannel(OPENFIN_CHANNEL_NAME).create(new AsyncCallback<ChannelProvider>() {
+            @Override
+            public void onSuccess(ChannelProvider provider) {
+                provider.register(ECHO_ACTION, new ChannelAction() {
+                    @Override
+                    public JSONObject invoke(String action, JSONObject payload, JSONObject senderIdentity) {
+                        return payload;
+                    }
+                });
+                desktopConnection.getChannel(OPENFIN_CHANNEL_NAME).connect(new AsyncCallback<ChannelClient>() {
+                    @Override
+                    public void onSuccess(ChannelClient client) {
+                        // run on a separate thread since the benchmark blocks while waiting for responses
+                        new Thread(() -> {
+                            RpcBenchmark.this.run("OpenFin ChannelAction", payload -> dispatch(client, payload));
+                            latch.countDown();
+                        }).start();
+                    }
+                });
+            }
+        });
+    }
+
+    private static CompletionStage<?> dispatch(ChannelClient client, JSONObject payload) {
+        CompletableFuture<Ack> future = new CompletableFuture<>();
+        client.dispatch(ECHO_ACTION, payload, new AckListener() {
+            @Override
+            public void onSuccess(Ack ack) {
+                future.complete(ack);
+            }
+            @Override
+            public void onError(Ack ack) {
+                future.completeExceptionally(new Exception(ack.getReason()));
+            }
+        });
+        return future;
+    }
+
+    private void run(String name, Function<JSONObject, CompletionStage<?>> call) {
+        LatencyHistogram latency = new LatencyHistogram();
+        Semaphore outstanding = new Semaphore(this.pipelineDepth);
+        AtomicLong errors = new AtomicLong();
+        JSONObject payload = new JSONObject();
+        payload.put("payload", String.format("%0" + 64 + "d", 8));
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < this.calls; i++) {
+                outstanding.acquire();
+                long callStart = System.nanoTime();
+                call.apply(payload).whenComplete((result, error) -> {
+                    latency.record(System.nanoTime() - callStart);
+                    if (error != null) {
+                        errors.incrementAndGet();
+                    }
+                    outstanding.release();
+                });
+            }
+            outstanding.acquire(this.pipelineDepth);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        logger.info("{}: {} calls/sec, {} errors, {}", name, Math.round(this.calls / seconds), errors.get(), latency.toMicrosString());
+    }
+
+    @Override
+    public void onReady() {
+        logger.info("onReady");
+        this.runOpenFin();
+    }
+
+    @Override
+    public void onClose(String s) {
+        logger.info("onClose, value={}", s);
+        latch.countDown();
+    }
+
+    @Override
+    public void onError(String error) {
+        logger.info("onError, value={}", error);
+        latch.countDown();
+    }
+
+    @Override
+    public void onMessage(String s) {
+    }
+
+    @Override
+    public void onOutgoingMessage(String s) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int pipelineDepth = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        new RpcBenchmark(calls, pipelineDepth);
+        latch.await();
+        System.exit(0);
+    }
+}
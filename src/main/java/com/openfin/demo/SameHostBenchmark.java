@@ -0,0 +1,111 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the RTCOptions.sameHost() profile with WebRTC defaults on LoopbackConnection pairs, which run on the same
+ * machine like LocalConnection and its JavaScript peer.  Reports setup time, from creating a pair to the first message
+ * on a new channel, with ICE gathering time, then throughput of one channel.
+ *
+ * Arguments: setup iterations, seconds of throughput run, message size
+ */
+public class SameHostBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(SameHostBenchmark.class);
+    private static final long TIMEOUT_MILLIS = 30000;
+
+    private final int iterations;
+    private final int seconds;
+    private final int messageSize;
+
+    public SameHostBenchmark(int iterations, int seconds, int messageSize) {
+        this.iterations = iterations;
+        this.seconds = seconds;
+        this.messageSize = messageSize;
+    }
+
+    private static Configuration createConfiguration(String pairingCode, RTCOptions options) {
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode(pairingCode);
+        cfg.setRTCOptions(options);
+        return cfg;
+    }
+
+    private void runSetup(String name, RTCOptions options) throws Exception {
+        LatencyHistogram setup = new LatencyHistogram();
+        LatencyHistogram gathering = new LatencyHistogram();
+        for (int i = 0; i < this.iterations; i++) {
+            long start = System.nanoTime();
+            LoopbackConnection connection = LoopbackConnection.createPair(createConfiguration(name + i, options));
+            try {
+                connection.initializeOffer();
+                if (!connection.awaitOpen(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    throw new Exception(String.format("Connection not open, %s", connection.getSetupTrace()));
+                }
+                ChannelPair pair = ChannelPair.open(connection, "first", TIMEOUT_MILLIS);
+                pair.remote.enableReceiveQueue(1);
+                pair.local.send("first");
+                if (pair.remote.receive(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS) == null) {
+                    throw new Exception("First message not received");
+                }
+                setup.record(System.nanoTime() - start);
+                gathering.record(connection.getSetupTrace().getElapsed(SetupPhase.ICE_GATHERING_COMPLETE));
+            } finally {
+                connection.close();
+            }
+        }
+        logger.info("{}: setup to first message p50 {} p90 {} max {} us, ICE gathering p50 {} p90 {} us",
+                name, setup.getValueAtPercentile(50) / 1000, setup.getValueAtPercentile(90) / 1000, setup.getMax() / 1000,
+                gathering.getValueAtPercentile(50) / 1000, gathering.getValueAtPercentile(90) / 1000);
+    }
+
+    private void runThroughput(String name, RTCOptions options) throws Exception {
+        LoopbackConnection connection = LoopbackConnection.createPair(createConfiguration(name + "Throughput", options));
+        try {
+            connection.initializeOffer();
+            ChannelPair pair = ChannelPair.open(connection, "throughput", TIMEOUT_MILLIS);
+            LongAdder received = new LongAdder();
+            pair.remote.addChannelListener(new ChannelListener() {
+                @Override
+                public void onStateChange(State state) {
+                }
+                @Override
+                public void onMessage(String message) {
+                }
+                @Override
+                public void onMessage(ChannelMessage message) {
+                    received.add(message.getData().remaining());
+                }
+            });
+            ByteBuffer message = ByteBuffer.allocateDirect(this.messageSize);
+            long start = System.nanoTime();
+            long end = start + this.seconds * 1000_000_000L;
+            while (System.nanoTime() < end) {
+                pair.local.sendAndAwaitWritable(message.duplicate());
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            // let in-flight messages arrive
+            Thread.sleep(1000);
+            logger.info("{}: throughput {} MB/s", name, Math.round(received.sum() / elapsed / 1e5) / 10.0);
+        } finally {
+            connection.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int messageSize = args.length > 2 ? Integer.parseInt(args[2]) : 16 * 1024;
+        SameHostBenchmark benchmark = new SameHostBenchmark(iterations, seconds, messageSize);
+        benchmark.runSetup("default", null);
+        benchmark.runSetup("sameHost", RTCOptions.sameHost());
+        benchmark.runThroughput("default", null);
+        benchmark.runThroughput("sameHost", RTCOptions.sameHost());
+        System.exit(0);
+    }
+}
@@ -0,0 +1,354 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Java to Java load over M connections with N channels each, sending one way or both ways at once, between pairs of
+ * LoopbackConnections in this JVM, or between this JVM and a peer JVM signaled over its standard input and output like
+ * SharedMemoryBenchmark.  Every channel has its own sender thread, sending at a given rate or as fast as the channel
+ * takes messages, and throughput and one-way latency are aggregated over all channels of each direction, to find
+ * where the stack stops scaling with cores.
+ *
+ * Messages start with System.nanoTime() of the sender, which is comparable between JVMs of one host on Linux.
+ *
+ * Arguments: inprocess or process, comma separated directions (uni, duplex), comma separated connection counts,
+ * comma separated channel counts per connection, seconds per run, message size, messages per second per channel
+ * (0 for as fast as possible)
+ */
+public class ScenarioBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(ScenarioBenchmark.class);
+    private static final String SIGNAL_PREFIX = "SIGNAL ";
+    private static final String RESULT_PREFIX = "RESULT ";
+    private static final long TIMEOUT_MILLIS = 30000;
+    private static final long DRAIN_MILLIS = 1000;
+
+    private final boolean inProcess;
+    private final int seconds;
+    private final int messageSize;
+    private final double rate;
+
+    public ScenarioBenchmark(boolean inProcess, int seconds, int messageSize, double rate) {
+        this.inProcess = inProcess;
+        this.seconds = seconds;
+        this.messageSize = Math.max(messageSize, Long.BYTES);
+        this.rate = rate;
+    }
+
+    /**
+     * Receiving side of one direction, shared by its channels
+     */
+    private static class Receiver implements ChannelListener {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder messages = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+
+        @Override
+        public void onStateChange(State state) {
+        }
+        @Override
+        public void onMessage(String message) {
+        }
+        @Override
+        public void onMessage(ChannelMessage message) {
+            if (message.isBinary() && message.size() >= Long.BYTES) {
+                this.latency.record(System.nanoTime() - message.getData().getLong());
+                this.messages.increment();
+                this.bytes.add(message.size());
+            }
+        }
+
+        JSONObject toJSON() {
+            JSONObject result = new JSONObject();
+            result.put("messages", this.messages.sum());
+            result.put("bytes", this.bytes.sum());
+            result.put("p50", this.latency.getValueAtPercentile(50));
+            result.put("p99", this.latency.getValueAtPercentile(99));
+            result.put("max", this.latency.getMax());
+            return result;
+        }
+    }
+
+    /**
+     * Send messages on a channel until the end time, at the rate or as fast as the channel takes them
+     */
+    private static Thread startSender(Channel channel, int messageSize, double rate, long seconds, LongAdder sent) {
+        Thread thread = new Thread(() -> {
+            try {
+                ChannelPair.awaitOpen(channel, TIMEOUT_MILLIS);
+                ByteBuffer message = ByteBuffer.allocate(messageSize);
+                long start = System.nanoTime();
+                long end = start + seconds * 1000_000_000L;
+                long interval = rate > 0 ? (long) (1e9 / rate) : 0;
+                long next = start;
+                for (long now = start; now < end; now = System.nanoTime()) {
+                    if (interval > 0) {
+                        if (now < next) {
+                            LockSupport.parkNanos(next - now);
+                            continue;
+                        }
+                        next += interval;
+                    }
+                    message.clear();
+                    message.putLong(0, System.nanoTime());
+                    channel.sendAndAwaitWritable(message);
+                    sent.increment();
+                }
+            } catch (Exception ex) {
+                logger.error("Error sending on channel {}", channel.getName(), ex);
+            }
+        }, "ScenarioSender-" + channel.getName());
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void run(boolean duplex, int connectionCount, int channelCount) throws Exception {
+        String scenario = String.format("%s %d connections x %d channels", duplex ? "duplex" : "uni", connectionCount, channelCount);
+        if (this.inProcess) {
+            this.runInProcess(scenario, duplex, connectionCount, channelCount);
+        } else {
+            this.runTwoProcess(scenario, duplex, connectionCount, channelCount);
+        }
+    }
+
+    private void runInProcess(String scenario, boolean duplex, int connectionCount, int channelCount) throws Exception {
+        List<LoopbackConnection> connections = new ArrayList<>();
+        List<Thread> senders = new ArrayList<>();
+        Receiver forward = new Receiver();
+        Receiver reverse = new Receiver();
+        LongAdder sent = new LongAdder();
+        try {
+            List<ChannelPair> pairs = new ArrayList<>();
+            for (int i = 0; i < connectionCount; i++) {
+                Configuration cfg = new Configuration();
+                cfg.setPairingCode("scenario" + i);
+                LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+                connection.initializeOffer();
+                connections.add(connection);
+                for (int c = 0; c < channelCount; c++) {
+                    ChannelPair pair = ChannelPair.open(connection, "load" + c, TIMEOUT_MILLIS);
+                    pair.remote.addChannelListener(forward);
+                    if (duplex) {
+                        pair.local.addChannelListener(reverse);
+                    }
+                    pairs.add(pair);
+                }
+            }
+            long start = System.nanoTime();
+            for (ChannelPair pair : pairs) {
+                senders.add(startSender(pair.local, this.messageSize, this.rate, this.seconds, sent));
+                if (duplex) {
+                    senders.add(startSender(pair.remote, this.messageSize, this.rate, this.seconds, sent));
+                }
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            Thread.sleep(DRAIN_MILLIS);
+            logger.info("{}: sent {} messages/s", scenario, Math.round(sent.sum() / elapsed));
+            this.report(scenario, "forward", forward.toJSON(), elapsed);
+            if (duplex) {
+                this.report(scenario, "reverse", reverse.toJSON(), elapsed);
+            }
+        } finally {
+            for (LoopbackConnection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    private void runTwoProcess(String scenario, boolean duplex, int connectionCount, int channelCount) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process peer = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ScenarioBenchmark.class.getName(), "peer", String.valueOf(duplex), String.valueOf(this.seconds),
+                String.valueOf(this.messageSize), String.valueOf(this.rate))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        PrintStream toPeer = new PrintStream(peer.getOutputStream(), true, StandardCharsets.UTF_8);
+        List<PipeConnection> connections = new ArrayList<>();
+        CompletableFuture<JSONObject> peerResult = new CompletableFuture<>();
+        List<Thread> senders = new ArrayList<>();
+        Receiver reverse = new Receiver();
+        LongAdder sent = new LongAdder();
+        try {
+            for (int i = 0; i < connectionCount; i++) {
+                int index = i;
+                connections.add(new PipeConnection(createConfiguration("scenario" + i), true, message -> {
+                    synchronized (toPeer) {
+                        toPeer.println(index + " " + message);
+                    }
+                }));
+            }
+            Thread reader = new Thread(() -> readPeer(new BufferedReader(new InputStreamReader(peer.getInputStream(), StandardCharsets.UTF_8)),
+                    connections, peerResult), "ScenarioBenchmarkSignaling");
+            reader.setDaemon(true);
+            reader.start();
+            List<Channel> channels = new ArrayList<>();
+            for (PipeConnection connection : connections) {
+                connection.initialize();
+                connection.initializeOffer();
+                if (!connection.awaitOpen(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    throw new Exception(String.format("Connection not open, %s", connection.getSetupTrace()));
+                }
+                for (int c = 0; c < channelCount; c++) {
+                    Channel channel = connection.createChannel("load" + c);
+                    channel.addChannelListener(reverse);
+                    channels.add(channel);
+                }
+            }
+            long start = System.nanoTime();
+            for (Channel channel : channels) {
+                senders.add(startSender(channel, this.messageSize, this.rate, this.seconds, sent));
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            Thread.sleep(DRAIN_MILLIS);
+            logger.info("{}: sent {} messages/s", scenario, Math.round(sent.sum() / elapsed));
+            // the peer reports what it received once its input is closed
+            toPeer.close();
+            this.report(scenario, "forward", peerResult.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), elapsed);
+            if (duplex) {
+                this.report(scenario, "reverse", reverse.toJSON(), elapsed);
+            }
+        } finally {
+            for (PipeConnection connection : connections) {
+                connection.close();
+            }
+            toPeer.close();
+            if (!peer.waitFor(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                peer.destroy();
+            }
+        }
+    }
+
+    private static Configuration createConfiguration(String pairingCode) {
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode(pairingCode);
+        cfg.setRTCOptions(RTCOptions.sameHost());
+        return cfg;
+    }
+
+    private static void readPeer(BufferedReader reader, List<PipeConnection> connections, CompletableFuture<JSONObject> result) {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(SIGNAL_PREFIX)) {
+                    String[] signal = line.substring(SIGNAL_PREFIX.length()).split(" ", 2);
+                    connections.get(Integer.parseInt(signal[0])).onSignal(new JSONObject(signal[1]));
+                } else if (line.startsWith(RESULT_PREFIX)) {
+                    result.complete(new JSONObject(line.substring(RESULT_PREFIX.length())));
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error reading peer", ex);
+        }
+        result.completeExceptionally(new Exception("Peer exited without a result"));
+    }
+
+    private void report(String scenario, String direction, JSONObject result, double elapsed) {
+        long messages = result.getLong("messages");
+        logger.info("{} {}: {} messages/s {} MB/s, latency p50 {} p99 {} max {} us", scenario, direction,
+                Math.round(messages / elapsed), Math.round(result.getLong("bytes") / elapsed / 1e5) / 10.0,
+                TimeUnit.NANOSECONDS.toMicros(result.getLong("p50")), TimeUnit.NANOSECONDS.toMicros(result.getLong("p99")),
+                TimeUnit.NANOSECONDS.toMicros(result.getLong("max")));
+    }
+
+    /**
+     * The peer JVM, answering connections signaled over standard input until it is closed, then printing what it
+     * received
+     */
+    private static void runPeer(boolean duplex, int seconds, int messageSize, double rate) throws Exception {
+        PrintStream out = System.out;
+        Receiver forward = new Receiver();
+        LongAdder sent = new LongAdder();
+        List<PipeConnection> connections = new ArrayList<>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] signal = line.split(" ", 2);
+            int index = Integer.parseInt(signal[0]);
+            while (connections.size() <= index) {
+                int connectionIndex = connections.size();
+                PipeConnection connection = new PipeConnection(createConfiguration("scenarioPeer" + connectionIndex), false, message -> {
+                    synchronized (out) {
+                        out.println(SIGNAL_PREFIX + connectionIndex + " " + message);
+                        out.flush();
+                    }
+                });
+                connection.addConnectionListener(new ConnectionListener() {
+                    @Override
+                    public void onStateChange(State state) {
+                    }
+                    @Override
+                    public void onChannel(Channel channel) {
+                        channel.addChannelListener(forward);
+                        if (duplex) {
+                            startSender(channel, messageSize, rate, seconds, sent);
+                        }
+                    }
+                });
+                connection.initialize();
+                connections.add(connection);
+            }
+            connections.get(index).onSignal(new JSONObject(signal[1]));
+        }
+        synchronized (out) {
+            out.println(RESULT_PREFIX + forward.toJSON());
+            out.flush();
+        }
+        for (PipeConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private static List<Integer> parseCounts(String counts) {
+        List<Integer> result = new ArrayList<>();
+        for (String count : counts.split(",")) {
+            result.add(Integer.parseInt(count));
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 4 && "peer".equals(args[0])) {
+            runPeer(Boolean.parseBoolean(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Double.parseDouble(args[4]));
+            System.exit(0);
+        }
+        boolean inProcess = !"process".equals(args.length > 0 ? args[0] : "inprocess");
+        String[] directions = (args.length > 1 ? args[1] : "uni,duplex").split(",");
+        List<Integer> connectionCounts = parseCounts(args.length > 2 ? args[2] : "1,4");
+        List<Integer> channelCounts = parseCounts(args.length > 3 ? args[3] : "1,4,16");
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+        int messageSize = args.length > 5 ? Integer.parseInt(args[5]) : 1024;
+        double rate = args.length > 6 ? Double.parseDouble(args[6]) : 0;
+        logger.info("{} processors, {}", Runtime.getRuntime().availableProcessors(), inProcess ? "in process" : "two processes");
+        ScenarioBenchmark benchmark = new ScenarioBenchmark(inProcess, seconds, messageSize, rate);
+        for (String direction : directions) {
+            for (int connectionCount : connectionCounts) {
+                for (int channelCount : channelCounts) {
+                    benchmark.run("duplex".equals(direction), connectionCount, channelCount);
+                }
+            }
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,113 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Measures latency of control messages while a bulk channel of the same connection is saturated, with and without
+ * SendScheduler.  Without the scheduler, the bulk sender keeps bufferedAmount under the 16MB at which WebRTC closes
+ * data channels, as an application normally would.
+ *
+ * Arguments: seconds per run, bulk message size
+ */
+public class SchedulerBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(SchedulerBenchmark.class);
+    private static final long UNSCHEDULED_BUFFERED_AMOUNT_LIMIT = 8 * 1024 * 1024;
+    private static final long CONTROL_INTERVAL_MILLIS = 10;
+
+    private final int seconds;
+    private final int bulkSize;
+
+    public SchedulerBenchmark(int seconds, int bulkSize) {
+        this.seconds = seconds;
+        this.bulkSize = bulkSize;
+    }
+
+    private void run(boolean scheduled) throws Exception {
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode(scheduled ? "scheduled" : "unscheduled");
+        LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+        connection.initializeOffer();
+        ChannelPair control = ChannelPair.open(connection, "control", 30000);
+        ChannelPair bulk = ChannelPair.open(connection, "bulk", 30000);
+        if (scheduled) {
+            connection.getSendScheduler().register(control.local, SendPriority.CONTROL, 1);
+            connection.getSendScheduler().register(bulk.local, SendPriority.BULK, 1);
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        control.remote.addChannelListener(new ChannelListener() {
+            @Override
+            public void onStateChange(State state) {
+            }
+            @Override
+            public void onMessage(String message) {
+            }
+            @Override
+            public void onMessage(ChannelMessage message) {
+                latency.record(System.nanoTime() - message.getData().getLong());
+            }
+        });
+        long[] bulkBytes = new long[1];
+        bulk.remote.addChannelListener(new ChannelListener() {
+            @Override
+            public void onStateChange(State state) {
+            }
+            @Override
+            public void onMessage(String message) {
+            }
+            @Override
+            public void onMessage(ChannelMessage message) {
+                bulkBytes[0] += message.size();
+            }
+        });
+
+        long end = System.currentTimeMillis() + this.seconds * 1000L;
+        Thread bulkSender = new Thread(() -> {
+            ByteBuffer payload = ByteBuffer.allocate(this.bulkSize);
+            while (System.currentTimeMillis() < end) {
+                try {
+                    if (!scheduled && bulk.local.getBufferedAmount() >= UNSCHEDULED_BUFFERED_AMOUNT_LIMIT) {
+                        Thread.sleep(1);
+                        continue;
+                    }
+                    bulk.local.send(payload);
+                } catch (InterruptedException ex) {
+                    return;
+                } catch (Exception ex) {
+                    // scheduler queue is full
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException iex) {
+                        return;
+                    }
+                }
+            }
+        });
+        bulkSender.start();
+
+        ByteBuffer ping = ByteBuffer.allocate(Long.BYTES);
+        while (System.currentTimeMillis() < end) {
+            ping.clear();
+            ping.putLong(System.nanoTime()).flip();
+            control.local.send(ping);
+            Thread.sleep(CONTROL_INTERVAL_MILLIS);
+        }
+        bulkSender.join();
+        logger.info("{}: bulk {} MB/s, control latency {}", scheduled ? "scheduled" : "unscheduled",
+                Math.round(bulkBytes[0] / 1e5 / this.seconds) / 10.0, latency.toMicrosString());
+        connection.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int bulkSize = args.length > 1 ? Integer.parseInt(args[1]) : 65536;
+        SchedulerBenchmark benchmark = new SchedulerBenchmark(seconds, bulkSize);
+        benchmark.run(false);
+        benchmark.run(true);
+        System.exit(0);
+    }
+}
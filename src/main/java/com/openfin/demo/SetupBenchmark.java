@@ -0,0 +1,320 @@
+package com.openfin.demo;
+
+import com.openfin.desktop.*;
+import com.openfin.desktop.channel.ChannelAction;
+import com.openfin.desktop.channel.ChannelProvider;
+import com.openfin.webrtc.*;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time to first message of new connections, broken down by setup phase of both peers.  Each iteration
+ * creates a pair of connections, opens a channel and sends one message on it.
+ *
+ * loopback: LoopbackConnection pair, no signaling.
+ * ice: pair of IceConnections through a signaling server, normally one running locally.
+ * local: LocalConnection, with a StandInAnswerer behind an OpenFin channel provider as the JavaScript peer.
+ * local-trickle: local, with trickle ICE.
+ *
+ * For local modes, the time the OpenFin channel connect overlaps ICE gathering of the offerer is reported as well.
+ * Before the channel was connected in initialize(), that time was added to setup, after gathering completed.
+ *
+ * Arguments: iterations, comma separated modes, signaling base URL for ice mode
+ */
+public class SetupBenchmark implements DesktopStateListener {
+    private final static Logger logger = LoggerFactory.getLogger(SetupBenchmark.class);
+    private static final CountDownLatch latch = new CountDownLatch(1);
+    private static final long TIMEOUT_SECONDS = 60;
+    private static final String OFFER_ACTION  = "offer-description";
+    private static final String ANSWER_ACTION = "answer-description";
+    private static final String CANDIDATE_ACTION = "ice-candidate";
+
+    private final int iterations;
+    private final String signalingBaseUrl;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private DesktopConnection desktopConnection;
+    private final List<String> modes;
+
+    /**
+     * Phase timestamps of both peers over all iterations of a mode, relative to the start of each iteration
+     */
+    private static class Breakdown {
+        private final Map<SetupPhase, LatencyHistogram> offerer = new EnumMap<>(SetupPhase.class);
+        private final Map<SetupPhase, LatencyHistogram> answerer = new EnumMap<>(SetupPhase.class);
+        private final LatencyHistogram firstMessage = new LatencyHistogram();
+        private final LatencyHistogram connectOverlap = new LatencyHistogram();
+
+        private static void record(Map<SetupPhase, LatencyHistogram> phases, SetupTrace trace, long start) {
+            for (SetupPhase phase : trace.getReachedPhases()) {
+                phases.computeIfAbsent(phase, p -> new LatencyHistogram()).record(trace.getTimestamp(phase) - start);
+            }
+        }
+
+        private void record(Connection offerer, Connection answerer, long start, long received) {
+            record(this.offerer, offerer.getSetupTrace(), start);
+            record(this.answerer, answerer.getSetupTrace(), start);
+            this.firstMessage.record(received - start);
+            SetupTrace trace = offerer.getSetupTrace();
+            if (trace.isReached(SetupPhase.SIGNALING_CONNECTED) && trace.isReached(SetupPhase.ICE_GATHERING_COMPLETE)) {
+                // both start with the connection, the shorter of the two is saved by running them concurrently
+                this.connectOverlap.record(Math.min(trace.getElapsed(SetupPhase.SIGNALING_CONNECTED),
+                        trace.getElapsed(SetupPhase.ICE_GATHERING_COMPLETE)));
+            }
+        }
+
+        private static void append(StringBuilder sb, String side, Map<SetupPhase, LatencyHistogram> phases) {
+            for (var entry : phases.entrySet()) {
+                sb.append(String.format("%n  %-8s %-24s p50 %8.1f p90 %8.1f ms", side, entry.getKey(),
+                        entry.getValue().getValueAtPercentile(50) / 1e6, entry.getValue().getValueAtPercentile(90) / 1e6));
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            append(sb, "offerer", this.offerer);
+            append(sb, "answerer", this.answerer);
+            sb.append(String.format("%n  time to first message p50 %.1f p90 %.1f max %.1f ms",
+                    this.firstMessage.getValueAtPercentile(50) / 1e6, this.firstMessage.getValueAtPercentile(90) / 1e6,
+                    this.firstMessage.getMax() / 1e6));
+            if (this.connectOverlap.getCount() > 0) {
+                sb.append(String.format("%n  channel connect overlapped with ICE gathering p50 %.1f p90 %.1f ms",
+                        this.connectOverlap.getValueAtPercentile(50) / 1e6, this.connectOverlap.getValueAtPercentile(90) / 1e6));
+            }
+            return sb.toString();
+        }
+    }
+
+    public SetupBenchmark(int iterations, List<String> modes, String signalingBaseUrl) {
+        this.iterations = iterations;
+        this.modes = modes;
+        this.signalingBaseUrl = signalingBaseUrl;
+    }
+
+    /**
+     * Open a channel from sender to receiver and send a message on it
+     *
+     * @return System.nanoTime() when the message is received
+     */
+    private static long sendFirstMessage(Connection sender, Connection receiver) throws Exception {
+        CompletableFuture<Channel> remoteChannel = new CompletableFuture<>();
+        ConnectionListener listener = new ConnectionListener() {
+            @Override
+            public void onStateChange(State state) {
+            }
+            @Override
+            public void onChannel(Channel channel) {
+                remoteChannel.complete(channel);
+            }
+        };
+        receiver.addConnectionListener(listener);
+        try {
+            Channel local = sender.createChannel("first");
+            Channel remote = remoteChannel.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            remote.enableReceiveQueue(1);
+            ChannelPair.awaitOpen(local, TIMEOUT_SECONDS * 1000);
+            local.send("first");
+            if (remote.receive(TIMEOUT_SECONDS, TimeUnit.SECONDS) == null) {
+                throw new Exception("First message not received");
+            }
+            return receiver.getSetupTrace().getTimestamp(SetupPhase.FIRST_MESSAGE);
+        } finally {
+            receiver.removeConnectionListener(listener);
+        }
+    }
+
+    private static void awaitOpen(Connection connection) throws Exception {
+        if (!connection.awaitOpen(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new Exception(String.format("Connection not open, %s", connection.getSetupTrace()));
+        }
+    }
+
+    private void runLoopback(int i, Breakdown breakdown) throws Exception {
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode("setupLoopback" + i);
+        long start = System.nanoTime();
+        LoopbackConnection offerer = LoopbackConnection.createPair(cfg);
+        try {
+            offerer.initializeOffer();
+            awaitOpen(offerer);
+            long received = sendFirstMessage(offerer, offerer.getPeer());
+            breakdown.record(offerer, offerer.getPeer(), start, received);
+        } finally {
+            offerer.close();
+        }
+    }
+
+    private void runIce(int i, Breakdown breakdown) throws Exception {
+        String pairingCode = "setupIce" + i + "-" + System.currentTimeMillis();
+        ConnectionFactory factory = new ConnectionFactory();
+        long start = System.nanoTime();
+        Connection[] peers = new Connection[2];
+        try {
+            for (int p = 0; p < peers.length; p++) {
+                Configuration cfg = new Configuration();
+                cfg.setPairingCode(pairingCode);
+                cfg.setSignalingBaseUrl(this.signalingBaseUrl);
+                peers[p] = factory.createConnection(cfg);
+            }
+            awaitOpen(peers[0]);
+            awaitOpen(peers[1]);
+            // the leader, chosen by the signaling server, sends the offer before it gets the answer
+            SetupTrace trace = peers[0].getSetupTrace();
+            boolean firstOffered = trace.getTimestamp(SetupPhase.DESCRIPTION_SENT) < trace.getTimestamp(SetupPhase.REMOTE_DESCRIPTION);
+            Connection offerer = firstOffered ? peers[0] : peers[1];
+            Connection answerer = firstOffered ? peers[1] : peers[0];
+            long received = sendFirstMessage(offerer, answerer);
+            breakdown.record(offerer, answerer, start, received);
+        } finally {
+            for (Connection peer : peers) {
+                if (peer != null) {
+                    peer.close();
+                }
+            }
+        }
+    }
+
+    private void runLocal(int i, Breakdown breakdown, boolean trickle) throws Exception {
+        String pairingCode = "setupLocal" + i + "-" + System.currentTimeMillis();
+        String ofChannelName = String.format("webrtc:%s:offer:answer", pairingCode);
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode(pairingCode);
+        cfg.setDesktopConnection(this.desktopConnection);
+        cfg.setTrickleIce(trickle);
+
+        long start = System.nanoTime();
+        CompletableFuture<ChannelProvider> providerFuture = new CompletableFuture<>();
+        this.desktopConnection.getChannel(ofChannelName).create(new AsyncCallback<ChannelProvider>() {
+            @Override
+            public void onSuccess(ChannelProvider provider) {
+                providerFuture.complete(provider);
+            }
+        });
+        ChannelProvider provider = providerFuture.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        CompletableFuture<JSONObject> client = new CompletableFuture<>();
+        StandInAnswerer[] answerer = new StandInAnswerer[1];
+        answerer[0] = new StandInAnswerer(cfg, answer -> {
+            JSONObject payload = new JSONObject();
+            payload.put("description", answer);
+            client.thenAccept(identity -> provider.dispatch(identity, ANSWER_ACTION, payload, null));
+        });
+        provider.register(OFFER_ACTION, new ChannelAction() {
+            @Override
+            public JSONObject invoke(String action, JSONObject payload, JSONObject senderIdentity) {
+                client.complete(senderIdentity);
+                // answering waits for WebRTC, so not on the OpenFin thread
+                executor.execute(() -> answerer[0].offer(payload.getJSONObject("description")));
+                return null;
+            }
+        });
+        provider.register(CANDIDATE_ACTION, new ChannelAction() {
+            @Override
+            public JSONObject invoke(String action, JSONObject payload, JSONObject senderIdentity) {
+                JSONObject candidate = payload.optJSONObject("candidate");
+                executor.execute(() -> answerer[0].candidate(candidate));
+                return null;
+            }
+        });
+        Connection offerer = new ConnectionFactory().createConnection(cfg);
+        try {
+            answerer[0].initialize();
+            offerer.initializeOffer();
+            awaitOpen(offerer);
+            long received = sendFirstMessage(offerer, answerer[0]);
+            breakdown.record(offerer, answerer[0], start, received);
+        } finally {
+            offerer.close();
+            answerer[0].close();
+            provider.remove(OFFER_ACTION);
+            provider.remove(CANDIDATE_ACTION);
+        }
+    }
+
+    private interface Iteration {
+        void run(int i, Breakdown breakdown) throws Exception;
+    }
+
+    private void run(String mode, Iteration iteration) {
+        Breakdown breakdown = new Breakdown();
+        SetupMetrics.reset();
+        int errors = 0;
+        for (int i = 0; i < this.iterations; i++) {
+            try {
+                iteration.run(i, breakdown);
+            } catch (Exception ex) {
+                logger.error("Error in {} iteration {}", mode, i, ex);
+                errors++;
+            }
+        }
+        logger.info("{}: {} iterations, {} errors, time from start of iteration to phase:{}", mode, this.iterations,
+                errors, breakdown);
+        logger.info("{}: time from creation of each connection to phase:{}", mode, SetupMetrics.report());
+    }
+
+    @Override
+    public void onReady() {
+        logger.info("onReady");
+        this.executor.execute(() -> {
+            if (this.modes.contains("local")) {
+                this.run("local", (i, breakdown) -> this.runLocal(i, breakdown, false));
+            }
+            if (this.modes.contains("local-trickle")) {
+                this.run("local-trickle", (i, breakdown) -> this.runLocal(i, breakdown, true));
+            }
+            latch.countDown();
+        });
+    }
+
+    @Override
+    public void onClose(String s) {
+        logger.info("onClose, value={}", s);
+        latch.countDown();
+    }
+
+    @Override
+    public void onError(String error) {
+        logger.info("onError, value={}", error);
+        latch.countDown();
+    }
+
+    @Override
+    public void onMessage(String s) {
+    }
+
+    @Override
+    public void onOutgoingMessage(String s) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        List<String> modes = Arrays.asList((args.length > 1 ? args[1] : "loopback").split(","));
+        String signalingBaseUrl = args.length > 2 ? args[2] : "http://localhost:8080";
+        SetupBenchmark benchmark = new SetupBenchmark(iterations, modes, signalingBaseUrl);
+        if (modes.contains("loopback")) {
+            benchmark.run("loopback", benchmark::runLoopback);
+        }
+        if (modes.contains("ice")) {
+            benchmark.run("ice", benchmark::runIce);
+        }
+        if (modes.contains("local") || modes.contains("local-trickle")) {
+            benchmark.desktopConnection = new DesktopConnection(SetupBenchmark.class.getName());
+            String desktopVersion = java.lang.System.getProperty("com.openfin.demo.runtime.version", "stable");
+            RuntimeConfiguration configuration = new RuntimeConfiguration();
+            configuration.setRuntimeVersion(desktopVersion);
+            benchmark.desktopConnection.connect(configuration, benchmark, 60);
+            latch.await();
+        }
+        System.exit(0);
+    }
+}
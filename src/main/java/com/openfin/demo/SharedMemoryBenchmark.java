@@ -0,0 +1,215 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares shared memory with data channels between two JVMs on one host.  The benchmark starts a peer JVM, signaled
+ * over its standard input and output, which echoes messages of the ping channel and counts bytes of the stream channel.
+ * Reports round trip latency of small messages, and throughput of a stream of messages.
+ *
+ * webrtc: both sides use data channels.
+ * shm: both sides enable shared memory.
+ * fallback: only this side enables shared memory, so data channels are used.
+ *
+ * Arguments: comma separated modes, seconds of throughput run, message size, round trips
+ */
+public class SharedMemoryBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(SharedMemoryBenchmark.class);
+    private static final String SIGNAL_PREFIX = "SIGNAL ";
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final int PING_SIZE = 64;
+    private static final int WARMUP_ROUND_TRIPS = 1000;
+
+    private final int seconds;
+    private final int messageSize;
+    private final int roundTrips;
+
+    public SharedMemoryBenchmark(int seconds, int messageSize, int roundTrips) {
+        this.seconds = seconds;
+        this.messageSize = messageSize;
+        this.roundTrips = roundTrips;
+    }
+
+    private static Configuration createConfiguration(String pairingCode, boolean sharedMemory) {
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode(pairingCode);
+        cfg.setRTCOptions(RTCOptions.sameHost());
+        if (sharedMemory) {
+            cfg.setSharedMemoryOptions(new SharedMemoryOptions());
+        }
+        return cfg;
+    }
+
+    private void run(String mode) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process peer = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                SharedMemoryBenchmark.class.getName(), "peer", String.valueOf("shm".equals(mode)))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        PrintStream toPeer = new PrintStream(peer.getOutputStream(), true, StandardCharsets.UTF_8);
+        PipeConnection connection = new PipeConnection(createConfiguration("shmBenchmark-" + mode, !"webrtc".equals(mode)),
+                true, message -> toPeer.println(message));
+        Thread reader = new Thread(() -> readSignals(new BufferedReader(new InputStreamReader(peer.getInputStream(), StandardCharsets.UTF_8)), connection),
+                "SharedMemoryBenchmarkSignaling");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            connection.initialize();
+            connection.initializeOffer();
+            if (!connection.awaitOpen(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new Exception(String.format("Connection not open, %s", connection.getSetupTrace()));
+            }
+            logger.info("{}: shared memory {}", mode, connection.isSharedMemory());
+            this.runLatency(mode, connection.createChannel("ping"));
+            this.runThroughput(mode, connection.createChannel("stream"));
+        } finally {
+            connection.close();
+            toPeer.close();
+            if (!peer.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                peer.destroy();
+            }
+        }
+    }
+
+    private void runLatency(String mode, Channel channel) throws Exception {
+        ChannelPair.awaitOpen(channel, TIMEOUT_SECONDS * 1000);
+        channel.enableReceiveQueue(16);
+        ByteBuffer ping = ByteBuffer.allocateDirect(PING_SIZE);
+        LatencyHistogram roundTrip = new LatencyHistogram();
+        for (int i = 0; i < WARMUP_ROUND_TRIPS + this.roundTrips; i++) {
+            long start = System.nanoTime();
+            channel.send(ping.duplicate());
+            if (channel.receive(TIMEOUT_SECONDS, TimeUnit.SECONDS) == null) {
+                throw new Exception("Echo not received");
+            }
+            if (i >= WARMUP_ROUND_TRIPS) {
+                roundTrip.record(System.nanoTime() - start);
+            }
+        }
+        logger.info("{}: round trip of {} bytes p50 {} p90 {} p99 {} max {} ns", mode, PING_SIZE,
+                roundTrip.getValueAtPercentile(50), roundTrip.getValueAtPercentile(90),
+                roundTrip.getValueAtPercentile(99), roundTrip.getMax());
+    }
+
+    private void runThroughput(String mode, Channel channel) throws Exception {
+        ChannelPair.awaitOpen(channel, TIMEOUT_SECONDS * 1000);
+        channel.enableReceiveQueue(16);
+        ByteBuffer message = ByteBuffer.allocateDirect(this.messageSize);
+        long start = System.nanoTime();
+        long end = start + this.seconds * 1000_000_000L;
+        while (System.nanoTime() < end) {
+            channel.sendAndAwaitWritable(message.duplicate());
+        }
+        channel.send("end");
+        ChannelMessage reply = channel.receive(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (reply == null) {
+            throw new Exception("Byte count not received");
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long bytes = Long.parseLong(reply.getText());
+        logger.info("{}: throughput of {} byte messages {} MB/s, {} messages/s", mode,
+                this.messageSize, Math.round(bytes / elapsed / 1e5) / 10.0, Math.round(bytes / (double) this.messageSize / elapsed));
+    }
+
+    private static void readSignals(BufferedReader reader, PipeConnection connection) {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(SIGNAL_PREFIX)) {
+                    connection.onSignal(new JSONObject(line.substring(SIGNAL_PREFIX.length())));
+                }
+            }
+        } catch (Exception ex) {
+            logger.error("Error reading signals", ex);
+        }
+    }
+
+    /**
+     * The peer JVM, signaled over standard input and output until standard input is closed
+     */
+    private static void runPeer(boolean sharedMemory) throws Exception {
+        PrintStream out = System.out;
+        PipeConnection connection = new PipeConnection(createConfiguration("shmBenchmarkPeer", sharedMemory), false, message -> {
+            synchronized (out) {
+                out.println(SIGNAL_PREFIX + message);
+                out.flush();
+            }
+        });
+        connection.addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onStateChange(State state) {
+            }
+            @Override
+            public void onChannel(Channel channel) {
+                channel.addChannelListener(createPeerListener(channel));
+            }
+        });
+        connection.initialize();
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            connection.onSignal(new JSONObject(line));
+        }
+        connection.close();
+    }
+
+    private static ChannelListener createPeerListener(Channel channel) {
+        boolean echo = "ping".equals(channel.getName());
+        return new ChannelListener() {
+            private long bytes;
+
+            @Override
+            public void onStateChange(State state) {
+            }
+            @Override
+            public void onMessage(String message) {
+            }
+            @Override
+            public void onMessage(ChannelMessage message) {
+                try {
+                    if (echo) {
+                        ByteBuffer copy = ByteBuffer.allocate(message.size());
+                        copy.put(message.getData()).flip();
+                        channel.send(copy);
+                    } else if (message.isBinary()) {
+                        this.bytes += message.size();
+                    } else {
+                        channel.send(String.valueOf(this.bytes));
+                        this.bytes = 0;
+                    }
+                } catch (Exception ex) {
+                    logger.error("Error on channel {}", channel.getName(), ex);
+                }
+            }
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 1 && "peer".equals(args[0])) {
+            runPeer(Boolean.parseBoolean(args[1]));
+            System.exit(0);
+        }
+        List<String> modes = Arrays.asList((args.length > 0 ? args[0] : "webrtc,shm,fallback").split(","));
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int messageSize = args.length > 2 ? Integer.parseInt(args[2]) : 16 * 1024;
+        int roundTrips = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+        SharedMemoryBenchmark benchmark = new SharedMemoryBenchmark(seconds, messageSize, roundTrips);
+        for (String mode : modes) {
+            benchmark.run(mode);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,125 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens and closes pairs of LoopbackConnections, exchanging a message on a channel of each, and reports resident
+ * memory, thread counts and open Connections/Channels, to find native memory and thread leaks.  RSS and OS thread
+ * count are read from /proc/self/status, so they are only reported on Linux.  Exits with 1 if Connections or
+ * Channels are left open, which are logged, or the OS thread count grows.
+ *
+ * Arguments: number of connection pairs, pairs between reports
+ */
+public class SoakTest {
+    private final static Logger logger = LoggerFactory.getLogger(SoakTest.class);
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final int THREAD_GROWTH_LIMIT = 16;
+
+    private final int iterations;
+    private final int interval;
+
+    public SoakTest(int iterations, int interval) {
+        this.iterations = iterations;
+        this.interval = interval;
+    }
+
+    private void cycle(int i) throws Exception {
+        Configuration cfg = new Configuration();
+        cfg.setPairingCode("soak" + i);
+        LoopbackConnection connection = LoopbackConnection.createPair(cfg);
+        try {
+            connection.initializeOffer();
+            if (!connection.awaitOpen(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new Exception(String.format("Connection %d not open", i));
+            }
+            ChannelPair channels = ChannelPair.open(connection, "soak", TIMEOUT_SECONDS * 1000);
+            channels.remote.enableReceiveQueue(1);
+            channels.local.send("ping");
+            ChannelMessage message = channels.remote.receive(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (message == null || !"ping".equals(message.getText())) {
+                throw new Exception(String.format("Message not received on connection %d", i));
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return value in kB of a field of /proc/self/status, or count for Threads, -1 if not available
+     */
+    private static long procStatus(String field) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith(field + ":")) {
+                    return Long.parseLong(line.substring(field.length() + 1).replace("kB", "").trim());
+                }
+            }
+        } catch (Exception ex) {
+            logger.debug("Error reading /proc/self/status", ex);
+        }
+        return -1;
+    }
+
+    private static long[] sample() {
+        System.gc();
+        var runtime = Runtime.getRuntime();
+        return new long[] {
+                procStatus("VmRSS"),
+                procStatus("Threads"),
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                (runtime.totalMemory() - runtime.freeMemory()) / 1024
+        };
+    }
+
+    private static String format(long[] sample) {
+        return String.format("RSS %d kB, OS threads %d, JVM threads %d, heap %d kB, open connections %d, open channels %d",
+                sample[0], sample[1], sample[2], sample[3], ResourceTracker.getOpenConnections(),
+                ResourceTracker.getOpenChannels());
+    }
+
+    private boolean run() throws Exception {
+        long[] baseline = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < this.iterations; i++) {
+            this.cycle(i);
+            if ((i + 1) % this.interval == 0) {
+                long[] sample = sample();
+                if (baseline == null) {
+                    // first interval warms up the JIT, heap and WebRTC
+                    baseline = sample;
+                }
+                logger.info("{} connections, {} connections/sec, {}", i + 1,
+                        Math.round((i + 1) * 1e10 / (System.nanoTime() - start)) / 10.0, format(sample));
+            }
+        }
+
+        Thread.sleep(1000);
+        long[] end = sample();
+        logger.info("Done, {}", format(end));
+        boolean passed = ResourceTracker.reportOpen() == 0;
+        if (baseline != null) {
+            int measured = this.iterations - this.interval;
+            logger.info("Since first report: RSS growth {} kB ({} kB per 1000 connections), OS threads growth {}, JVM threads growth {}",
+                    end[0] - baseline[0], measured > 0 ? Math.round((end[0] - baseline[0]) * 10000.0 / measured) / 10.0 : 0.0,
+                    end[1] - baseline[1], end[2] - baseline[2]);
+            passed &= end[1] - baseline[1] <= THREAD_GROWTH_LIMIT;
+        }
+        logger.info(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int interval = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        boolean passed = new SoakTest(iterations, interval).run();
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,109 @@
+package com.openfin.demo;
+
+import com.openfin.webrtc.Configuration;
+import com.openfin.webrtc.Connection;
+import com.openfin.webrtc.SetupPhase;
+import dev.onvoid.webrtc.RTCSdpType;
+import dev.onvoid.webrtc.RTCSessionDescription;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Answering side of a connection for benchmarks, standing in for the JavaScript peer of LocalConnection.  Takes an
+ * offer, and hands the answer, with all ICE candidates, to a callback once ICE gathering completes.  Candidates
+ * trickled by the offerer are added once the offer is set.
+ */
+class StandInAnswerer extends Connection {
+    private final static Logger logger = LoggerFactory.getLogger(StandInAnswerer.class);
+
+    private final Consumer<JSONObject> answerCallback;
+    private boolean answerSent;
+    private boolean offerSet;
+    private final List<JSONObject> pendingCandidates = new ArrayList<>();
+
+    StandInAnswerer(Configuration configuration, Consumer<JSONObject> answerCallback) {
+        super(configuration);
+        this.answerCallback = answerCallback;
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        this.createPeerConnection(null);
+    }
+
+    /**
+     * Does nothing, the stand-in only answers offers passed to offer().  Connection never calls it, only offering
+     * subclasses call their own makeOffer().
+     */
+    @Override
+    protected void makeOffer() {
+        logger.warn("StandInAnswerer only answers, no offer made");
+    }
+
+    @Override
+    protected JSONObject onOffer(JSONObject payload) {
+        JSONObject ret = new JSONObject();
+        try {
+            this.setRemoteDescription(new RTCSessionDescription(RTCSdpType.OFFER, payload.getString("sdp")));
+            this.createAnswer();
+            ret.put("status", 200);
+        } catch (Exception ex) {
+            logger.error("Error setRemoteDescription", ex);
+            ret.put("status", 500);
+            ret.put("message", ex.getMessage());
+        }
+        return ret;
+    }
+
+    /**
+     * Take an offer.  The answer is passed to the callback later
+     */
+    void offer(JSONObject description) {
+        this.onOffer(description);
+        List<JSONObject> candidates;
+        synchronized (this) {
+            this.offerSet = true;
+            candidates = new ArrayList<>(this.pendingCandidates);
+            this.pendingCandidates.clear();
+        }
+        for (JSONObject candidate : candidates) {
+            this.addIceCandidate(candidate);
+        }
+    }
+
+    /**
+     * Take a candidate trickled by the offerer
+     *
+     * @param candidate candidate, null for end of candidates
+     */
+    void candidate(JSONObject candidate) {
+        if (candidate == null || candidate.optString(Connection.SDPCandidate).isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (!this.offerSet) {
+                this.pendingCandidates.add(candidate);
+                return;
+            }
+        }
+        this.addIceCandidate(candidate);
+    }
+
+    @Override
+    protected synchronized void onLastIceCandidate() {
+        if (this.answerSent) {
+            return;
+        }
+        this.answerSent = true;
+        JSONObject answer = new JSONObject();
+        answer.put("type", Connection.SDPAnswer);
+        answer.put("sdp", this.getLocalSdp());
+        this.markSetupPhase(SetupPhase.DESCRIPTION_SENT);
+        this.answerCallback.accept(answer);
+    }
+}
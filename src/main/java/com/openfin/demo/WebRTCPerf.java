@@ -11,10 +11,18 @@ import org.slf4j.LoggerFactory;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.concurrent.CountDownLatch;
 
+/**
+ * Sends messages of a given size at a given rate, and shows the rate received by the peer.
+ *
+ * Set com.openfin.demo.perf.record to a file to capture the traffic of the channel with ChannelRecorder, and
+ * com.openfin.demo.perf.replay to a captured file to send its messages instead, at the speed in
+ * com.openfin.demo.perf.replay.speed, a multiple of the recorded speed or "max".
+ */
 public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
     private final static Logger logger = LoggerFactory.getLogger(WebRTCPerf.class);
 
@@ -26,6 +34,11 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
     private static String PERFORMANCE_CHANNEL_NAME = "WebRTCPerfChannel";
     private JSONObject sampleMessage;
     private SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+    private final String recordFile = System.getProperty("com.openfin.demo.perf.record");
+    private final String replayFile = System.getProperty("com.openfin.demo.perf.replay");
+    private final String replaySpeed = System.getProperty("com.openfin.demo.perf.replay.speed", "1");
+    private ChannelRecorder recorder;
+    private volatile ChannelReplayer replayer;
 
     private JFrame demoWindow;
     private JPanel glassPane;
@@ -34,13 +47,12 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
     private JTextField tfMSize;
     private JTextField tfMPS;
     private JTextField tfTotalCount;
+    private JCheckBox cbPaced;
     private JButton btnStart;
 
     // performance Metrics
-    private long currentMessageId = 0;
-    private int lastMPS = 0;
-    private long currentStartTime = 0;
-    private int currentCount = 0;
+    private volatile long currentMessageId = 0;    // sent
+    private final ReceiveStats receiveStats = new ReceiveStats();
 
     public WebRTCPerf() throws Exception {
         this.demoWindow = new JFrame("OpenFin WebRTC Performance test");
@@ -62,6 +74,9 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
             }
             @Override
             public void onMessage(String message) {
+            }
+            @Override
+            public void onMessage(ChannelMessage message) {
                 WebRTCPerf.this.onPerfData(message);
             }
         };
@@ -97,7 +112,7 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
     private JPanel createContentPanel() {
         JPanel p = new JPanel(new BorderLayout());
         p.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        p.setPreferredSize(new Dimension(550, 200));
+        p.setPreferredSize(new Dimension(550, 230));
         p.add(this.createPerfPanel(), BorderLayout.CENTER);
         return p;
     }
@@ -108,6 +123,7 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
         this.tfMSize = new JTextField("1024");
         this.tfMPS = new JTextField("500");
         this.tfTotalCount = new JTextField("");
+        this.cbPaced = new JCheckBox("spread messages evenly over each second");
         JPanel pnlCenter = new JPanel(new GridBagLayout());
         GridBagConstraints gbConst = new GridBagConstraints();
         gbConst.gridx = 0;
@@ -121,6 +137,8 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
         gbConst.gridy++;
         pnlCenter.add(new JLabel("Total Count"), gbConst);
         gbConst.gridy++;
+        pnlCenter.add(new JLabel("Paced"), gbConst);
+        gbConst.gridy++;
         gbConst.gridx = 1;
         gbConst.gridy = 0;
         gbConst.weightx = 0.5;
@@ -132,6 +150,8 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
         gbConst.gridy++;
         pnlCenter.add(tfTotalCount, gbConst);
         gbConst.gridy++;
+        pnlCenter.add(cbPaced, gbConst);
+        gbConst.gridy++;
         pnlCenter.add(new JLabel(), gbConst);
 
         this.btnStart = new JButton("Start");
@@ -149,15 +169,25 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
         return pnl;
     }
 
+    /**
+     * Show received messages per second, on the Swing thread
+     */
     private void updateMetrics() {
-        if (this.currentMessageId > 0) {
-            this.tfMPS.setText(String.format("%d", this.lastMPS));
-            this.tfTotalCount.setText(String.format("%d", this.currentMessageId));
+        ReceiveStats.Sample sample = this.receiveStats.sample();
+        if (this.receiveStats.getMessages() > 0) {
+            this.tfMPS.setText(String.format("%.0f", sample.getMessagesPerSecond()));
+            long lastId = sample.getLastId();
+            this.tfTotalCount.setText(String.format("%d", lastId != ReceiveStats.NO_ID ? lastId : this.receiveStats.getMessages()));
+            logger.info("received {}", sample);
         }
     }
 
     private void toggleSend() {
-        if (this.sendTimer.isRunning()) {
+        if (this.replayer != null) {
+            this.replayer.stop();
+            this.replayer = null;
+            this.btnStart.setText("Start");
+        } else if (this.sendTimer.isRunning()) {
             this.sendTimer.stop();
             this.btnStart.setText("Start");
 //            this.channel.removeChannelListener(this.channelListener);
@@ -167,21 +197,82 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
             this.btnStart.setText("Stop");
             if (this.channel == null) {
                 this.channel = this.webRTCConnection.createChannel(PERFORMANCE_CHANNEL_NAME);
+                // the first sends come before the channel opens
+                this.channel.enableSendBuffering(Integer.parseInt(this.tfMPS.getText()) * 2);
                 this.channel.addChannelListener(this.channelListener);
+                this.startRecording();
+            }
+            if (this.replayFile != null) {
+                this.startReplay();
+                return;
             }
             this.currentMessageId = 0;
-            this.currentStartTime = 0;
-            this.currentCount = 0;
             this.sampleMessage = new JSONObject();
             int len = Integer.parseInt(this.tfMSize.getText());
             String payload = String.format("%0" + len + "d", 8);
             this.sampleMessage.put("payload", payload);
+            this.channel.setRateLimit(this.cbPaced.isSelected() ? this.createRateLimit() : null);
             this.sendTimer.restart();
             this.statTimer.stop();
             logger.info("Starting with MSP {} msg size {}", Integer.parseInt(this.tfMPS.getText()), payload.length());
         }
     }
 
+    private void startRecording() {
+        if (this.recordFile == null) {
+            return;
+        }
+        try {
+            if (this.recorder == null) {
+                this.recorder = new ChannelRecorder(Paths.get(this.recordFile));
+                Runtime.getRuntime().addShutdownHook(new Thread(this.recorder::close));
+            }
+            this.channel.setRecorder(this.recorder);
+        } catch (Exception ex) {
+            logger.error("Error recording to {}", this.recordFile, ex);
+        }
+    }
+
+    /**
+     * Send captured messages instead of the synthetic payload, until the recording ends or Stop is pressed
+     */
+    private void startReplay() {
+        ChannelReplayer replayer = new ChannelReplayer(this.channel,
+                "max".equals(this.replaySpeed) ? ChannelReplayer.MAX_SPEED : Double.parseDouble(this.replaySpeed));
+        replayer.setSendListener(nanos -> this.currentMessageId++);
+        this.replayer = replayer;
+        Thread thread = new Thread(() -> {
+            try {
+                replayer.replay(Paths.get(this.replayFile));
+            } catch (Exception ex) {
+                logger.error("Error replaying {}", this.replayFile, ex);
+            }
+            SwingUtilities.invokeLater(() -> {
+                this.tfTotalCount.setText(String.format("%d", replayer.getMessages()));
+                if (this.replayer == replayer) {
+                    this.replayer = null;
+                    this.btnStart.setText("Start");
+                }
+            });
+        }, "WebRTCPerfReplay");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Replaying {} at speed {}", this.replayFile, this.replaySpeed);
+    }
+
+    /**
+     * Pace messages at MPS, with bursts of up to 10ms worth of messages, instead of sending each second's messages at once
+     */
+    private RateLimitOptions createRateLimit() {
+        int mps = Integer.parseInt(this.tfMPS.getText());
+        RateLimitOptions options = new RateLimitOptions();
+        options.setMessagesPerSecond(mps);
+        options.setMessageBurst(Math.max(mps / 100, 1));
+        options.setMode(RateLimitOptions.Mode.PACE);
+        options.setMaxQueuedMessages(mps * 2);
+        return options;
+    }
+
     private void spam() {
         long start = System.currentTimeMillis();
         for (int i = 0; i < Integer.parseInt(this.tfMPS.getText()); i++) {
@@ -202,6 +293,11 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
         }
         this.tfTotalCount.setText(String.format("%d", this.currentMessageId));
         logger.info("{} {} {}", dateFormat.format(new Date()), this.currentMessageId, (System.currentTimeMillis() - start) );
+        if (this.channel.getRateLimiter() != null) {
+            logger.info("bufferedAmount {} pacing {}", this.channel.getBufferedAmount(), this.channel.getRateLimiter());
+        } else {
+            logger.info("bufferedAmount {}", this.channel.getBufferedAmount());
+        }
         int elapse = (int) (System.currentTimeMillis() - start - 1000);
         sendTimer.setDelay( elapse > 0 ? elapse : 0  );
     }
@@ -230,6 +326,9 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
     @Override
     public void onClose(String s) {
         logger.info("onClose, value={}", s);
+        if (this.recorder != null) {
+            this.recorder.close();
+        }
         latch.countDown();
     }
 
@@ -261,30 +360,18 @@ public class WebRTCPerf implements DesktopStateListener, ConnectionListener {
     @Override
     public void onChannel(Channel channel) {
         logger.info("new Channel {}", channel.getName());
-        if (this.channel.getName().equals(PERFORMANCE_CHANNEL_NAME)) {
+        if (channel.getName().equals(PERFORMANCE_CHANNEL_NAME)) {
             this.channel = channel;
             this.channel.addChannelListener(this.channelListener);
+            this.startRecording();
         }
     }
 
-    private void onPerfData(String s) {
-        JSONObject msg = new JSONObject(s);
-        this.currentMessageId = msg.getInt("id");
-        if (this.currentMessageId == 1) {
-            this.currentStartTime = 0;
-            this.currentCount = 0;
-            this.lastMPS = 0;
-        }
-        this.currentCount++;
-        long now = System.currentTimeMillis();
-        if (this.currentStartTime == 0) {
-            this.currentStartTime = now;
-        }
-        else if ((now - this.currentStartTime) >= 1000) {
-            this.lastMPS = this.currentCount;
-            this.currentCount = 0;
-            this.currentStartTime = now;
-        }
+    /**
+     * Count a received message, on the WebRTC thread
+     */
+    private void onPerfData(ChannelMessage message) {
+        this.receiveStats.onMessage(message);
         if (!this.statTimer.isRunning()) {
             this.statTimer.start();
         }
@@ -0,0 +1,227 @@
+/**
+ * Sends the same messages to a group of Channels, which can belong to different Connections.  A message is encoded
+ * once, and every member sends a read-only view of the same buffer.  A member whose bufferedAmount is over the limit is
+ * either skipped for the message or removed from the group, so one slow peer does not hold up the others.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BroadcastGroup {
+    private final static Logger logger = LoggerFactory.getLogger(BroadcastGroup.class);
+
+    public static final long DEFAULT_BUFFERED_AMOUNT_LIMIT = 4 * 1024 * 1024;
+
+    public enum SlowMemberPolicy {
+        SKIP,       // skip messages for the member until its bufferedAmount is under the limit
+        REMOVE      // remove the member from the group
+    }
+
+    private final long bufferedAmountLimit;
+    private final SlowMemberPolicy policy;
+    private final CopyOnWriteArrayList<Member> members;
+    private final LongAdder broadcasts = new LongAdder();
+
+    /**
+     * Member of a group, with its delivery statistics
+     */
+    public static class Member implements ChannelListener {
+        private final BroadcastGroup group;
+        private final Channel channel;
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder sentBytes = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicLong maxLag = new AtomicLong();
+
+        private Member(BroadcastGroup group, Channel channel) {
+            this.group = group;
+            this.channel = channel;
+        }
+
+        public Channel getChannel() {
+            return this.channel;
+        }
+
+        public long getSentMessages() {
+            return this.sent.sum();
+        }
+
+        public long getSentBytes() {
+            return this.sentBytes.sum();
+        }
+
+        /**
+         * @return number of messages not sent to the member because it was over the bufferedAmount limit
+         */
+        public long getSkippedMessages() {
+            return this.skipped.sum();
+        }
+
+        public long getFailedMessages() {
+            return this.failed.sum();
+        }
+
+        /**
+         * @return bytes sent to the member and not yet transmitted
+         */
+        public long getLag() {
+            return this.channel.getBufferedAmount();
+        }
+
+        public long getMaxLag() {
+            return this.maxLag.get();
+        }
+
+        @Override
+        public void onStateChange(State state) {
+            if (state == State.CLOSED) {
+                this.group.remove(this.channel);
+            }
+        }
+
+        @Override
+        public void onMessage(String message) {
+        }
+
+        @Override
+        public void onMessage(ChannelMessage message) {
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: sent %d, skipped %d, failed %d, lag %d, max lag %d", this.channel.getName(),
+                    getSentMessages(), getSkippedMessages(), getFailedMessages(), getLag(), getMaxLag());
+        }
+    }
+
+    public BroadcastGroup() {
+        this(DEFAULT_BUFFERED_AMOUNT_LIMIT, SlowMemberPolicy.SKIP);
+    }
+
+    /**
+     * @param bufferedAmountLimit a member with bufferedAmount above the limit is slow
+     * @param policy what to do with slow members
+     */
+    public BroadcastGroup(long bufferedAmountLimit, SlowMemberPolicy policy) {
+        this.bufferedAmountLimit = bufferedAmountLimit;
+        this.policy = policy;
+        this.members = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Add a Channel to the group.  It is removed when it is closed
+     *
+     * @return the member, null if the Channel is already a member
+     */
+    public synchronized Member add(Channel channel) {
+        if (this.getMember(channel) != null) {
+            return null;
+        }
+        var member = new Member(this, channel);
+        this.members.add(member);
+        channel.addChannelListener(member);
+        return member;
+    }
+
+    public synchronized boolean remove(Channel channel) {
+        var member = this.getMember(channel);
+        if (member != null && this.members.remove(member)) {
+            channel.removeChannelListener(member);
+            return true;
+        }
+        return false;
+    }
+
+    private Member getMember(Channel channel) {
+        for (var member : this.members) {
+            if (member.channel == channel) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    public List<Member> getMembers() {
+        return new ArrayList<>(this.members);
+    }
+
+    public int size() {
+        return this.members.size();
+    }
+
+    /**
+     * Send a text message to all members.  The message is encoded once for all of them
+     *
+     * @return number of members the message was sent to
+     */
+    public int broadcast(String message) {
+        return this.broadcast(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)), true);
+    }
+
+    /**
+     * Send a binary message to all members
+     *
+     * @param data message from position to limit, shared read-only by all members.  Sends copy it, so it can be
+     *             reused when broadcast returns.  Position is not changed
+     * @return number of members the message was sent to
+     */
+    public int broadcast(ByteBuffer data) {
+        return this.broadcast(data, false);
+    }
+
+    private int broadcast(ByteBuffer data, boolean text) {
+        this.broadcasts.increment();
+        ByteBuffer shared = data.asReadOnlyBuffer();
+        int size = shared.remaining();
+        int count = 0;
+        for (var member : this.members) {
+            long lag = member.channel.getBufferedAmount();
+            member.maxLag.accumulateAndGet(lag, Math::max);
+            if (lag > this.bufferedAmountLimit) {
+                member.skipped.increment();
+                if (this.policy == SlowMemberPolicy.REMOVE && this.remove(member.channel)) {
+                    logger.info("Removed slow member {} with bufferedAmount {}", member.channel.getName(), lag);
+                }
+                continue;
+            }
+            try {
+                // each member gets its own position and limit over the same bytes
+                member.channel.send(shared.duplicate(), text);
+                member.sent.increment();
+                member.sentBytes.add(size);
+                count++;
+            } catch (Exception ex) {
+                member.failed.increment();
+                logger.error("Error broadcasting to {}", member.channel.getName(), ex);
+            }
+        }
+        return count;
+    }
+
+    public long getBroadcasts() {
+        return this.broadcasts.sum();
+    }
+
+    @Override
+    public String toString() {
+        long sent = 0, skipped = 0, failed = 0, maxLag = 0;
+        for (var member : this.members) {
+            sent += member.getSentMessages();
+            skipped += member.getSkippedMessages();
+            failed += member.getFailedMessages();
+            maxLag = Math.max(maxLag, member.getMaxLag());
+        }
+        return String.format("%d members, %d broadcasts, sent %d, skipped %d, failed %d, max lag %d",
+                this.members.size(), getBroadcasts(), sent, skipped, failed, maxLag);
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Applies candidate filters of RTCOptions for one Connection.  Candidates are in the SDP format of RTCIceCandidate:
+ *
+ * candidate:foundation component protocol priority address port typ type ...
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+
+import static java.util.Objects.isNull;
+
+class CandidateFilter {
+    private final static Logger logger = LoggerFactory.getLogger(CandidateFilter.class);
+    private static final String SDP_LINE_PREFIX = "a=candidate:";
+
+    private final RTCOptions options;
+    private String pinnedAddress;   // first non-loopback local address, with singleAddress, guarded by this
+
+    CandidateFilter(RTCOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * @return true if the local candidate can be signaled to the peer
+     */
+    synchronized boolean acceptLocal(String candidate) {
+        String[] fields = split(candidate);
+        if (isNull(fields) || !this.acceptTypeAndProtocol(fields)) {
+            return false;
+        }
+        String address = fields[4];
+        InetAddress inetAddress = parseAddress(address);
+        if (!this.options.isIpv6() && address.contains(":")) {
+            return false;
+        }
+        if (!this.options.getNetworkInterfaces().isEmpty() && !this.isOnNetworkInterface(inetAddress)) {
+            return false;
+        }
+        if (this.options.isSingleAddress() && !(inetAddress != null && inetAddress.isLoopbackAddress())) {
+            if (isNull(this.pinnedAddress)) {
+                this.pinnedAddress = address;
+                logger.debug("Signaling candidates of {} only", address);
+            }
+            return this.pinnedAddress.equals(address);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the candidate from the peer can be added
+     */
+    boolean acceptRemote(String candidate) {
+        String[] fields = split(candidate);
+        return isNull(fields) || this.acceptTypeAndProtocol(fields);
+    }
+
+    /**
+     * @return the local SDP without candidate lines that are not accepted
+     */
+    String filterLocalSdp(String sdp) {
+        return this.filterSdp(sdp, true);
+    }
+
+    /**
+     * @return the SDP from the peer without candidate lines that are not accepted
+     */
+    String filterRemoteSdp(String sdp) {
+        return this.filterSdp(sdp, false);
+    }
+
+    private String filterSdp(String sdp, boolean local) {
+        StringBuilder sb = new StringBuilder(sdp.length());
+        int start = 0;
+        while (start < sdp.length()) {
+            int end = sdp.indexOf('\n', start);
+            end = end < 0 ? sdp.length() : end + 1;
+            if (sdp.startsWith(SDP_LINE_PREFIX, start)) {
+                String candidate = sdp.substring(start + 2, end).trim();
+                if (!(local ? this.acceptLocal(candidate) : this.acceptRemote(candidate))) {
+                    start = end;
+                    continue;
+                }
+            }
+            sb.append(sdp, start, end);
+            start = end;
+        }
+        return sb.toString();
+    }
+
+    private boolean acceptTypeAndProtocol(String[] fields) {
+        if (!this.options.getProtocols().isEmpty()) {
+            RTCOptions.Protocol protocol = "tcp".equalsIgnoreCase(fields[2]) ? RTCOptions.Protocol.TCP : RTCOptions.Protocol.UDP;
+            if (!this.options.getProtocols().contains(protocol)) {
+                return false;
+            }
+        }
+        return this.options.getCandidateTypes().isEmpty()
+                || this.options.getCandidateTypes().contains(RTCOptions.CandidateType.parse(fields[7]));
+    }
+
+    private boolean isOnNetworkInterface(InetAddress address) {
+        try {
+            NetworkInterface networkInterface = isNull(address) ? null : NetworkInterface.getByInetAddress(address);
+            return networkInterface != null && this.options.getNetworkInterfaces().contains(networkInterface.getName());
+        } catch (Exception ex) {
+            logger.debug("Error finding network interface of {}", address, ex);
+            return false;
+        }
+    }
+
+    /**
+     * @return address of a candidate, null for host names like mDNS .local names, which are not resolved
+     */
+    private static InetAddress parseAddress(String address) {
+        if (!address.contains(":") && !address.chars().allMatch(c -> c == '.' || Character.isDigit(c))) {
+            return null;
+        }
+        try {
+            // a literal address is not looked up
+            return InetAddress.getByName(address);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private static String[] split(String candidate) {
+        String[] fields = candidate.trim().split("\\s+");
+        return fields.length >= 8 && "typ".equals(fields[6]) ? fields : null;
+    }
+}
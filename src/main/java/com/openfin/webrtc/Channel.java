@@ -1,5 +1,6 @@
 /**
- * a Channel backed by WebRTC data channel
+ * a Channel backed by WebRTC data channel.  Messages can be carried by a SharedMemoryTransport instead, negotiated by
+ * Connection, with the data channel still carrying the state of the channel.
  */
 
 package com.openfin.webrtc;
@@ -11,25 +12,628 @@ import dev.onvoid.webrtc.RTCDataChannelState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 public class Channel implements RTCDataChannelObserver {
     private final static Logger logger = LoggerFactory.getLogger(Channel.class);
-    private RTCDataChannel dataChannel;
+    private final String name;
+    private volatile RTCDataChannel dataChannel;    // null when closed
+    private final ResourceTracker.Handle handle;
     private CopyOnWriteArrayList<ChannelListener> channelListeners;
+    private volatile ChannelCompressor compressor;
+    private final ChannelMessage receivedMessage;   // reused for every received message
+
+    // sequence numbering, sent frames are prefixed with [flags][sequence number]
+    private static final int SEQUENCE_HEADER_SIZE = 1 + Long.BYTES;
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private volatile boolean sequencing;
+    private long lastSentSequence;  // guarded by sendLock
+    private volatile SequenceTracker sequenceTracker;
+    private volatile GapListener gapListener;
+    private volatile SendScheduler sendScheduler;
+    private volatile ChannelRateLimiter rateLimiter;
+    private volatile SharedMemoryTransport sharedMemory;
+
+    // journal of sent frames, replayed after the last sequence number the peer announces when the channel opens
+    private static final byte FLAG_CONTROL = 0x40;
+    private static final byte CONTROL_RESUME = 1;
+    private static final int REPLAY_BATCH_BYTES = 1024 * 1024;
+    private static final long REPLAY_WRITABLE_POLL_MILLIS = 100;
+    private volatile ChannelJournal journal;
+    private volatile boolean resumed;   // journaled frames are only sent once resumed, set with sendLock held
+                                        // and cleared without it when the data channel closes
+    private boolean replaying;          // guarded by sendLock
+    private volatile ChannelRecorder recorder;
+
+    // completed when the data channel opens, sends before then are queued in preOpenQueue if it is enabled
+    private final CompletableFuture<Channel> openFuture = new CompletableFuture<>();
+    private final ReentrantLock preOpenLock = new ReentrantLock();
+    private volatile ArrayDeque<PendingSend> preOpenQueue;     // guarded by preOpenLock, null once flushed
+    private int preOpenCapacity;                                // guarded by preOpenLock
+    private boolean preOpenEnded;                               // guarded by preOpenLock, set on open or close
+    // queued messages are not sent on WebRTC callback threads, which a rate limited send would park
+    private static final ExecutorService preOpenExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "ChannelPreOpenFlush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // blocking API, waits on ReentrantLock conditions so virtual threads are not pinned
+    public static final int DEFAULT_RECEIVE_QUEUE_CAPACITY = 65536;
+    public static final long DEFAULT_WRITABLE_THRESHOLD = 1024 * 1024;
+    private volatile ChannelReceiveQueue receiveQueue;
+    private volatile long writableThreshold = DEFAULT_WRITABLE_THRESHOLD;
+    private final ReentrantLock writableLock = new ReentrantLock();
+    private final Condition writable = this.writableLock.newCondition();
+    private volatile int writableWaiters;   // updated with writableLock held
 
     public Channel(RTCDataChannel dataChannel) {
+        this.name = dataChannel.getLabel();
         this.dataChannel = dataChannel;
         this.dataChannel.registerObserver(this);
+        this.handle = ResourceTracker.trackChannel(this.name);
         this.channelListeners = new CopyOnWriteArrayList<>();
+        this.receivedMessage = new ChannelMessage();
+        if (dataChannel.getState() == RTCDataChannelState.OPEN) {
+            this.openFuture.complete(this);
+        }
     }
 
     public String getName() {
-        return this.dataChannel.getLabel();
+        return this.name;
+    }
+
+    /**
+     * Carry messages in shared memory, before the data channel opens
+     */
+    void setSharedMemoryTransport(SharedMemoryTransport transport) {
+        this.sharedMemory = transport;
+        transport.start(this);
+    }
+
+    /**
+     * @return true if messages are carried in shared memory instead of the data channel
+     */
+    public boolean isSharedMemory() {
+        return nonNull(this.sharedMemory);
+    }
+
+    /**
+     * Enable or disable compression of messages.  Compression has to be enabled, with the same dictionary, on both sides of the channel.
+     * Messages being sent or received meanwhile use the new setting.
+     *
+     * @param options compression options, null to disable compression
+     */
+    public void setCompression(CompressionOptions options) {
+        var previous = this.compressor;
+        this.compressor = nonNull(options) ? new ChannelCompressor(options) : null;
+        if (nonNull(previous)) {
+            previous.close();
+        }
+    }
+
+    public ChannelCompressor getCompressor() {
+        return this.compressor;
+    }
+
+    /**
+     * Enable or disable sequence numbering of messages.  When enabled, every sent message is stamped with a sequence
+     * number, and sequence numbers of received messages are tracked.  It has to be enabled on both sides of the channel.
+     *
+     * @param enabled true to enable sequence numbering
+     * @param windowSize number of sequence numbers tracked for detecting reordering and duplicates
+     */
+    public void setSequencing(boolean enabled, int windowSize) {
+        this.sendLock.lock();
+        try {
+            this.sequenceTracker = enabled ? new SequenceTracker(windowSize) : null;
+            this.lastSentSequence = 0;
+            this.sequencing = enabled;
+        } finally {
+            this.sendLock.unlock();
+        }
+    }
+
+    public void setSequencing(boolean enabled) {
+        this.setSequencing(enabled, SequenceTracker.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @return tracker of received sequence numbers, null if sequencing is disabled
+     */
+    public SequenceTracker getSequenceTracker() {
+        return this.sequenceTracker;
+    }
+
+    public long getLastSentSequence() {
+        this.sendLock.lock();
+        try {
+            return this.lastSentSequence;
+        } finally {
+            this.sendLock.unlock();
+        }
+    }
+
+    /**
+     * @param listener called when sequence numbers are skipped by a received message, null to remove
+     */
+    public void setGapListener(GapListener listener) {
+        this.gapListener = listener;
+    }
+
+    /**
+     * Journal sent messages, and replay the ones the peer has not received when the channel opens.  Sequencing is
+     * enabled, and has to be enabled on the peer.  The peer announces the last sequence number it received, which it
+     * keeps in a journal of its own, and sends wait in the journal until then.  A peer without a journal gets the
+     * messages that were not sent once resumeTimeoutMillis passes.
+     *
+     * The journal file is named by the channel, so a channel with the same name, like one of a new connection after a
+     * reconnect, continues its sequence numbers and takes it over.  Messages sent on this channel while its data
+     * channel is closed are journaled for the channel taking over.
+     *
+     * @param options journal options, null to stop journaling
+     * @throws IOException if the journal file can not be opened
+     */
+    public void setJournal(JournalOptions options) throws IOException {
+        ChannelJournal journal = nonNull(options)
+                ? ChannelJournal.attach(Paths.get(options.getDirectory(), this.name.replaceAll("[^A-Za-z0-9._-]", "_") + ".journal"), options, this)
+                : null;
+        ChannelJournal previous;
+        this.sendLock.lock();
+        try {
+            if (nonNull(journal)) {
+                if (!this.sequencing) {
+                    this.setSequencing(true);
+                }
+                this.lastSentSequence = journal.getLastSequence();
+                this.sequenceTracker.startAfter(journal.getLastReceived());
+                this.resumed = false;
+            }
+            previous = this.journal;
+            this.journal = journal;
+        } finally {
+            this.sendLock.unlock();
+        }
+        if (nonNull(previous)) {
+            previous.detach(this);
+        }
+        if (nonNull(journal) && this.isOpen()) {
+            this.announce(journal);
+        }
+    }
+
+    /**
+     * Tell the peer the last sequence number received, and resume sending after the timeout if it does not answer
+     */
+    private void announce(ChannelJournal journal) {
+        ByteBuffer control = ByteBuffer.allocate(SEQUENCE_HEADER_SIZE + 1 + Long.BYTES);
+        control.put(FLAG_CONTROL).putLong(0).put(CONTROL_RESUME).putLong(journal.getLastReceived()).flip();
+        try {
+            var dataChannel = this.dataChannel;
+            if (nonNull(dataChannel)) {
+                this.write(dataChannel, control, true);
+            }
+        } catch (Exception ex) {
+            logger.error("Error announcing last received sequence on channel {}", this.name, ex);
+        }
+        ChannelJournal.timer.schedule(() -> ChannelJournal.executor.execute(() -> this.resume(journal.getLastTransmitted())),
+                journal.getOptions().getResumeTimeoutMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send journaled frames after the last sequence number received by the peer, then send new frames as they come.
+     *
+     * Frames are copied from the journal in batches with the locks held, and sent after releasing them, since waiting
+     * for the data channel to drain needs the WebRTC threads, which take sendLock to send and to report state changes.
+     * Frames journaled meanwhile are sent by the next batch, and the channel is resumed once a batch finds none.
+     */
+    private void resume(long lastReceived) {
+        var journal = this.journal;
+        var dataChannel = this.dataChannel;
+        this.sendLock.lock();
+        try {
+            if (this.resumed || this.replaying || isNull(journal) || isNull(dataChannel) || !this.isOpen()) {
+                return;
+            }
+            this.replaying = true;
+        } finally {
+            this.sendLock.unlock();
+        }
+        long after = lastReceived;
+        long replayed = 0;
+        try {
+            while (true) {
+                List<ByteBuffer> frames = new ArrayList<>();
+                this.sendLock.lock();
+                try {
+                    if (this.journal != journal || this.dataChannel != dataChannel) {
+                        return;
+                    }
+                    journal.lock();
+                    try {
+                        if (!journal.isOwner(this)) {
+                            return;
+                        }
+                        if (after > journal.getLastTransmitted()) {
+                            journal.setLastTransmitted(after);
+                        }
+                        long[] bytes = new long[1];
+                        journal.replay(after, frame -> {
+                            ByteBuffer copy = ByteBuffer.allocate(frame.remaining()).put(frame).flip();
+                            frames.add(copy);
+                            bytes[0] += copy.remaining();
+                            return bytes[0] < REPLAY_BATCH_BYTES;
+                        });
+                        if (frames.isEmpty()) {
+                            journal.setLastTransmitted(journal.getLastSequence());
+                            this.resumed = true;
+                            logger.info("Channel {} replayed {} messages after sequence {}", this.name, replayed, lastReceived);
+                            return;
+                        }
+                    } finally {
+                        journal.unlock();
+                    }
+                } finally {
+                    this.sendLock.unlock();
+                }
+                for (ByteBuffer frame : frames) {
+                    // replays can be larger than the data channel buffers
+                    while (!this.awaitWritable(REPLAY_WRITABLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        // awaitWritable throws IllegalStateException once the channel closes
+                    }
+                    this.write(dataChannel, frame, true);
+                }
+                replayed += frames.size();
+                after = frames.get(frames.size() - 1).getLong(1);
+            }
+        } catch (IllegalStateException ex) {
+            logger.debug("Channel {} closed while replaying its journal after sequence {}", this.name, after);
+        } catch (Exception ex) {
+            logger.error("Error replaying journal of channel {}", this.name, ex);
+        } finally {
+            this.sendLock.lock();
+            try {
+                this.replaying = false;
+            } finally {
+                this.sendLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Process a control frame of the peer, after the sequencing header
+     */
+    private void onControl(ByteBuffer control) {
+        if (control.remaining() >= 1 + Long.BYTES && control.get() == CONTROL_RESUME) {
+            long lastReceived = control.getLong();
+            logger.debug("Peer of channel {} received up to sequence {}", this.name, lastReceived);
+            if (nonNull(this.journal)) {
+                ChannelJournal.executor.execute(() -> this.resume(lastReceived));
+            }
+        }
+    }
+
+    /**
+     * Capture messages sent and received on this channel
+     *
+     * @param recorder recorder, which can be shared by channels, null to stop capturing.  It is not closed by the channel
+     */
+    public void setRecorder(ChannelRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public ChannelRecorder getRecorder() {
+        return this.recorder;
+    }
+
+    /**
+     * Limit the rate of sent messages
+     *
+     * @param options rate limit options, null to remove the limit.  Messages queued by a previous limit are discarded
+     */
+    public void setRateLimit(RateLimitOptions options) {
+        var previous = this.rateLimiter;
+        this.rateLimiter = nonNull(options) ? new ChannelRateLimiter(this, options) : null;
+        if (nonNull(previous)) {
+            previous.close();
+        }
+    }
+
+    /**
+     * @return rate limiter of the channel, null if rate is not limited
+     */
+    public ChannelRateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    private static class PendingSend {
+        final ByteBuffer data;
+        final boolean text;
+
+        PendingSend(ByteBuffer data, boolean text) {
+            this.data = data;
+            this.text = text;
+        }
+    }
+
+    /**
+     * @return future completed with this channel when it opens, or completed exceptionally if it closes first
+     */
+    public CompletableFuture<Channel> getOpenFuture() {
+        return this.openFuture.copy();
+    }
+
+    /**
+     * Queue messages sent before the channel opens, instead of failing to send them, and send them in order when it
+     * opens, before messages sent after.  Does nothing if the channel is already open.
+     *
+     * @param capacity maximum number of queued messages, sends fail with IllegalStateException when the queue is full
+     */
+    public void enableSendBuffering(int capacity) {
+        this.preOpenLock.lock();
+        try {
+            if (!this.preOpenEnded && !this.openFuture.isDone()) {
+                if (isNull(this.preOpenQueue)) {
+                    this.preOpenQueue = new ArrayDeque<>(Math.min(capacity, 1024));
+                }
+                this.preOpenCapacity = capacity;
+            }
+        } finally {
+            this.preOpenLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the message is queued until the channel opens
+     */
+    private boolean queuePreOpen(ByteBuffer data, boolean text) {
+        if (isNull(this.preOpenQueue)) {
+            return false;
+        }
+        this.preOpenLock.lock();
+        try {
+            var queue = this.preOpenQueue;
+            if (isNull(queue)) {
+                return false;
+            }
+            if (queue.size() >= this.preOpenCapacity) {
+                throw new IllegalStateException(String.format("Channel %s has %d messages queued since before it opened", this.name, queue.size()));
+            }
+            ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+            copy.put(data.duplicate()).flip();
+            queue.add(new PendingSend(copy, text));
+            return true;
+        } finally {
+            this.preOpenLock.unlock();
+        }
+    }
+
+    /**
+     * Stop buffering when the channel opens, and send the queued messages on preOpenExecutor
+     */
+    private void endPreOpen() {
+        boolean queued;
+        this.preOpenLock.lock();
+        try {
+            this.preOpenEnded = true;
+            queued = nonNull(this.preOpenQueue);
+        } finally {
+            this.preOpenLock.unlock();
+        }
+        if (queued) {
+            preOpenExecutor.execute(this::flushPreOpen);
+        }
+    }
+
+    /**
+     * Send messages queued before the channel opened.  Sends meanwhile are added to the queue until it is empty, so
+     * they go after the queued messages.  Messages are dispatched without preOpenLock, since rate limiting can park.
+     */
+    private void flushPreOpen() {
+        int sent = 0;
+        while (true) {
+            PendingSend message;
+            this.preOpenLock.lock();
+            try {
+                var queue = this.preOpenQueue;
+                if (isNull(queue)) {
+                    // dropped by close
+                    return;
+                }
+                message = queue.poll();
+                if (isNull(message)) {
+                    this.preOpenQueue = null;
+                    break;
+                }
+            } finally {
+                this.preOpenLock.unlock();
+            }
+            try {
+                this.dispatch(message.data, message.text);
+            } catch (Exception ex) {
+                logger.error("Error sending queued message on channel {}", this.name, ex);
+            }
+            sent++;
+        }
+        logger.debug("Sent {} messages queued before channel {} opened", sent, this.name);
+    }
+
+    private void dropPreOpen() {
+        this.preOpenLock.lock();
+        try {
+            var queue = this.preOpenQueue;
+            if (nonNull(queue) && !queue.isEmpty()) {
+                logger.warn("Dropped {} messages queued before channel {} closed", queue.size(), this.name);
+            }
+            this.preOpenQueue = null;
+            this.preOpenEnded = true;
+        } finally {
+            this.preOpenLock.unlock();
+        }
+    }
+
+    /**
+     * Start queueing received messages for receive().  Messages received before this call, or the first call of
+     * receive(), are only delivered to listeners.  Does nothing if received messages are already queued.
+     *
+     * @param capacity maximum number of queued messages, messages received when the queue is full are dropped
+     */
+    public synchronized void enableReceiveQueue(int capacity) {
+        if (isNull(this.receiveQueue)) {
+            var queue = new ChannelReceiveQueue(this, capacity);
+            this.addChannelListener(queue);
+            this.receiveQueue = queue;
+            if (isNull(this.dataChannel)) {
+                queue.close();
+            }
+        }
+    }
+
+    private ChannelReceiveQueue receiveQueue() {
+        var queue = this.receiveQueue;
+        if (isNull(queue)) {
+            this.enableReceiveQueue(DEFAULT_RECEIVE_QUEUE_CAPACITY);
+            queue = this.receiveQueue;
+        }
+        return queue;
+    }
+
+    /**
+     * Wait for the next received message.  The returned message is a copy owned by the caller.
+     *
+     * @return next message, null if the channel is closed and all queued messages have been received
+     * @throws InterruptedException
+     */
+    public ChannelMessage receive() throws InterruptedException {
+        return this.receiveQueue().take();
+    }
+
+    /**
+     * Wait for the next received message, up to timeout
+     *
+     * @return next message, null on timeout, or if the channel is closed and all queued messages have been received
+     * @throws InterruptedException
+     */
+    public ChannelMessage receive(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.receiveQueue().poll(timeout, unit);
+    }
+
+    /**
+     * @return number of messages dropped because the receive queue was full
+     */
+    public long getDroppedReceivedMessages() {
+        var queue = this.receiveQueue;
+        return nonNull(queue) ? queue.getDroppedMessages() : 0;
+    }
+
+    /**
+     * @param threshold the channel is writable while bytes buffered and queued for sending are at or below threshold
+     */
+    public void setWritableThreshold(long threshold) {
+        this.writableThreshold = threshold;
+        this.signalWritable();
+    }
+
+    public boolean isWritable() {
+        var scheduler = this.sendScheduler;
+        long pending = this.getBufferedAmount() + (nonNull(scheduler) ? scheduler.getQueuedBytes(this) : 0);
+        return pending <= this.writableThreshold;
+    }
+
+    boolean isClosed() {
+        var dataChannel = this.dataChannel;
+        return isNull(dataChannel) || dataChannel.getState() == RTCDataChannelState.CLOSED;
+    }
+
+    /**
+     * Wait until the channel is writable
+     *
+     * @return false on timeout
+     * @throws InterruptedException
+     * @throws IllegalStateException if the channel is closed
+     */
+    public boolean awaitWritable(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        this.writableLock.lock();
+        try {
+            this.writableWaiters++;
+            try {
+                while (true) {
+                    if (this.isClosed()) {
+                        throw new IllegalStateException(String.format("Channel %s is closed", this.getName()));
+                    }
+                    if (this.isWritable()) {
+                        return true;
+                    }
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = this.writable.awaitNanos(nanos);
+                }
+            } finally {
+                this.writableWaiters--;
+            }
+        } finally {
+            this.writableLock.unlock();
+        }
+    }
+
+    /**
+     * Send a message, then wait until the channel is writable, so a sequential sender can not queue more than the
+     * writable threshold.
+     */
+    public void sendAndAwaitWritable(String s) throws Exception {
+        this.send(s);
+        this.awaitWritable(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    public void sendAndAwaitWritable(ByteBuffer data) throws Exception {
+        this.send(data);
+        this.awaitWritable(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    private void signalWritable() {
+        // waiters increment the count before checking, so no wakeup is missed
+        if (this.writableWaiters > 0) {
+            this.writableLock.lock();
+            try {
+                this.writable.signalAll();
+            } finally {
+                this.writableLock.unlock();
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        var dataChannel = this.dataChannel;
+        return nonNull(dataChannel) && dataChannel.getState() == RTCDataChannelState.OPEN;
+    }
+
+    /**
+     * @return number of bytes queued to be sent on the data channel, or not read by the peer from shared memory
+     */
+    public long getBufferedAmount() {
+        var dataChannel = this.dataChannel;
+        var sharedMemory = this.sharedMemory;
+        return (nonNull(dataChannel) ? dataChannel.getBufferedAmount() : 0)
+                + (nonNull(sharedMemory) ? sharedMemory.getBufferedAmount() : 0);
     }
 
     public boolean addChannelListener(ChannelListener listener) {
@@ -40,8 +644,7 @@ public class Channel implements RTCDataChannelObserver {
         return this.channelListeners.remove(listener);
     }
 
-    private void fireChannelStatusEvent() {
-        var state = this.mapState(this.dataChannel.getState());
+    private void fireChannelStatusEvent(ChannelListener.State state) {
         if (nonNull(state)) {
             for (ChannelListener listener : this.channelListeners) {
                 listener.onStateChange(state);
@@ -49,9 +652,20 @@ public class Channel implements RTCDataChannelObserver {
         }
     }
 
-    private void fireChannelMessageEvent(String message) {
-        for (ChannelListener listener : this.channelListeners) {
-            listener.onMessage(message);
+    private void fireChannelMessageEvent(ByteBuffer data, boolean binary) {
+        var recorder = this.recorder;
+        if (nonNull(recorder)) {
+            recorder.record(this.name, false, data, binary);
+        }
+        var message = this.receivedMessage;
+        message.set(data, binary);
+        try {
+            for (ChannelListener listener : this.channelListeners) {
+                message.rewind();
+                listener.onMessage(message);
+            }
+        } finally {
+            message.clear();
         }
     }
 
@@ -66,50 +680,267 @@ public class Channel implements RTCDataChannelObserver {
     }
 
     public void send(String s) throws Exception {
-        ByteBuffer data = ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
-        RTCDataChannelBuffer buffer = new RTCDataChannelBuffer(data, false);
-        this.dataChannel.send(buffer);
+        this.send(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)), true);
+    }
+
+    /**
+     * Send a binary message
+     *
+     * @param data message from position to limit
+     * @throws Exception
+     */
+    public void send(ByteBuffer data) throws Exception {
+        this.send(data, false);
+    }
+
+    void send(ByteBuffer data, boolean text) throws Exception {
+        var recorder = this.recorder;
+        if (nonNull(recorder)) {
+            recorder.record(this.name, true, data, !text);
+        }
+        if (!this.queuePreOpen(data, text)) {
+            this.dispatch(data, text);
+        }
     }
 
+    private void dispatch(ByteBuffer data, boolean text) throws Exception {
+        var limiter = this.rateLimiter;
+        if (nonNull(limiter)) {
+            limiter.send(data, text);
+        } else {
+            this.release(data, text);
+        }
+    }
+
+    /**
+     * Hand a message that passed rate limiting to SendScheduler, or send it if the channel is not scheduled
+     */
+    void release(ByteBuffer data, boolean text) throws Exception {
+        var scheduler = this.sendScheduler;
+        if (nonNull(scheduler)) {
+            scheduler.enqueue(this, data, text);
+        } else {
+            this.transmit(data, text);
+        }
+    }
+
+    void setSendScheduler(SendScheduler scheduler) {
+        this.sendScheduler = scheduler;
+    }
+
+    /**
+     * Send a message on the data channel, bypassing SendScheduler
+     */
+    void transmit(ByteBuffer data, boolean text) throws Exception {
+        var dataChannel = this.dataChannel;
+        if (isNull(dataChannel)) {
+            throw new IllegalStateException(String.format("Channel %s is closed", this.name));
+        }
+        ByteBuffer frame = data;
+        boolean binary = !text;
+        // a compressor replaced by setCompression is closed and returns null, then its replacement is used
+        for (var compressor = this.compressor; nonNull(compressor); compressor = this.compressor) {
+            ByteBuffer encoded = compressor.encode(data, text);
+            if (nonNull(encoded)) {
+                frame = encoded;
+                binary = true;
+                break;
+            }
+        }
+        if (this.sequencing) {
+            // stamp and send under the lock, so sequence numbers go out in order
+            this.sendLock.lock();
+            try {
+                var journal = this.journal;
+                if (nonNull(journal)) {
+                    this.transmitJournaled(journal, dataChannel, frame, binary);
+                    return;
+                }
+                ByteBuffer sequenced = ByteBuffer.allocate(SEQUENCE_HEADER_SIZE + frame.remaining());
+                sequenced.put(binary ? 0 : ChannelCompressor.FLAG_TEXT);
+                sequenced.putLong(this.lastSentSequence + 1);
+                sequenced.put(frame.duplicate()).flip();
+                this.write(dataChannel, sequenced, true);
+                this.lastSentSequence++;
+            } finally {
+                this.sendLock.unlock();
+            }
+        } else {
+            this.write(dataChannel, frame, binary);
+        }
+    }
+
+    /**
+     * Journal a frame, and send it if the peer has resumed, with sendLock held
+     */
+    private void transmitJournaled(ChannelJournal journal, RTCDataChannel dataChannel, ByteBuffer frame, boolean binary) {
+        journal.lock();
+        try {
+            if (!journal.isOwner(this)) {
+                throw new IllegalStateException(String.format("Journal of channel %s is taken over by a newer channel", this.name));
+            }
+            long sequence = journal.getLastSequence() + 1;
+            ByteBuffer sequenced = ByteBuffer.allocate(SEQUENCE_HEADER_SIZE + frame.remaining());
+            sequenced.put(binary ? 0 : ChannelCompressor.FLAG_TEXT);
+            sequenced.putLong(sequence);
+            sequenced.put(frame.duplicate()).flip();
+            journal.append(sequence, sequenced);
+            this.lastSentSequence = sequence;
+            if (this.resumed) {
+                try {
+                    this.write(dataChannel, sequenced, true);
+                    journal.setLastTransmitted(sequence);
+                } catch (Exception ex) {
+                    // journaled, and replayed once the peer announces what it received
+                    logger.debug("Error sending on channel {}, holding sends until resumed", this.name, ex);
+                    this.resumed = false;
+                }
+            }
+        } finally {
+            journal.unlock();
+        }
+    }
+
+    private void write(RTCDataChannel dataChannel, ByteBuffer frame, boolean binary) throws Exception {
+        var sharedMemory = this.sharedMemory;
+        if (nonNull(sharedMemory)) {
+            sharedMemory.send(frame, binary);
+        } else {
+            dataChannel.send(new RTCDataChannelBuffer(exactFrame(frame), binary));
+        }
+    }
+
+    /**
+     * RTCDataChannel.send sends the whole backing array of a heap buffer, whatever its position, limit and array
+     * offset, so a frame that does not span its whole buffer is copied to one that does.
+     *
+     * @return frame, or a copy of it from position to limit
+     */
+    static ByteBuffer exactFrame(ByteBuffer frame) {
+        boolean exact = !frame.isReadOnly() && frame.position() == 0 && frame.limit() == frame.capacity()
+                && (frame.isDirect() || (frame.hasArray() && frame.arrayOffset() == 0 && frame.array().length == frame.capacity()));
+        if (exact) {
+            return frame;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+        copy.put(frame.duplicate()).flip();
+        return copy;
+    }
+
+    /**
+     * Close and dispose the data channel, and release everything attached to it.  Listeners are notified of CLOSED,
+     * since the data channel does not call the unregistered observer.  Calling close again does nothing.
+     */
     public void close() {
-        if (nonNull(this.dataChannel)) {
-            logger.debug("Closing channel {}", getName());
-            this.dataChannel.close();
-            this.dataChannel.unregisterObserver();
-            this.dataChannel.close();
-            this.dataChannel.dispose();
-            this.dataChannel = null;
+        if (!this.handle.close()) {
+            return;
+        }
+        logger.debug("Closing channel {}", this.name);
+        var scheduler = this.sendScheduler;
+        if (nonNull(scheduler)) {
+            scheduler.unregister(this);
+        }
+        var sharedMemory = this.sharedMemory;
+        if (nonNull(sharedMemory)) {
+            sharedMemory.close();
         }
+        var journal = this.journal;
+        if (nonNull(journal)) {
+            journal.detach(this);
+        }
+        var dataChannel = this.dataChannel;
+        this.dataChannel = null;
+        dataChannel.unregisterObserver();
+        dataChannel.close();
+        dataChannel.dispose();
+        this.setCompression(null);
+        this.setRateLimit(null);
+        this.dropPreOpen();
+        this.openFuture.completeExceptionally(new IllegalStateException(String.format("Channel %s closed before it opened", this.name)));
+        this.fireChannelStatusEvent(ChannelListener.State.CLOSED);
+        this.signalWritable();
     }
 
     @Override
     public void onBufferedAmountChange(long previousAmount) {
         logger.debug("onBufferedAmountChange {}", previousAmount);
+        for (ChannelListener listener : this.channelListeners) {
+            listener.onBufferedAmountChange(previousAmount);
+        }
+        this.signalWritable();
     }
 
     @Override
     public void onStateChange() {
-        logger.debug("onStateChange {} {}", this.getName(), this.dataChannel.getState().toString());
-        this.fireChannelStatusEvent();
+        var dataChannel = this.dataChannel;
+        if (isNull(dataChannel)) {
+            return;
+        }
+        logger.debug("onStateChange {} {}", this.name, dataChannel.getState().toString());
+        var sharedMemory = this.sharedMemory;
+        if (nonNull(sharedMemory) && dataChannel.getState() == RTCDataChannelState.CLOSED) {
+            // unblock senders waiting for a peer that is gone
+            sharedMemory.close();
+        }
+        if (dataChannel.getState() == RTCDataChannelState.OPEN) {
+            this.endPreOpen();
+            this.openFuture.complete(this);
+        } else if (dataChannel.getState() == RTCDataChannelState.CLOSED) {
+            this.dropPreOpen();
+            this.openFuture.completeExceptionally(new IllegalStateException(String.format("Channel %s closed before it opened", this.name)));
+        }
+        var journal = this.journal;
+        if (nonNull(journal)) {
+            if (dataChannel.getState() == RTCDataChannelState.OPEN) {
+                this.announce(journal);
+            } else if (dataChannel.getState() == RTCDataChannelState.CLOSED) {
+                // not under sendLock, which a sender can hold while the data channel is closing
+                this.resumed = false;
+            }
+        }
+        this.fireChannelStatusEvent(this.mapState(dataChannel.getState()));
+        this.signalWritable();
     }
 
     @Override
     public void onMessage(RTCDataChannelBuffer buffer) {
-        String m = decodeMessage(buffer);
-        this.fireChannelMessageEvent(m);
-    }
-
-    private String decodeMessage(RTCDataChannelBuffer buffer) {
-        ByteBuffer byteBuffer = buffer.data;
-        byte[] payload;
-        if (byteBuffer.hasArray()) {
-            payload = byteBuffer.array();
+        ByteBuffer data = buffer.data;
+        boolean binary = buffer.binary;
+        var tracker = this.sequenceTracker;
+        if (nonNull(tracker) && binary && data.remaining() >= SEQUENCE_HEADER_SIZE) {
+            int position = data.position();
+            if ((data.get(position) & FLAG_CONTROL) != 0) {
+                this.onControl(data.duplicate().position(position + SEQUENCE_HEADER_SIZE));
+                return;
+            }
+            binary = (data.get(position) & ChannelCompressor.FLAG_TEXT) == 0;
+            long sequence = data.getLong(position + 1);
+            var journal = this.journal;
+            if (nonNull(journal)) {
+                journal.setLastReceived(sequence);
+            }
+            long skipped = tracker.onSequence(sequence);
+            var listener = this.gapListener;
+            if (skipped > 0 && nonNull(listener)) {
+                listener.onGap(this, sequence - skipped, sequence - 1);
+            }
+            data = data.duplicate().position(position + SEQUENCE_HEADER_SIZE);
         }
-        else {
-            payload = new byte[byteBuffer.limit()];
-            byteBuffer.get(payload);
+        for (var compressor = this.compressor; nonNull(compressor) && binary; compressor = this.compressor) {
+            ByteBuffer payload;
+            try {
+                payload = compressor.decode(data);
+            } catch (DataFormatException ex) {
+                logger.error("Error inflating message on channel {}", getName(), ex);
+                return;
+            }
+            if (nonNull(payload)) {
+                binary = !ChannelCompressor.isText(data);
+                data = payload;
+                break;
+            }
         }
-        return new String(payload, StandardCharsets.UTF_8);
+        this.fireChannelMessageEvent(data, binary);
     }
 
 }
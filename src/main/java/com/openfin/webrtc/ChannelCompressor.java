@@ -0,0 +1,190 @@
+/**
+ * Compresses Channel payloads with Deflater/Inflater instances that are reused for every message of the Channel.
+ *
+ * Every frame starts with a flags byte.  If FLAG_DEFLATED is set, the original payload length follows as an int
+ * and the rest of the frame is deflated, otherwise the rest of the frame is the original payload.
+ *
+ * A closed compressor returns null from encode and decode instead of using its ended Deflater and Inflater, so a
+ * sender or receiver that read it just before it was replaced can retry with the current one.
+ */
+package com.openfin.webrtc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.util.Objects.nonNull;
+
+public class ChannelCompressor {
+    public static final byte FLAG_TEXT = 0x01;
+    public static final byte FLAG_DEFLATED = 0x02;
+
+    private static final int HEADER_SIZE = 1;
+    private static final int DEFLATED_HEADER_SIZE = HEADER_SIZE + Integer.BYTES;
+
+    private final int threshold;
+    private final byte[] dictionary;
+    private final int maxInflatedSize;
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private ByteBuffer deflateBuffer;
+    private ByteBuffer inflateBuffer;
+    private boolean closed;     // guarded by this
+
+    // statistics
+    private final LongAdder payloadBytes = new LongAdder();
+    private final LongAdder frameBytes = new LongAdder();
+    private final LongAdder deflatedFrames = new LongAdder();
+
+    public ChannelCompressor(CompressionOptions options) {
+        this.threshold = options.getThreshold();
+        this.dictionary = options.getDictionary();
+        this.maxInflatedSize = options.getMaxInflatedSize();
+        this.deflater = new Deflater(options.getLevel());
+        this.inflater = new Inflater();
+        this.deflateBuffer = ByteBuffer.allocate(1024);
+        this.inflateBuffer = ByteBuffer.allocate(1024);
+    }
+
+    /**
+     * Encode a payload into a frame.  The payload is deflated only if it is at least threshold bytes and
+     * deflating actually makes it smaller.
+     *
+     * @param payload payload to be sent, from position to limit.  Position is not changed
+     * @param text true if payload is UTF-8 text
+     * @return frame ready to be sent, or null if the compressor is closed
+     */
+    public synchronized ByteBuffer encode(ByteBuffer payload, boolean text) {
+        if (this.closed) {
+            return null;
+        }
+        int length = payload.remaining();
+        byte flags = text ? FLAG_TEXT : 0;
+        ByteBuffer frame;
+        int deflatedLength = length >= this.threshold ? this.deflate(payload.duplicate()) : -1;
+        if (deflatedLength >= 0 && deflatedLength + DEFLATED_HEADER_SIZE < length + HEADER_SIZE) {
+            frame = ByteBuffer.allocate(DEFLATED_HEADER_SIZE + deflatedLength);
+            frame.put((byte) (flags | FLAG_DEFLATED));
+            frame.putInt(length);
+            frame.put(this.deflateBuffer.flip());
+            this.deflatedFrames.increment();
+        } else {
+            frame = ByteBuffer.allocate(HEADER_SIZE + length);
+            frame.put(flags);
+            frame.put(payload.duplicate());
+        }
+        frame.flip();
+        this.payloadBytes.add(length);
+        this.frameBytes.add(frame.remaining());
+        return frame;
+    }
+
+    /**
+     * Deflate into deflateBuffer
+     *
+     * @return length of deflated data, or -1 if it is not smaller than the input
+     */
+    private int deflate(ByteBuffer input) {
+        int length = input.remaining();
+        if (this.deflateBuffer.capacity() < length) {
+            this.deflateBuffer = ByteBuffer.allocate(length);
+        }
+        this.deflateBuffer.clear().limit(length);
+        this.deflater.reset();
+        if (nonNull(this.dictionary)) {
+            this.deflater.setDictionary(this.dictionary);
+        }
+        this.deflater.setInput(input);
+        this.deflater.finish();
+        while (!this.deflater.finished() && this.deflateBuffer.hasRemaining()) {
+            this.deflater.deflate(this.deflateBuffer);
+        }
+        return this.deflater.finished() ? this.deflateBuffer.position() : -1;
+    }
+
+    /**
+     * Decode a frame created by encode.  Frames come from the peer, so their header is checked before it is used.
+     *
+     * @param frame received frame, from position to limit.  Position is not changed
+     * @return payload, or null if the compressor is closed.  If the frame is deflated, the returned buffer is only
+     * valid until the next call of decode
+     * @throws DataFormatException if the frame is malformed, inflates to more than maxInflatedSize, or can not be inflated
+     */
+    public synchronized ByteBuffer decode(ByteBuffer frame) throws DataFormatException {
+        if (this.closed) {
+            return null;
+        }
+        ByteBuffer input = frame.duplicate();
+        if (input.remaining() < HEADER_SIZE) {
+            throw new DataFormatException("Empty frame");
+        }
+        byte flags = input.get();
+        if ((flags & FLAG_DEFLATED) == 0) {
+            return input.slice();
+        }
+        if (input.remaining() < Integer.BYTES) {
+            throw new DataFormatException(String.format("Deflated frame of %d bytes has no length", frame.remaining()));
+        }
+        int length = input.getInt();
+        if (length < 0 || length > this.maxInflatedSize) {
+            throw new DataFormatException(String.format("Inflated length %d out of range 0 to %d", length, this.maxInflatedSize));
+        }
+        if (this.inflateBuffer.capacity() < length) {
+            this.inflateBuffer = ByteBuffer.allocate(length);
+        }
+        this.inflateBuffer.clear().limit(length);
+        this.inflater.reset();
+        this.inflater.setInput(input);
+        while (this.inflateBuffer.hasRemaining()) {
+            if (this.inflater.inflate(this.inflateBuffer) == 0) {
+                if (this.inflater.needsDictionary() && nonNull(this.dictionary)) {
+                    this.inflater.setDictionary(this.dictionary);
+                } else if (this.inflater.needsDictionary()) {
+                    throw new DataFormatException("Frame requires a preset dictionary");
+                } else if (this.inflater.finished() || this.inflater.needsInput()) {
+                    break;
+                }
+            }
+        }
+        if (this.inflateBuffer.hasRemaining()) {
+            throw new DataFormatException(String.format("Inflated %d of %d bytes", this.inflateBuffer.position(), length));
+        }
+        return this.inflateBuffer.flip();
+    }
+
+    public static boolean isText(ByteBuffer frame) {
+        return frame.hasRemaining() && (frame.get(frame.position()) & FLAG_TEXT) != 0;
+    }
+
+    /**
+     * @return total bytes of payloads passed to encode
+     */
+    public long getPayloadBytes() {
+        return payloadBytes.sum();
+    }
+
+    /**
+     * @return total bytes of frames returned by encode
+     */
+    public long getFrameBytes() {
+        return frameBytes.sum();
+    }
+
+    public long getDeflatedFrames() {
+        return deflatedFrames.sum();
+    }
+
+    /**
+     * End the Deflater and Inflater, after an encode or decode in progress.  Calling close again does nothing.
+     */
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.deflater.end();
+        this.inflater.end();
+    }
+}
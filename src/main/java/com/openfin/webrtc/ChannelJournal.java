@@ -0,0 +1,270 @@
+/**
+ * Append-only journal of sequenced frames sent on a Channel, in a memory-mapped file used as a circular buffer.
+ * Appending overwrites the oldest frames once the file is full, or once they are older than the retention time.
+ *
+ * Layout, in native byte order: a header of magic, capacity, positions of the oldest frame and the end, sequence
+ * numbers of the last appended, last transmitted and last received frames, then records of
+ * [length][sequence][time][frame], aligned to 8 bytes.  A record never wraps, a length of -1 pads the rest of the
+ * file instead.  The header makes the journal survive the process, so it is reopened with the same file.
+ *
+ * A journal is shared by the channels that use its file in a process, so a channel of a new connection takes it
+ * over from the channel of a dropped one.  Only the last attached channel sends with it.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
+
+class ChannelJournal {
+    private final static Logger logger = LoggerFactory.getLogger(ChannelJournal.class);
+    private static final int MAGIC = 0x4f464a4e;   // OFJN
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int OLDEST_OFFSET = 8;
+    private static final int END_OFFSET = 16;
+    private static final int LAST_SEQUENCE_OFFSET = 24;
+    private static final int LAST_TRANSMITTED_OFFSET = 32;
+    private static final int LAST_RECEIVED_OFFSET = 40;
+    private static final int DATA_OFFSET = 64;
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + Long.BYTES + Long.BYTES;
+    private static final int PADDING = -1;
+
+    private static final ThreadFactory threadFactory = r -> {
+        Thread thread = new Thread(r, "ChannelJournal");
+        thread.setDaemon(true);
+        return thread;
+    };
+    // replays wait for their data channel to drain, so they can not run on WebRTC threads, nor wait for each other
+    static final ExecutorService executor = Executors.newCachedThreadPool(threadFactory);
+    // only hands resume timeouts over to executor
+    static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    private static final Map<Path, ChannelJournal> openJournals = new ConcurrentHashMap<>();
+
+    interface FrameHandler {
+        /**
+         * @param frame frame from position to limit, only valid during the call
+         * @return false to stop replaying
+         */
+        boolean onFrame(ByteBuffer frame) throws Exception;
+    }
+
+    private final Path path;
+    private final JournalOptions options;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private Channel owner;              // guarded by lock
+    private int channels;               // attached channels, guarded by openJournals
+
+    private ChannelJournal(Path path, JournalOptions options, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.options = options;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Attach the journal of a file to a channel, which becomes the channel sending with it.  The journal is opened,
+     * or created, if no other channel uses it.
+     */
+    static ChannelJournal attach(Path path, JournalOptions options, Channel channel) throws IOException {
+        ChannelJournal journal;
+        synchronized (openJournals) {
+            journal = openJournals.get(path);
+            if (journal == null) {
+                journal = open(path, options);
+                openJournals.put(path, journal);
+            }
+            journal.channels++;
+        }
+        journal.lock();
+        try {
+            journal.owner = channel;
+        } finally {
+            journal.unlock();
+        }
+        return journal;
+    }
+
+    private static ChannelJournal open(Path path, JournalOptions options) throws IOException {
+        int capacity = Integer.highestOneBit(options.getMaxBytes());
+        MappedByteBuffer buffer;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean existing = file.size() == DATA_OFFSET + capacity;
+            buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+            buffer.order(ByteOrder.nativeOrder());
+            if (existing && buffer.getInt(MAGIC_OFFSET) == MAGIC && buffer.getInt(CAPACITY_OFFSET) == capacity) {
+                logger.info("Reopened journal {} at sequence {}", path, buffer.getLong(LAST_SEQUENCE_OFFSET));
+            } else {
+                for (int offset = 0; offset < DATA_OFFSET; offset += Long.BYTES) {
+                    buffer.putLong(offset, 0);
+                }
+                buffer.putInt(CAPACITY_OFFSET, capacity);
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+            }
+        }
+        return new ChannelJournal(path, options, buffer, capacity);
+    }
+
+    /**
+     * Detach a channel.  The journal is forced to disk and released when no channel uses it
+     */
+    void detach(Channel channel) {
+        this.lock();
+        try {
+            if (this.owner == channel) {
+                this.owner = null;
+            }
+        } finally {
+            this.unlock();
+        }
+        synchronized (openJournals) {
+            if (--this.channels == 0) {
+                openJournals.remove(this.path);
+                this.buffer.force();
+            }
+        }
+    }
+
+    JournalOptions getOptions() {
+        return this.options;
+    }
+
+    void lock() {
+        this.lock.lock();
+    }
+
+    void unlock() {
+        this.lock.unlock();
+    }
+
+    /**
+     * @return true if the channel is the last one attached, with lock held
+     */
+    boolean isOwner(Channel channel) {
+        return this.owner == channel;
+    }
+
+    long getLastSequence() {
+        return this.buffer.getLong(LAST_SEQUENCE_OFFSET);
+    }
+
+    long getLastTransmitted() {
+        return this.buffer.getLong(LAST_TRANSMITTED_OFFSET);
+    }
+
+    void setLastTransmitted(long sequence) {
+        this.buffer.putLong(LAST_TRANSMITTED_OFFSET, sequence);
+    }
+
+    long getLastReceived() {
+        return this.buffer.getLong(LAST_RECEIVED_OFFSET);
+    }
+
+    /**
+     * Record the highest sequence number received from the peer, on the receiving thread
+     */
+    void setLastReceived(long sequence) {
+        if (sequence > this.buffer.getLong(LAST_RECEIVED_OFFSET)) {
+            this.buffer.putLong(LAST_RECEIVED_OFFSET, sequence);
+        }
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * Append a frame, with lock held
+     *
+     * @param frame frame from position to limit, which is not changed
+     */
+    void append(long sequence, ByteBuffer frame) {
+        int length = frame.remaining();
+        int recordSize = align(RECORD_HEADER_SIZE + length);
+        if (recordSize > this.capacity / 2) {
+            throw new IllegalArgumentException(String.format("Frame of %d bytes is larger than journal %s", length, this.path));
+        }
+        long now = System.currentTimeMillis();
+        long oldest = this.buffer.getLong(OLDEST_OFFSET);
+        long end = this.buffer.getLong(END_OFFSET);
+        int index = (int) (end & (this.capacity - 1));
+        int padding = this.capacity - index < recordSize ? this.capacity - index : 0;
+        // drop the oldest records to make room, and the ones past retention
+        while (oldest < end && (end + padding + recordSize - oldest > this.capacity || this.isExpired(oldest, now))) {
+            oldest = this.next(oldest);
+        }
+        if (padding > 0) {
+            this.buffer.putInt(DATA_OFFSET + index, PADDING);
+            end += padding;
+            index = 0;
+        }
+        int offset = DATA_OFFSET + index;
+        this.buffer.putInt(offset, length);
+        this.buffer.putLong(offset + 8, sequence);
+        this.buffer.putLong(offset + 16, now);
+        ByteBuffer target = this.buffer.duplicate();
+        target.position(offset + RECORD_HEADER_SIZE);
+        target.put(frame.duplicate());
+        this.buffer.putLong(OLDEST_OFFSET, oldest == end - padding && padding > 0 ? end : oldest);
+        this.buffer.putLong(END_OFFSET, end + recordSize);
+        this.buffer.putLong(LAST_SEQUENCE_OFFSET, sequence);
+    }
+
+    private boolean isExpired(long position, long now) {
+        long retention = this.options.getRetentionMillis();
+        if (retention <= 0) {
+            return false;
+        }
+        int offset = DATA_OFFSET + (int) (position & (this.capacity - 1));
+        return this.buffer.getInt(offset) == PADDING || this.buffer.getLong(offset + 16) < now - retention;
+    }
+
+    /**
+     * @return position of the record after the one at position
+     */
+    private long next(long position) {
+        int index = (int) (position & (this.capacity - 1));
+        int length = this.buffer.getInt(DATA_OFFSET + index);
+        return position + (length == PADDING ? this.capacity - index : align(RECORD_HEADER_SIZE + length));
+    }
+
+    /**
+     * Pass frames with sequence numbers after a given one, within retention, to the handler, with lock held
+     *
+     * @return number of frames replayed
+     */
+    long replay(long after, FrameHandler handler) throws Exception {
+        long now = System.currentTimeMillis();
+        long end = this.buffer.getLong(END_OFFSET);
+        long count = 0;
+        for (long position = this.buffer.getLong(OLDEST_OFFSET); position < end; position = this.next(position)) {
+            int offset = DATA_OFFSET + (int) (position & (this.capacity - 1));
+            int length = this.buffer.getInt(offset);
+            if (length == PADDING || this.buffer.getLong(offset + 8) <= after || this.isExpired(position, now)) {
+                continue;
+            }
+            int start = offset + RECORD_HEADER_SIZE;
+            count++;
+            if (!handler.onFrame(this.buffer.duplicate().position(start).limit(start + length))) {
+                break;
+            }
+        }
+        return count;
+    }
+}
@@ -3,6 +3,9 @@
  */
 package com.openfin.webrtc;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public interface ChannelListener {
     public enum State {
         OPEN,
@@ -10,4 +13,31 @@ public interface ChannelListener {
     }
     public void onStateChange(State state);
     public void onMessage(String message);
+
+    /**
+     * Binary message, from position to limit of the buffer.  The buffer is only valid during the call.
+     * By default, the message is decoded as UTF-8 and passed to onMessage(String)
+     */
+    public default void onBinaryMessage(ByteBuffer data) {
+        this.onMessage(StandardCharsets.UTF_8.decode(data).toString());
+    }
+
+    /**
+     * Called for every received message.  The message is only valid during the call.  By default, binary messages are
+     * passed to onBinaryMessage and text messages are decoded and passed to onMessage(String).  Override this to
+     * read messages without decoding or copying them.
+     */
+    public default void onMessage(ChannelMessage message) {
+        if (message.isBinary()) {
+            this.onBinaryMessage(message.getData());
+        } else {
+            this.onMessage(message.getText());
+        }
+    }
+
+    /**
+     * Called when the number of bytes queued to be sent changes.  Current amount is available from Channel.getBufferedAmount()
+     */
+    public default void onBufferedAmountChange(long previousAmount) {
+    }
 }
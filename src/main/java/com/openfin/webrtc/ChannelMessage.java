@@ -0,0 +1,103 @@
+/**
+ * Message received on a Channel.  The same instance is reused for every message of a Channel, and it is only valid
+ * during ChannelListener.onMessage(ChannelMessage).  Copy the data, or call getText(), to keep the message.
+ * Messages returned by Channel.receive() are copies owned by the caller.
+ */
+package com.openfin.webrtc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.isNull;
+
+public class ChannelMessage {
+    private ByteBuffer source;
+    private ByteBuffer data;
+    private int position;
+    private int limit;
+    private boolean binary;
+    private String text;
+    private byte[] scratch = new byte[0];
+
+    /**
+     * @param data received data from position to limit.  Not copied, so it must stay valid until clear() is called
+     * @param binary false if data is UTF-8 text
+     */
+    void set(ByteBuffer data, boolean binary) {
+        this.source = data;
+        this.data = data.asReadOnlyBuffer();
+        this.position = this.data.position();
+        this.limit = this.data.limit();
+        this.binary = binary;
+        this.text = null;
+    }
+
+    /**
+     * Restore position and limit of the view, before it is passed to the next listener
+     */
+    void rewind() {
+        this.data.limit(this.limit).position(this.position);
+    }
+
+    /**
+     * @return copy of the message that stays valid after clear()
+     */
+    ChannelMessage copy() {
+        ByteBuffer data = ByteBuffer.allocate(this.size());
+        data.put(this.source.duplicate().limit(this.limit).position(this.position)).flip();
+        ChannelMessage copy = new ChannelMessage();
+        copy.set(data, this.binary);
+        copy.text = this.text;
+        return copy;
+    }
+
+    void clear() {
+        this.source = null;
+        this.data = null;
+        this.text = null;
+    }
+
+    public boolean isBinary() {
+        return this.binary;
+    }
+
+    /**
+     * @return number of bytes of the message
+     */
+    public int size() {
+        return this.limit - this.position;
+    }
+
+    /**
+     * @return read-only view of the message, from position to limit
+     */
+    public ByteBuffer getData() {
+        return this.data;
+    }
+
+    /**
+     * @return message decoded as UTF-8, decoded on first call
+     */
+    public String getText() {
+        if (isNull(this.text)) {
+            this.text = decode();
+        }
+        return this.text;
+    }
+
+    private String decode() {
+        int size = this.size();
+        if (size == 0) {
+            return "";
+        }
+        // the read-only view hides the array of heap buffers
+        if (this.source.hasArray()) {
+            return new String(this.source.array(), this.source.arrayOffset() + this.position, size, StandardCharsets.UTF_8);
+        }
+        if (this.scratch.length < size) {
+            this.scratch = new byte[Math.max(size, this.scratch.length * 2)];
+        }
+        this.source.get(this.position, this.scratch, 0, size);
+        return new String(this.scratch, 0, size, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Flow.Publisher of messages received on a Channel.  Each subscriber has its own bounded buffer, and messages are
+ * delivered on an executor as the subscriber requests them, so a slow subscriber never holds up the WebRTC thread.
+ * When a buffer is full, the overflow policy decides which message is dropped, or fails the subscription.
+ * Subscriptions complete when the Channel is closed and their buffered messages are delivered.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.BufferOverflowException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+public class ChannelPublisher implements Flow.Publisher<ChannelMessage> {
+    private final static Logger logger = LoggerFactory.getLogger(ChannelPublisher.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = Flow.defaultBufferSize();
+
+    public enum Overflow {
+        DROP_OLDEST,    // drop the oldest buffered message to make room
+        DROP_NEWEST,    // drop the received message
+        FAIL            // fail the subscription with BufferOverflowException
+    }
+
+    private final Channel channel;
+    private final int bufferSize;
+    private final Overflow overflow;
+    private final Executor executor;
+    private final LongAdder dropped = new LongAdder();
+
+    public ChannelPublisher(Channel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE, Overflow.DROP_OLDEST, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param channel Channel to publish received messages of
+     * @param bufferSize maximum number of messages buffered for each subscriber
+     * @param overflow what to do with a received message when a buffer is full
+     * @param executor executor to deliver messages on
+     */
+    public ChannelPublisher(Channel channel, int bufferSize, Overflow overflow, Executor executor) {
+        this.channel = channel;
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ChannelMessage> subscriber) {
+        var subscription = new ChannelSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        this.channel.addChannelListener(subscription);
+        if (this.channel.isClosed()) {
+            subscription.onStateChange(ChannelListener.State.CLOSED);
+        }
+    }
+
+    /**
+     * @return number of messages dropped, over all subscribers, because a buffer was full
+     */
+    public long getDroppedMessages() {
+        return this.dropped.sum();
+    }
+
+    private class ChannelSubscription implements Flow.Subscription, ChannelListener {
+        private final Flow.Subscriber<? super ChannelMessage> subscriber;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<ChannelMessage> buffer = new ArrayDeque<>();   // guarded by lock
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();  // number of drain requests, drain runs while > 0
+        private volatile boolean cancelled;
+        private volatile boolean completed;     // the channel is closed
+        private volatile Throwable error;
+        private boolean terminated;             // accessed by drain only
+
+        private ChannelSubscription(Flow.Subscriber<? super ChannelMessage> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("Requested " + n + " messages");
+            } else {
+                this.demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            }
+            this.schedule();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            channel.removeChannelListener(this);
+            this.lock.lock();
+            try {
+                this.buffer.clear();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void onStateChange(State state) {
+            if (state == State.CLOSED) {
+                channel.removeChannelListener(this);
+                this.completed = true;
+                this.schedule();
+            }
+        }
+
+        @Override
+        public void onMessage(String message) {
+        }
+
+        @Override
+        public void onMessage(ChannelMessage message) {
+            if (this.cancelled) {
+                return;
+            }
+            // copy outside the lock, the received message is reused for the next one
+            var copy = message.copy();
+            this.lock.lock();
+            try {
+                if (this.buffer.size() >= bufferSize) {
+                    dropped.increment();
+                    if (overflow == Overflow.DROP_NEWEST) {
+                        return;
+                    } else if (overflow == Overflow.DROP_OLDEST) {
+                        this.buffer.poll();
+                    } else {
+                        this.error = new BufferOverflowException();
+                        channel.removeChannelListener(this);
+                        this.buffer.clear();
+                        copy = null;
+                    }
+                }
+                if (nonNull(copy)) {
+                    this.buffer.add(copy);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            if (this.demand.get() > 0 || nonNull(this.error)) {
+                this.schedule();
+            }
+        }
+
+        private void schedule() {
+            if (this.pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RuntimeException ex) {
+                    logger.error("Error delivering messages of channel {}", channel.getName(), ex);
+                    this.pending.set(0);
+                }
+            }
+        }
+
+        /**
+         * Deliver buffered messages up to demand, then terminal signals.  Runs on one thread at a time.
+         */
+        private void drain() {
+            int requests = this.pending.get();
+            do {
+                while (!this.terminated && !this.cancelled) {
+                    if (nonNull(this.error)) {
+                        this.terminate();
+                        this.subscriber.onError(this.error);
+                        break;
+                    }
+                    ChannelMessage message = null;
+                    boolean empty;
+                    this.lock.lock();
+                    try {
+                        empty = this.buffer.isEmpty();
+                        if (!empty && this.demand.get() > 0) {
+                            message = this.buffer.poll();
+                        }
+                    } finally {
+                        this.lock.unlock();
+                    }
+                    if (empty && this.completed) {
+                        this.terminate();
+                        this.subscriber.onComplete();
+                        break;
+                    }
+                    if (isNull(message)) {
+                        break;
+                    }
+                    this.demand.decrementAndGet();
+                    try {
+                        this.subscriber.onNext(message);
+                    } catch (Throwable ex) {
+                        logger.error("Error in subscriber of channel {}", channel.getName(), ex);
+                        this.cancel();
+                    }
+                }
+                requests = this.pending.addAndGet(-requests);
+            } while (requests > 0);
+        }
+
+        private void terminate() {
+            this.terminated = true;
+            this.cancel();
+        }
+    }
+}
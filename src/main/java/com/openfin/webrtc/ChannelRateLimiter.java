@@ -0,0 +1,273 @@
+/**
+ * Limits messages/sec and bytes/sec sent on a Channel with token buckets.  In BLOCK mode, send waits for tokens.
+ * In PACE mode, send queues the message and queued messages are released evenly as tokens become available,
+ * which smooths out bursty producers.
+ *
+ * The pacer thread, shared by every limiter, only schedules releases.  Queued messages are sent by the thread that
+ * queued them or on a thread of the sender pool, one thread at a time per limiter so they stay in order, and never
+ * with the lock held, so a send blocked on one channel does not delay the others.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+public class ChannelRateLimiter {
+    private final static Logger logger = LoggerFactory.getLogger(ChannelRateLimiter.class);
+
+    private static final ScheduledExecutorService pacer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ChannelPacer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService sender = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "ChannelPacedSender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Channel channel;
+    private final RateLimitOptions.Mode mode;
+    private final int maxQueuedMessages;
+    private final TokenBucket messageBucket;  // null for no limit
+    private final TokenBucket byteBucket;     // null for no limit
+    private final ReentrantLock lock;
+    private final ArrayDeque<QueuedMessage> queue;    // guarded by lock
+    private boolean releaseScheduled;                 // guarded by lock
+    private boolean releasing;                        // guarded by lock, true while a thread sends queued messages
+    private boolean closed;                           // guarded by lock
+
+    // metrics
+    private final LongAdder throttledMessages = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+    private final LatencyHistogram delay = new LatencyHistogram();
+
+    private static class QueuedMessage {
+        private final ByteBuffer data;
+        private final boolean text;
+        private final long queuedAt;
+
+        private QueuedMessage(ByteBuffer data, boolean text, long queuedAt) {
+            this.data = data;
+            this.text = text;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    public ChannelRateLimiter(Channel channel, RateLimitOptions options) {
+        long now = System.nanoTime();
+        this.channel = channel;
+        this.mode = options.getMode();
+        this.maxQueuedMessages = options.getMaxQueuedMessages();
+        this.messageBucket = options.getMessagesPerSecond() > 0
+                ? new TokenBucket(options.getMessagesPerSecond(), options.getMessageBurst(), now) : null;
+        this.byteBucket = options.getBytesPerSecond() > 0
+                ? new TokenBucket(options.getBytesPerSecond(), options.getByteBurst(), now) : null;
+        this.lock = new ReentrantLock();
+        this.queue = new ArrayDeque<>();
+    }
+
+    /**
+     * Take tokens for a message if both buckets have them
+     *
+     * @return 0 if tokens were taken, otherwise nanoseconds until they are available
+     */
+    private long tryAcquire(int size, long now) {
+        long wait = 0;
+        if (nonNull(this.messageBucket)) {
+            wait = this.messageBucket.delay(1, now);
+        }
+        if (nonNull(this.byteBucket)) {
+            wait = Math.max(wait, this.byteBucket.delay(size, now));
+        }
+        if (wait == 0) {
+            if (nonNull(this.messageBucket)) {
+                this.messageBucket.take(1);
+            }
+            if (nonNull(this.byteBucket)) {
+                this.byteBucket.take(size);
+            }
+        }
+        return wait;
+    }
+
+    void send(ByteBuffer data, boolean text) throws Exception {
+        if (this.mode == RateLimitOptions.Mode.BLOCK) {
+            this.acquire(data.remaining());
+            this.channel.release(data, text);
+        } else {
+            this.enqueue(data, text);
+        }
+    }
+
+    /**
+     * Wait for tokens.  Parks instead of holding a monitor, so it does not pin virtual threads.
+     */
+    private void acquire(int size) throws InterruptedException {
+        long start = System.nanoTime();
+        long now = start;
+        while (true) {
+            long wait;
+            this.lock.lock();
+            try {
+                wait = this.tryAcquire(size, now);
+            } finally {
+                this.lock.unlock();
+            }
+            if (wait == 0) {
+                break;
+            }
+            LockSupport.parkNanos(this, wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            now = System.nanoTime();
+        }
+        if (now > start) {
+            this.throttledMessages.increment();
+            this.throttledNanos.add(now - start);
+        }
+        this.delay.record(now - start);
+    }
+
+    private void enqueue(ByteBuffer data, boolean text) throws Exception {
+        // the caller may reuse its buffer after send returns
+        ByteBuffer copy = ByteBuffer.allocate(data.remaining()).put(data.duplicate()).flip();
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException(String.format("Rate limiter of channel %s is closed", this.channel.getName()));
+            }
+            if (this.queue.size() >= this.maxQueuedMessages) {
+                throw new Exception(String.format("Rate limit queue of channel %s is full", this.channel.getName()));
+            }
+            this.queue.add(new QueuedMessage(copy, text, System.nanoTime()));
+            if (this.releaseScheduled || this.releasing) {
+                return;
+            }
+            this.releasing = true;
+        } finally {
+            this.lock.unlock();
+        }
+        this.releaseQueued();
+    }
+
+    /**
+     * Send queued messages for which tokens are available, in order, and schedule the next release.  Called by the
+     * thread that set releasing.  Each message is taken from the queue with the lock held and sent after unlocking.
+     */
+    private void releaseQueued() {
+        while (true) {
+            QueuedMessage message;
+            this.lock.lock();
+            try {
+                message = this.queue.peek();
+                if (this.closed || isNull(message)) {
+                    this.releasing = false;
+                    return;
+                }
+                long now = System.nanoTime();
+                long wait = this.tryAcquire(message.data.remaining(), now);
+                if (wait > 0) {
+                    this.releasing = false;
+                    this.releaseScheduled = true;
+                    pacer.schedule(this::onPacerTick, wait, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                this.queue.poll();
+                long queued = now - message.queuedAt;
+                if (queued > 0) {
+                    this.throttledMessages.increment();
+                    this.throttledNanos.add(queued);
+                }
+                this.delay.record(queued);
+            } finally {
+                this.lock.unlock();
+            }
+            try {
+                this.channel.release(message.data, message.text);
+            } catch (Exception ex) {
+                logger.error("Error sending paced message on channel {}", this.channel.getName(), ex);
+            }
+        }
+    }
+
+    /**
+     * On the pacer thread, hand the release to the sender pool
+     */
+    private void onPacerTick() {
+        this.lock.lock();
+        try {
+            this.releaseScheduled = false;
+            if (this.closed || this.releasing || this.queue.isEmpty()) {
+                return;
+            }
+            this.releasing = true;
+        } finally {
+            this.lock.unlock();
+        }
+        sender.execute(this::releaseQueued);
+    }
+
+    /**
+     * Discard queued messages
+     */
+    void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.queue.clear();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getQueuedMessages() {
+        this.lock.lock();
+        try {
+            return this.queue.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of messages that waited for tokens
+     */
+    public long getThrottledMessages() {
+        return this.throttledMessages.sum();
+    }
+
+    /**
+     * @return total nanoseconds messages waited for tokens
+     */
+    public long getThrottledNanos() {
+        return this.throttledNanos.sum();
+    }
+
+    /**
+     * @return histogram, in nanoseconds, of time each message waited for tokens
+     */
+    public LatencyHistogram getDelay() {
+        return this.delay;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("throttled %d messages for %d ms, queued %d, delay %s", getThrottledMessages(),
+                TimeUnit.NANOSECONDS.toMillis(getThrottledNanos()), getQueuedMessages(), this.delay.toMicrosString());
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Queue of received messages behind Channel.receive().  Waits on a ReentrantLock condition rather than a monitor, so
+ * receivers on virtual threads unmount while they wait.  The queue is bounded and never blocks the WebRTC thread
+ * delivering messages: when it is full, received messages are dropped and counted.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+class ChannelReceiveQueue implements ChannelListener {
+    private final static Logger logger = LoggerFactory.getLogger(ChannelReceiveQueue.class);
+
+    private final Channel channel;
+    private final int capacity;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final ArrayDeque<ChannelMessage> messages;  // guarded by lock
+    private boolean closed;                             // guarded by lock
+    private final LongAdder dropped = new LongAdder();
+
+    ChannelReceiveQueue(Channel channel, int capacity) {
+        this.channel = channel;
+        this.capacity = capacity;
+        this.lock = new ReentrantLock();
+        this.notEmpty = this.lock.newCondition();
+        this.messages = new ArrayDeque<>();
+    }
+
+    /**
+     * @return next message, null if the channel is closed and no message is queued
+     */
+    ChannelMessage take() throws InterruptedException {
+        this.lock.lock();
+        try {
+            while (this.messages.isEmpty() && !this.closed) {
+                this.notEmpty.await();
+            }
+            return this.messages.poll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return next message, null if none is received before timeout or the channel is closed and no message is queued
+     */
+    ChannelMessage poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        this.lock.lock();
+        try {
+            while (this.messages.isEmpty() && !this.closed) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+            return this.messages.poll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    int size() {
+        this.lock.lock();
+        try {
+            return this.messages.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    long getDroppedMessages() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * Wake up receivers.  Queued messages can still be received
+     */
+    void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.notEmpty.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void onStateChange(State state) {
+        if (state == State.CLOSED) {
+            this.close();
+        }
+    }
+
+    @Override
+    public void onMessage(String message) {
+    }
+
+    @Override
+    public void onMessage(ChannelMessage message) {
+        // copy outside the lock, the received message is reused for the next one
+        var copy = message.copy();
+        this.lock.lock();
+        try {
+            if (this.messages.size() >= this.capacity) {
+                this.dropped.increment();
+                if (this.dropped.sum() == 1) {
+                    logger.warn("Receive queue of channel {} is full, dropping messages", this.channel.getName());
+                }
+                return;
+            }
+            this.messages.add(copy);
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Captures messages sent and received on Channels to a file, for replaying real traffic with ChannelReplayer.
+ *
+ * The file starts with a header of magic, version and the wall clock time of the capture in milliseconds.  Each
+ * record is [flags][varint nanoseconds since the previous record][varint channel][varint length][message], with
+ * flags telling outbound, binary and whether the record names a new channel, in which case the name follows as
+ * [varint length][UTF-8].  Outbound messages are captured as the application sends them, before rate limiting,
+ * scheduling and compression, and inbound messages as they are delivered to listeners.
+ *
+ * A recorder can capture several channels.  Records are staged in a buffer and written by the capturing thread once
+ * it fills, so capturing costs a copy of each message and an occasional write.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ChannelRecorder implements Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(ChannelRecorder.class);
+    static final int MAGIC = 0x4f46524d;     // OFRM
+    static final int VERSION = 1;
+    static final int FLAG_OUTBOUND = 0x01;
+    static final int FLAG_BINARY = 0x02;
+    static final int FLAG_NEW_CHANNEL = 0x04;
+    static final int RECORD_HEADER_MAX_SIZE = 1 + 10 + 5 + 5;
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel file;
+    private final ByteBuffer buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Integer> channels = new HashMap<>();     // guarded by lock
+    private long lastNanos;             // guarded by lock
+    private long messages;              // guarded by lock
+    private long bytes;                 // guarded by lock
+    private boolean closed;             // guarded by lock
+
+    public ChannelRecorder(Path path) throws IOException {
+        this(path, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize bytes of records staged before they are written to the file
+     */
+    public ChannelRecorder(Path path, int bufferSize) throws IOException {
+        this.path = path;
+        this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 4096));
+        this.buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+        this.lastNanos = System.nanoTime();
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Capture a message
+     *
+     * @param channel name of the channel
+     * @param outbound true if the message is sent, false if it is received
+     * @param data message from position to limit, which is not changed
+     * @param binary false if data is UTF-8 text
+     */
+    public void record(String channel, boolean outbound, ByteBuffer data, boolean binary) {
+        long now = System.nanoTime();
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            Integer id = this.channels.get(channel);
+            byte[] name = null;
+            int flags = (outbound ? FLAG_OUTBOUND : 0) | (binary ? FLAG_BINARY : 0);
+            if (id == null) {
+                id = this.channels.size();
+                this.channels.put(channel, id);
+                name = channel.getBytes(StandardCharsets.UTF_8);
+                flags |= FLAG_NEW_CHANNEL;
+            }
+            int length = data.remaining();
+            this.reserve(RECORD_HEADER_MAX_SIZE + (name != null ? 5 + name.length : 0));
+            this.buffer.put((byte) flags);
+            putVarLong(this.buffer, Math.max(now - this.lastNanos, 0));
+            putVarLong(this.buffer, id);
+            if (name != null) {
+                putVarLong(this.buffer, name.length);
+                this.buffer.put(name);
+            }
+            putVarLong(this.buffer, length);
+            if (length <= this.buffer.capacity()) {
+                this.reserve(length);
+                this.buffer.put(data.duplicate());
+            } else {
+                this.flush();
+                ByteBuffer message = data.duplicate();
+                while (message.hasRemaining()) {
+                    this.file.write(message);
+                }
+            }
+            this.lastNanos = Math.max(now, this.lastNanos);
+            this.messages++;
+            this.bytes += length;
+        } catch (IOException ex) {
+            logger.error("Error writing recording {}, recording stopped", this.path, ex);
+            this.closeFile();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void reserve(int size) throws IOException {
+        if (this.buffer.remaining() < size) {
+            this.flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.file.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public long getMessages() {
+        this.lock.lock();
+        try {
+            return this.messages;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getBytes() {
+        this.lock.lock();
+        try {
+            return this.bytes;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Write staged records and close the file.  Messages captured after closing are ignored.
+     */
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            try {
+                this.flush();
+            } catch (IOException ex) {
+                logger.error("Error writing recording {}", this.path, ex);
+            }
+            this.closeFile();
+            logger.info("Recorded {} messages, {} bytes to {}", this.messages, this.bytes, this.path);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void closeFile() {
+        this.closed = true;
+        try {
+            this.file.close();
+        } catch (IOException ex) {
+            logger.debug("Error closing {}", this.path, ex);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Reads a file captured by ChannelRecorder, one message at a time.  The message of the current record is only valid
+ * until next() is called.
+ */
+package com.openfin.webrtc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChannelRecording implements Closeable {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel file;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final long startTimeMillis;
+    private final List<String> channels = new ArrayList<>();
+    private boolean endOfFile;
+
+    private long timeNanos;
+    private String channel;
+    private boolean outbound;
+    private boolean binary;
+    private ByteBuffer data;
+
+    public ChannelRecording(Path path) throws IOException {
+        this.path = path;
+        this.file = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer.flip();
+        if (!this.fill(Integer.BYTES * 2 + Long.BYTES) || this.buffer.getInt() != ChannelRecorder.MAGIC) {
+            this.file.close();
+            throw new IOException(String.format("%s is not a channel recording", path));
+        }
+        int version = this.buffer.getInt();
+        if (version != ChannelRecorder.VERSION) {
+            this.file.close();
+            throw new IOException(String.format("Unsupported version %d of recording %s", version, path));
+        }
+        this.startTimeMillis = this.buffer.getLong();
+    }
+
+    /**
+     * Make size bytes available in the buffer, growing it for large messages
+     *
+     * @return false if the file ends first
+     */
+    private boolean fill(int size) throws IOException {
+        if (this.buffer.remaining() >= size) {
+            return true;
+        }
+        if (size > this.buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(size);
+            larger.put(this.buffer).flip();
+            this.buffer = larger;
+        }
+        this.buffer.compact();
+        while (this.buffer.position() < size && !this.endOfFile) {
+            if (this.file.read(this.buffer) < 0) {
+                this.endOfFile = true;
+            }
+        }
+        this.buffer.flip();
+        return this.buffer.remaining() >= size;
+    }
+
+    private long getVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            if (!this.fill(1)) {
+                throw new IOException(String.format("Truncated record in %s", this.path));
+            }
+            byte b = this.buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException(String.format("Malformed record in %s", this.path));
+    }
+
+    /**
+     * Read the next record
+     *
+     * @return false at the end of the recording, including a record truncated by a capture that did not close
+     */
+    public boolean next() throws IOException {
+        this.data = null;
+        if (!this.fill(1)) {
+            return false;
+        }
+        int flags = this.buffer.get();
+        try {
+            this.timeNanos += this.getVarLong();
+            int id = (int) this.getVarLong();
+            if ((flags & ChannelRecorder.FLAG_NEW_CHANNEL) != 0) {
+                int length = (int) this.getVarLong();
+                if (!this.fill(length)) {
+                    return false;
+                }
+                byte[] name = new byte[length];
+                this.buffer.get(name);
+                this.channels.add(new String(name, StandardCharsets.UTF_8));
+            }
+            if (id >= this.channels.size()) {
+                throw new IOException(String.format("Unknown channel %d in %s", id, this.path));
+            }
+            int length = (int) this.getVarLong();
+            if (!this.fill(length)) {
+                return false;
+            }
+            this.channel = this.channels.get(id);
+            this.outbound = (flags & ChannelRecorder.FLAG_OUTBOUND) != 0;
+            this.binary = (flags & ChannelRecorder.FLAG_BINARY) != 0;
+            this.data = this.buffer.slice().limit(length);
+            this.buffer.position(this.buffer.position() + length);
+            return true;
+        } catch (IOException ex) {
+            if (this.endOfFile) {
+                return false;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * @return wall clock time the capture started at
+     */
+    public long getStartTimeMillis() {
+        return this.startTimeMillis;
+    }
+
+    /**
+     * @return nanoseconds from the start of the capture to the current record
+     */
+    public long getTimeNanos() {
+        return this.timeNanos;
+    }
+
+    public String getChannel() {
+        return this.channel;
+    }
+
+    public boolean isOutbound() {
+        return this.outbound;
+    }
+
+    public boolean isBinary() {
+        return this.binary;
+    }
+
+    /**
+     * @return message of the current record, valid until next() is called
+     */
+    public ByteBuffer getData() {
+        return this.data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Sends the messages of a ChannelRecording on a Channel with their recorded timing, at the recorded speed, a multiple
+ * of it, or as fast as the channel takes them.  Sends wait for the channel to be writable, so a channel slower than
+ * the recording falls behind schedule, which is reported as schedule lag.
+ *
+ * Outbound messages of every recorded channel are replayed by default.  Use setChannel and setInbound to pick the
+ * messages of one channel, or the ones it received.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+import static java.util.Objects.nonNull;
+
+public class ChannelReplayer {
+    private final static Logger logger = LoggerFactory.getLogger(ChannelReplayer.class);
+    public static final double MAX_SPEED = 0;
+    private static final long SPIN_NANOS = 50_000;     // park until this close to a send, then spin
+
+    private final Channel channel;
+    private final double speed;
+    private String recordedChannel;
+    private boolean inbound;
+    private LongConsumer sendListener;
+    private volatile boolean stopped;
+
+    private long messages;
+    private long bytes;
+    private long elapsedNanos;
+    private final LatencyHistogram scheduleLag = new LatencyHistogram();
+
+    /**
+     * @param speed multiple of the recorded speed, MAX_SPEED to send without waiting
+     */
+    public ChannelReplayer(Channel channel, double speed) {
+        this.channel = channel;
+        this.speed = speed;
+    }
+
+    /**
+     * @param recordedChannel name of the recorded channel to replay, null for all of them
+     */
+    public void setChannel(String recordedChannel) {
+        this.recordedChannel = recordedChannel;
+    }
+
+    /**
+     * @param inbound true to replay received messages instead of sent ones
+     */
+    public void setInbound(boolean inbound) {
+        this.inbound = inbound;
+    }
+
+    /**
+     * @param listener called with System.nanoTime() just before each message is sent, like for matching messages
+     *                 to their delivery on the peer
+     */
+    public void setSendListener(LongConsumer listener) {
+        this.sendListener = listener;
+    }
+
+    public void replay(Path path) throws Exception {
+        try (ChannelRecording recording = new ChannelRecording(path)) {
+            this.replay(recording);
+        }
+    }
+
+    /**
+     * Replay the remaining records of a recording, with time measured from the first replayed one
+     */
+    public void replay(ChannelRecording recording) throws Exception {
+        long start = 0;
+        long first = -1;
+        while (!this.stopped && recording.next()) {
+            if (recording.isOutbound() == this.inbound
+                    || (nonNull(this.recordedChannel) && !this.recordedChannel.equals(recording.getChannel()))) {
+                continue;
+            }
+            long now = System.nanoTime();
+            if (first < 0) {
+                first = recording.getTimeNanos();
+                start = now;
+            }
+            if (this.speed > MAX_SPEED) {
+                long scheduled = start + (long) ((recording.getTimeNanos() - first) / this.speed);
+                now = this.waitUntil(scheduled);
+                this.scheduleLag.record(now - scheduled);
+            }
+            // the recording reuses its buffer, while rate limiting and scheduling may queue the message
+            ByteBuffer data = ByteBuffer.allocate(recording.getData().remaining());
+            data.put(recording.getData()).flip();
+            var listener = this.sendListener;
+            if (nonNull(listener)) {
+                listener.accept(now);
+            }
+            this.bytes += data.remaining();
+            this.channel.send(data, !recording.isBinary());
+            this.channel.awaitWritable(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            this.messages++;
+        }
+        this.elapsedNanos = first < 0 ? 0 : System.nanoTime() - start;
+        logger.info("Replayed on channel {}: {}", this.channel.getName(), this);
+    }
+
+    /**
+     * Stop a replay running on another thread, after the message being sent
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    private long waitUntil(long deadline) {
+        long now = System.nanoTime();
+        while (now < deadline && !this.stopped) {
+            if (deadline - now > SPIN_NANOS) {
+                LockSupport.parkNanos(deadline - now - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+            now = System.nanoTime();
+        }
+        return now;
+    }
+
+    public long getMessages() {
+        return messages;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return nanoseconds each message was sent after its scheduled time, empty at MAX_SPEED
+     */
+    public LatencyHistogram getScheduleLag() {
+        return scheduleLag;
+    }
+
+    @Override
+    public String toString() {
+        double seconds = this.elapsedNanos / 1e9;
+        return String.format("%d messages %d bytes in %.3f s, %.0f messages/s %.1f MB/s at speed %s%s", this.messages,
+                this.bytes, seconds, seconds > 0 ? this.messages / seconds : 0, seconds > 0 ? this.bytes / seconds / 1e6 : 0,
+                this.speed > MAX_SPEED ? this.speed + "x" : "max",
+                this.speed > MAX_SPEED ? ", schedule lag " + this.scheduleLag.toMicrosString() : "");
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * Request/response RPC over a Channel, similar to OpenFin channel actions.  Requests are pipelined: any number of
+ * calls, up to maxPendingCalls, can be outstanding and responses are matched by correlation id.
+ *
+ * Both sides of the Channel need a ChannelRpc.  The Channel should be dedicated to RPC.
+ */
+package com.openfin.webrtc;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+public class ChannelRpc implements ChannelListener {
+    private final static Logger logger = LoggerFactory.getLogger(ChannelRpc.class);
+
+    private static final String TYPE = "rpc";
+    private static final String REQUEST = "request";
+    private static final String RESPONSE = "response";
+    private static final String ERROR = "error";
+    private static final long DEFAULT_TIMEOUT = 10000;
+
+    private final Channel channel;
+    private final Executor executor;
+    private final Map<String, RpcAction> actions;
+    private final PendingCalls pendingCalls;
+
+    static class PendingCall extends CompletableFuture<JSONObject> {
+        long id;    // set before the call is published in PendingCalls
+    }
+
+    /**
+     * Pending calls in slots indexed by call id modulo capacity, so calls are added and looked up without locking or
+     * boxing the id.  An id whose slot is still taken by an older call is skipped.  Since at most maxSize calls are
+     * pending and there are at least as many slots, a free slot is always found.
+     */
+    static class PendingCalls {
+        private final AtomicReferenceArray<PendingCall> slots;
+        private final int mask;
+        private final int maxSize;
+        private final AtomicLong lastId = new AtomicLong();
+        private final AtomicInteger size = new AtomicInteger();    // claimed before a call is added, so it bounds slots
+
+        PendingCalls(int maxSize) {
+            int capacity = Integer.highestOneBit(Math.max(maxSize - 1, 1)) << 1;
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+            this.maxSize = maxSize;
+        }
+
+        private int slotOf(long id) {
+            return (int) id & this.mask;
+        }
+
+        /**
+         * @return id assigned to the call, starting at 1, or -1 if maxSize calls are pending
+         */
+        long add(PendingCall call) {
+            if (this.size.incrementAndGet() > this.maxSize) {
+                this.size.decrementAndGet();
+                return -1;
+            }
+            long id;
+            do {
+                id = this.lastId.incrementAndGet();
+                call.id = id;
+            } while (!this.slots.compareAndSet(this.slotOf(id), null, call));
+            return id;
+        }
+
+        /**
+         * @return pending call with the id, null if there is none
+         */
+        PendingCall get(long id) {
+            if (id <= 0) {
+                return null;
+            }
+            var call = this.slots.get(this.slotOf(id));
+            return nonNull(call) && call.id == id ? call : null;
+        }
+
+        /**
+         * @return false if the call was already removed
+         */
+        boolean remove(PendingCall call) {
+            if (this.slots.compareAndSet(this.slotOf(call.id), call, null)) {
+                this.size.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        int size() {
+            return this.size.get();
+        }
+
+        void forEach(Consumer<PendingCall> action) {
+            for (int i = 0; i < this.slots.length(); i++) {
+                var call = this.slots.get(i);
+                if (nonNull(call)) {
+                    action.accept(call);
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a ChannelRpc that runs actions on the thread delivering channel messages
+     *
+     * @param channel Channel for the requests and responses
+     */
+    public ChannelRpc(Channel channel) {
+        this(channel, 1024, Runnable::run);
+    }
+
+    /**
+     * @param channel Channel for the requests and responses
+     * @param maxPendingCalls maximum number of outstanding calls
+     * @param executor executor for running actions
+     */
+    public ChannelRpc(Channel channel, int maxPendingCalls, Executor executor) {
+        this.channel = channel;
+        this.executor = executor;
+        this.actions = new ConcurrentHashMap<>();
+        this.pendingCalls = new PendingCalls(maxPendingCalls);
+        this.channel.addChannelListener(this);
+    }
+
+    public void register(String action, RpcAction handler) {
+        this.actions.put(action, handler);
+    }
+
+    public boolean remove(String action) {
+        return nonNull(this.actions.remove(action));
+    }
+
+    public CompletableFuture<JSONObject> dispatch(String action, JSONObject payload) {
+        return this.dispatch(action, payload, DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Invoke an action registered by the other side of the channel
+     *
+     * @param action name of the action
+     * @param payload payload for the action
+     * @param timeout time to wait for the response
+     * @param unit unit of timeout
+     * @return future completed with the response, or exceptionally with TimeoutException if the response is late
+     */
+    public CompletableFuture<JSONObject> dispatch(String action, JSONObject payload, long timeout, TimeUnit unit) {
+        PendingCall call = new PendingCall();
+        long id = this.pendingCalls.add(call);
+        if (id < 0) {
+            call.completeExceptionally(new RejectedExecutionException("Too many pending calls"));
+            return call;
+        }
+        call.orTimeout(timeout, unit).whenComplete((result, error) -> this.pendingCalls.remove(call));
+        JSONObject request = new JSONObject();
+        request.put(TYPE, REQUEST);
+        request.put("cid", id);
+        request.put("action", action);
+        request.put("payload", payload);
+        try {
+            this.channel.send(request.toString());
+        } catch (Exception ex) {
+            call.completeExceptionally(ex);
+        }
+        return call;
+    }
+
+    public int getPendingCallCount() {
+        return this.pendingCalls.size();
+    }
+
+    /**
+     * Stop processing messages from the channel and fail all pending calls.  The channel is not closed.
+     */
+    public void close() {
+        this.channel.removeChannelListener(this);
+        this.failPendingCalls("RPC closed");
+    }
+
+    private void failPendingCalls(String reason) {
+        this.pendingCalls.forEach(call -> call.completeExceptionally(new Exception(reason)));
+    }
+
+    @Override
+    public void onStateChange(State state) {
+        if (state == State.CLOSED) {
+            this.failPendingCalls("Channel closed");
+        }
+    }
+
+    @Override
+    public void onMessage(String message) {
+        JSONObject json;
+        try {
+            json = new JSONObject(message);
+        } catch (Exception ex) {
+            logger.error("Invalid RPC message on channel {}", this.channel.getName(), ex);
+            return;
+        }
+        String type = json.optString(TYPE);
+        if (REQUEST.equals(type)) {
+            this.executor.execute(() -> this.invoke(json));
+        } else if (RESPONSE.equals(type) || ERROR.equals(type)) {
+            long id = json.optLong("cid", -1);
+            var call = this.pendingCalls.get(id);
+            if (isNull(call)) {
+                logger.debug("Response to unknown or expired call {}", id);
+            } else if (RESPONSE.equals(type)) {
+                call.complete(json.optJSONObject("payload"));
+            } else {
+                call.completeExceptionally(new Exception(json.optString("message")));
+            }
+        }
+    }
+
+    private void invoke(JSONObject request) {
+        JSONObject response = createResponse(this.actions, request);
+        if (isNull(response)) {
+            logger.warn("RPC request without call id on channel {}", this.channel.getName());
+            return;
+        }
+        try {
+            this.channel.send(response.toString());
+        } catch (Exception ex) {
+            logger.error("Error sending response to {}", request.optString("action"), ex);
+        }
+    }
+
+    /**
+     * Invoke the action of a request
+     *
+     * @return response or ERROR reply to the request, null if the request has no call id to reply to
+     */
+    static JSONObject createResponse(Map<String, RpcAction> actions, JSONObject request) {
+        long id = request.optLong("cid", -1);
+        if (id < 0) {
+            return null;
+        }
+        String action = request.optString("action", null);
+        JSONObject response = new JSONObject();
+        response.put("cid", id);
+        RpcAction handler = isNull(action) ? null : actions.get(action);
+        if (isNull(action)) {
+            response.put(TYPE, ERROR);
+            response.put("message", "Request without action");
+        } else if (isNull(handler)) {
+            response.put(TYPE, ERROR);
+            response.put("message", String.format("No action registered for %s", action));
+        } else {
+            try {
+                response.put("payload", handler.invoke(action, request.optJSONObject("payload")));
+                response.put(TYPE, RESPONSE);
+            } catch (Exception ex) {
+                logger.debug("Error invoking action {}", action, ex);
+                response.put(TYPE, ERROR);
+                response.put("message", String.valueOf(ex.getMessage()));
+            }
+        }
+        return response;
+    }
+}
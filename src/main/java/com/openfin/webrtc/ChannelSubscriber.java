@@ -0,0 +1,152 @@
+/**
+ * Flow.Subscriber that sends received items on a Channel.  Demand follows the Channel: up to a batch of items is
+ * requested while the Channel is open and writable (see Channel.setWritableThreshold), and no more is requested
+ * while bufferedAmount is above the threshold, so a fast publisher is held back instead of filling the send buffer.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+public class ChannelSubscriber implements Flow.Subscriber<ByteBuffer>, ChannelListener {
+    private final static Logger logger = LoggerFactory.getLogger(ChannelSubscriber.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 16;
+
+    private final Channel channel;
+    private final boolean text;
+    private final int batchSize;
+    private final Executor executor;
+    private final AtomicLong outstanding = new AtomicLong();    // requested and not yet received
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean stalled;   // no demand outstanding, waiting for the channel to be writable
+
+    public ChannelSubscriber(Channel channel) {
+        this(channel, false, DEFAULT_BATCH_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param channel Channel to send items on
+     * @param text true to send items as UTF-8 text messages, false for binary messages
+     * @param batchSize maximum number of items requested ahead
+     * @param executor executor to request more items on, when the Channel becomes writable
+     */
+    public ChannelSubscriber(Channel channel, boolean text, int batchSize, Executor executor) {
+        this.channel = channel;
+        this.text = text;
+        this.batchSize = batchSize;
+        this.executor = executor;
+    }
+
+    /**
+     * @return completed when the publisher completes, completed exceptionally when it fails or a send fails
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return this.completion;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (nonNull(this.subscription)) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        this.channel.addChannelListener(this);
+        this.refill();
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        this.outstanding.decrementAndGet();
+        try {
+            this.channel.send(item, this.text);
+        } catch (Exception ex) {
+            logger.error("Error sending on channel {}", this.channel.getName(), ex);
+            this.subscription.cancel();
+            this.finish(ex);
+            return;
+        }
+        this.refill();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.finish(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        this.finish(null);
+    }
+
+    private void finish(Throwable error) {
+        this.channel.removeChannelListener(this);
+        if (isNull(error)) {
+            this.completion.complete(null);
+        } else {
+            this.completion.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Request items up to the batch size while the channel is open and writable
+     */
+    private void refill() {
+        if (this.completion.isDone()) {
+            return;
+        }
+        // flag first, so a buffered amount change between the check and the flag is not missed
+        this.stalled = true;
+        if (!this.channel.isOpen() || !this.channel.isWritable()) {
+            return;
+        }
+        this.stalled = false;
+        long current = this.outstanding.get();
+        long n = this.batchSize - current;
+        if (n > 0 && this.outstanding.compareAndSet(current, current + n)) {
+            this.subscription.request(n);
+        }
+    }
+
+    private void resume() {
+        if (this.stalled && this.channel.isWritable()) {
+            // request on the executor, publishers may deliver items on the requesting thread
+            this.executor.execute(this::refill);
+        }
+    }
+
+    @Override
+    public void onStateChange(State state) {
+        if (state == State.OPEN) {
+            this.resume();
+        } else if (state == State.CLOSED) {
+            this.subscription.cancel();
+            this.finish(new IllegalStateException(String.format("Channel %s is closed", this.channel.getName())));
+        }
+    }
+
+    @Override
+    public void onMessage(String message) {
+    }
+
+    @Override
+    public void onMessage(ChannelMessage message) {
+    }
+
+    @Override
+    public void onBufferedAmountChange(long previousAmount) {
+        this.resume();
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Options for compressing Channel payloads.  Both peers of a Channel have to enable compression with the same dictionary.
+ */
+package com.openfin.webrtc;
+
+import java.util.zip.Deflater;
+
+public class CompressionOptions {
+
+    private int threshold = 256;            // payloads smaller than this are sent as is
+    private int level = Deflater.BEST_SPEED;
+    private byte[] dictionary;              // optional preset dictionary
+    private int maxInflatedSize = 16 * 1024 * 1024;     // received frames inflating to more than this are rejected
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    public void setDictionary(byte[] dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public int getMaxInflatedSize() {
+        return maxInflatedSize;
+    }
+
+    public void setMaxInflatedSize(int maxInflatedSize) {
+        this.maxInflatedSize = maxInflatedSize;
+    }
+}
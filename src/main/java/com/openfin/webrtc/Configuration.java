@@ -15,6 +15,10 @@ public class Configuration {
     private String pairingCode;
     private DesktopConnection desktopConnection;
     private JSONObject webRTCConfiguration;  // https://developer.mozilla.org/en-US/docs/Web/API/RTCConfiguration/iceServers
+    private boolean trickleIce;
+    private RTCOptions rtcOptions;
+    private SharedMemoryOptions sharedMemoryOptions;
+    private boolean signalingMultiplexed;
 
     public String getSignalingBaseUrl() {
         return signalingBaseUrl;
@@ -39,4 +43,66 @@ public class Configuration {
     public void setDesktopConnection(DesktopConnection desktopConnection) {
         this.desktopConnection = desktopConnection;
     }
+
+    public JSONObject getWebRTCConfiguration() {
+        return webRTCConfiguration;
+    }
+
+    /**
+     * @param webRTCConfiguration RTCConfiguration in JSON, with iceServers and iceCandidatePoolSize, for connections
+     *                            that do not get it from a signaling server
+     */
+    public void setWebRTCConfiguration(JSONObject webRTCConfiguration) {
+        this.webRTCConfiguration = webRTCConfiguration;
+    }
+
+    public boolean isTrickleIce() {
+        return trickleIce;
+    }
+
+    /**
+     * @param trickleIce true for LocalConnection to send the offer right away and ICE candidates as they are gathered,
+     *                   false to send the offer with all candidates once gathering completes.  The peer must support
+     *                   the ice-candidate action of the OpenFin channel for trickle ICE.
+     */
+    public void setTrickleIce(boolean trickleIce) {
+        this.trickleIce = trickleIce;
+    }
+
+    public boolean isSignalingMultiplexed() {
+        return signalingMultiplexed;
+    }
+
+    /**
+     * @param signalingMultiplexed true for IceConnections to share one socket to the signaling server, joining a room
+     *                             per pairing code.  Peers have to send signaling messages with their pairing code,
+     *                             which Java peers do, if the session has several rooms.
+     */
+    public void setSignalingMultiplexed(boolean signalingMultiplexed) {
+        this.signalingMultiplexed = signalingMultiplexed;
+    }
+
+    public RTCOptions getRTCOptions() {
+        return rtcOptions;
+    }
+
+    /**
+     * @param rtcOptions options of the peer connection and ICE candidates, like RTCOptions.sameHost() for peers on
+     *                   the same machine.  null for WebRTC defaults
+     */
+    public void setRTCOptions(RTCOptions rtcOptions) {
+        this.rtcOptions = rtcOptions;
+    }
+
+    public SharedMemoryOptions getSharedMemoryOptions() {
+        return sharedMemoryOptions;
+    }
+
+    /**
+     * @param sharedMemoryOptions options for carrying channel messages in shared memory when the peer is on the same
+     *                            host and supports it, null for data channels only
+     */
+    public void setSharedMemoryOptions(SharedMemoryOptions sharedMemoryOptions) {
+        this.sharedMemoryOptions = sharedMemoryOptions;
+    }
 }
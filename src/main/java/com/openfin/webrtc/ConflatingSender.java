@@ -0,0 +1,218 @@
+/**
+ * Last-value-wins sender for keyed updates, such as market data.  Only the latest update of each key is kept pending,
+ * and pending updates are sent, oldest key first, while bufferedAmount of the Channel is below a limit.
+ *
+ * Pending updates are flushed on publish, when bufferedAmount of the Channel drops and, optionally, on a tick.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.nonNull;
+
+public class ConflatingSender<K> implements ChannelListener {
+    private final static Logger logger = LoggerFactory.getLogger(ConflatingSender.class);
+
+    private final Channel channel;
+    private final long bufferedAmountLimit;
+    private final Map<K, Update> pending;  // guarded by lock, in order of the first pending update of each key
+    private final ReentrantLock lock;
+    private volatile boolean flushRequested;
+    private ScheduledFuture<?> tick;
+
+    // metrics
+    private final LongAdder published = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LatencyHistogram staleness = new LatencyHistogram();
+
+    private static class Update {
+        private final long pendingSince;
+        private Object message;     // String or ByteBuffer
+
+        private Update(long pendingSince, Object message) {
+            this.pendingSince = pendingSince;
+            this.message = message;
+        }
+    }
+
+    /**
+     * @param channel Channel to send updates
+     * @param bufferedAmountLimit updates are kept pending while bufferedAmount of the Channel is at or above this limit
+     */
+    public ConflatingSender(Channel channel, long bufferedAmountLimit) {
+        this.channel = channel;
+        this.bufferedAmountLimit = bufferedAmountLimit;
+        this.pending = new LinkedHashMap<>();
+        this.lock = new ReentrantLock();
+        this.channel.addChannelListener(this);
+    }
+
+    public void publish(K key, String message) {
+        this.publishUpdate(key, message);
+    }
+
+    /**
+     * @param key key of the update
+     * @param message binary message from position to limit.  The buffer must not be modified after publishing
+     */
+    public void publish(K key, ByteBuffer message) {
+        this.publishUpdate(key, message);
+    }
+
+    private void publishUpdate(K key, Object message) {
+        this.published.increment();
+        this.lock.lock();
+        try {
+            var update = this.pending.get(key);
+            if (nonNull(update)) {
+                update.message = message;
+                this.conflated.increment();
+            } else {
+                this.pending.put(key, new Update(System.nanoTime(), message));
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        this.flush();
+    }
+
+    /**
+     * Send pending updates while bufferedAmount of the Channel is below the limit.  Never blocks: if another thread is
+     * flushing, it flushes again on behalf of the caller.  Sending can block on the WebRTC signaling thread, which
+     * calls onBufferedAmountChange, so waiting for the lock there could deadlock.
+     */
+    public void flush() {
+        this.flushRequested = true;
+        while (this.flushRequested && this.lock.tryLock()) {
+            try {
+                this.flushRequested = false;
+                this.flushPending();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private void flushPending() {
+        Iterator<Update> iterator = this.pending.values().iterator();
+        while (iterator.hasNext() && this.channel.getBufferedAmount() < this.bufferedAmountLimit) {
+            var update = iterator.next();
+            try {
+                if (update.message instanceof String) {
+                    this.channel.send((String) update.message);
+                } else {
+                    this.channel.send((ByteBuffer) update.message);
+                }
+            } catch (Exception ex) {
+                logger.debug("Error sending update on channel {} {}", this.channel.getName(), ex.getMessage());
+                return;
+            }
+            iterator.remove();
+            this.sent.increment();
+            this.staleness.record(System.nanoTime() - update.pendingSince);
+        }
+    }
+
+    /**
+     * Flush pending updates periodically, in addition to flushing on bufferedAmount changes
+     */
+    public synchronized void startTick(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        this.stopTick();
+        this.tick = executor.scheduleAtFixedRate(this::flush, period, period, unit);
+    }
+
+    public synchronized void stopTick() {
+        if (nonNull(this.tick)) {
+            this.tick.cancel(false);
+            this.tick = null;
+        }
+    }
+
+    /**
+     * Stop sending updates and discard pending ones.  The channel is not closed.
+     */
+    public void close() {
+        this.stopTick();
+        this.channel.removeChannelListener(this);
+        this.lock.lock();
+        try {
+            this.pending.clear();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getPendingCount() {
+        this.lock.lock();
+        try {
+            return this.pending.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getPublishedCount() {
+        return this.published.sum();
+    }
+
+    public long getSentCount() {
+        return this.sent.sum();
+    }
+
+    public long getConflatedCount() {
+        return this.conflated.sum();
+    }
+
+    /**
+     * @return published updates per sent update, 1 if nothing was conflated
+     */
+    public double getConflationRatio() {
+        long sent = this.sent.sum();
+        return sent == 0 ? 1 : (double) this.published.sum() / sent;
+    }
+
+    /**
+     * @return histogram, in nanoseconds, of the time from an update of a key becoming pending until the latest update of the key is sent
+     */
+    public LatencyHistogram getStaleness() {
+        return this.staleness;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("published %d sent %d conflation ratio %.2f pending %d staleness %s", getPublishedCount(),
+                getSentCount(), getConflationRatio(), getPendingCount(), this.staleness.toMicrosString());
+    }
+
+    @Override
+    public void onStateChange(State state) {
+        if (state == State.OPEN) {
+            this.flush();
+        }
+    }
+
+    @Override
+    public void onMessage(String message) {
+    }
+
+    @Override
+    public void onBinaryMessage(ByteBuffer data) {
+    }
+
+    @Override
+    public void onBufferedAmountChange(long previousAmount) {
+        this.flush();
+    }
+}
@@ -10,13 +10,26 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 public abstract class Connection implements PeerConnectionObserver {
@@ -34,30 +47,83 @@ public abstract class Connection implements PeerConnectionObserver {
     private Channel defaultChannel;
     private String defaultChannelName;  // name of default DataChannel
     private Map<String, Channel> channelMap;
+    private final Map<String, CompletableFuture<Channel>> channelWaiters = new ConcurrentHashMap<>();
+    private SendScheduler sendScheduler;
+    private final ResourceTracker.Handle handle;
+    private final SetupTrace setupTrace;
+    private final CandidateFilter candidateFilter;     // null without RTCOptions
+    private volatile boolean prewarmed;                 // local offer set when the peer connection was created
+    private volatile boolean offerInitialized;
+    private volatile boolean gatheringComplete;
+
+    // shared memory transport of channels, negotiated in the offer and answer
+    private static final String SHARED_MEMORY_PROTOCOL = "openfin-shm";
+    private final String sharedMemoryOffer = UUID.randomUUID().toString();     // session id, if this side offers
+    private volatile String sharedMemorySession;    // null until negotiated
+    private volatile Path sharedMemoryDirectory;
+    private volatile boolean sharedMemoryOfferer;
 
     private CopyOnWriteArrayList<ConnectionListener> connectionListeners;
 
     public Connection(Configuration configuration) {
         this.configuration = configuration;
         this.defaultChannelName = String.format("%s:default", configuration.getPairingCode());
+        this.setupTrace = new SetupTrace();
+        this.candidateFilter = nonNull(configuration.getRTCOptions()) ? new CandidateFilter(configuration.getRTCOptions()) : null;
         this.factory = new PeerConnectionFactory();
         this.connectedLatch = new CountDownLatch(1);
         this.channelMap = new ConcurrentHashMap<>();
         this.connectionListeners = new CopyOnWriteArrayList<>();
+        this.handle = ResourceTracker.trackConnection(configuration.getPairingCode());
         logger.debug("Created Connection with default channel {}", this.defaultChannelName);
     }
 
     abstract public void initialize() throws Exception;
 
     protected void createPeerConnection(JSONObject rtcConfig) throws Exception {
+        if (isNull(rtcConfig)) {
+            rtcConfig = this.configuration.getWebRTCConfiguration();
+        }
         RTCConfiguration config = createRTCConfig(rtcConfig);
         this.peerConnection = factory.createPeerConnection(config, this);
+        this.markSetupPhase(SetupPhase.PEER_CONNECTION);
+        if (this.getIceCandidatePoolSize(rtcConfig) > 0 && this.isOfferer()) {
+            this.prewarm();
+        }
+    }
+
+    private int getIceCandidatePoolSize(JSONObject rtcConfig) {
+        RTCOptions options = this.configuration.getRTCOptions();
+        if (nonNull(options) && options.getIceCandidatePoolSize() > 0) {
+            return options.getIceCandidatePoolSize();
+        }
+        return nonNull(rtcConfig) ? rtcConfig.optInt("iceCandidatePoolSize", 0) : 0;
+    }
+
+    /**
+     * WebRTC of dev.onvoid.webrtc does not take iceCandidatePoolSize, so candidates are pre-gathered by setting the
+     * local offer, with the default channel, right away.  initializeOffer then uses the offer, with candidates
+     * gathered so far.
+     */
+    private void prewarm() throws Exception {
+        logger.debug("Pre-gathering candidates {}", this.configuration.getPairingCode());
+        this.createDefaultChannel();
+        this.createOffer();
+        this.prewarmed = true;
+    }
+
+    /**
+     * @return true if this side sends the offer, known when the peer connection is created.  Candidates are only
+     * pre-gathered for the offering side
+     */
+    protected boolean isOfferer() {
+        return false;
     }
 
     private RTCConfiguration createRTCConfig(JSONObject rtcConfig) {
         RTCConfiguration config = new RTCConfiguration();
-        if (nonNull(rtcConfig)) {
-            JSONArray array = rtcConfig.getJSONArray("iceServers");
+        JSONArray array = nonNull(rtcConfig) ? rtcConfig.optJSONArray("iceServers") : null;
+        if (nonNull(array)) {
             for (int i = 0; i < array.length(); i++) {
                 RTCIceServer iceServer = new RTCIceServer();
                 JSONObject iceJson = array.getJSONObject(i);
@@ -79,6 +145,10 @@ public abstract class Connection implements PeerConnectionObserver {
                 logger.debug("adding ice server: {}", iceServer);
             }
         }
+        if (nonNull(this.configuration.getRTCOptions())) {
+            this.configuration.getRTCOptions().apply(config);
+            logger.debug("applied {}", this.configuration.getRTCOptions());
+        }
         return config;
     }
 
@@ -88,8 +158,22 @@ public abstract class Connection implements PeerConnectionObserver {
      */
     public void initializeOffer() throws Exception {
         logger.debug("Initialize offer {}", this.configuration.getPairingCode());
-        this.createDefaultChannel();
-        this.createOffer();
+        if (!this.prewarmed) {
+            this.createDefaultChannel();
+            this.createOffer();
+        }
+        this.offerInitialized = true;
+    }
+
+    /**
+     * @return true once initializeOffer is done.  With pre-gathered candidates, gathering can complete before
+     */
+    protected boolean isOfferInitialized() {
+        return this.offerInitialized;
+    }
+
+    protected boolean isGatheringComplete() {
+        return this.gatheringComplete;
     }
 
     /**
@@ -98,6 +182,7 @@ public abstract class Connection implements PeerConnectionObserver {
     private void createDefaultChannel() {
         var defaultDataChannel = this.peerConnection.createDataChannel(this.defaultChannelName, new RTCDataChannelInit());
         this.defaultChannel = new Channel(defaultDataChannel);
+        this.traceChannel(this.defaultChannel);
     }
 
     /**
@@ -105,13 +190,14 @@ public abstract class Connection implements PeerConnectionObserver {
      *
      * @throws Exception
      */
-    private void createOffer() throws Exception {
+    protected void createOffer() throws Exception {
         CreateDescObserver createObserver = new CreateDescObserver();
         SetDescObserver setObserver = new SetDescObserver();
         peerConnection.createOffer(new RTCOfferOptions(), createObserver);
         RTCSessionDescription offerDesc = createObserver.get();
         peerConnection.setLocalDescription(offerDesc, setObserver);
         setObserver.get();
+        this.markSetupPhase(SetupPhase.LOCAL_DESCRIPTION);
     }
 
     /**
@@ -121,11 +207,32 @@ public abstract class Connection implements PeerConnectionObserver {
      */
     protected abstract void makeOffer() throws Exception;
 
+    /**
+     * @return candidate in the JSON format of RTCIceCandidateInit, as taken by addIceCandidate
+     */
+    protected JSONObject createCandidatePayload(RTCIceCandidate candidate) {
+        JSONObject candidateJson = new JSONObject();
+        candidateJson.put(Connection.SDPCandidate, candidate.sdp);
+        candidateJson.put("sdpMid", candidate.sdpMid);
+        candidateJson.put("sdpMLineIndex", candidate.sdpMLineIndex);
+        if (nonNull(candidate.serverUrl)) {
+            candidateJson.put("serverUrl", candidate.serverUrl);
+        }
+        return candidateJson;
+    }
+
+    /**
+     * @return SDP of the local description, without candidates filtered by RTCOptions
+     */
+    protected String getLocalSdp() {
+        String sdp = this.peerConnection.getLocalDescription().sdp;
+        return nonNull(this.candidateFilter) ? this.candidateFilter.filterLocalSdp(sdp) : sdp;
+    }
+
     protected JSONObject createOfferPayload() {
-        var offer = this.peerConnection.getLocalDescription();
         JSONObject description = new JSONObject();
         description.put("type", SDPOffer);
-        description.put("sdp", offer.sdp);
+        description.put("sdp", this.getLocalSdp());
         JSONObject payload = new JSONObject();
         payload.put("description", description);
         logger.debug("last ICE candidate {}", payload.toString());
@@ -144,6 +251,7 @@ public abstract class Connection implements PeerConnectionObserver {
         RTCSessionDescription answerDesc = createObserver.get();
         peerConnection.setLocalDescription(answerDesc, setObserver);
         setObserver.get();
+        this.markSetupPhase(SetupPhase.LOCAL_DESCRIPTION);
         return answerDesc;
     }
 
@@ -176,9 +284,13 @@ public abstract class Connection implements PeerConnectionObserver {
     }
 
     protected void setRemoteDescription(RTCSessionDescription description) throws Exception {
+        if (nonNull(this.candidateFilter)) {
+            description = new RTCSessionDescription(description.sdpType, this.candidateFilter.filterRemoteSdp(description.sdp));
+        }
         SetDescObserver setObserver = new SetDescObserver();
         peerConnection.setRemoteDescription(description, setObserver);
         setObserver.get();
+        this.markSetupPhase(SetupPhase.REMOTE_DESCRIPTION);
     }
 
     /**
@@ -187,6 +299,10 @@ public abstract class Connection implements PeerConnectionObserver {
      * @param payload
      */
     public void addIceCandidate(JSONObject payload) {
+        if (nonNull(this.candidateFilter) && !this.candidateFilter.acceptRemote(payload.getString("candidate"))) {
+            logger.debug("Filtered remote candidate {}", payload);
+            return;
+        }
         RTCIceCandidate candidate = new RTCIceCandidate(payload.getString("sdpMid"),
                 payload.getInt("sdpMLineIndex"),
                 payload.getString("candidate"),
@@ -195,25 +311,330 @@ public abstract class Connection implements PeerConnectionObserver {
     }
 
     public Channel createChannel(String name) {
-        var dataChannel = this.peerConnection.createDataChannel(name, new RTCDataChannelInit());
+        return this.createChannel(name, (ReliabilityOptions) null);
+    }
+
+    /**
+     * Create a channel with partial reliability or unordered delivery
+     *
+     * @param name name of the channel
+     * @param reliability delivery options, null for reliable and ordered
+     * @return the channel
+     */
+    public Channel createChannel(String name, ReliabilityOptions reliability) {
+        if (this.handle.isClosed()) {
+            throw new IllegalStateException(String.format("Connection %s is closed", this.configuration.getPairingCode()));
+        }
+        if (nonNull(reliability)) {
+            // before the ring file of the transport is created
+            reliability.validate();
+        }
+        var transport = this.createSharedMemoryTransport(name);
+        var init = new RTCDataChannelInit();
+        if (nonNull(reliability)) {
+            reliability.apply(init);
+        }
+        if (nonNull(transport)) {
+            // tells the peer to use shared memory for the channel too
+            init.protocol = SHARED_MEMORY_PROTOCOL;
+        }
+        var dataChannel = this.peerConnection.createDataChannel(name, init);
         var channel = new Channel(dataChannel);
-        this.channelMap.put(name, channel);
+        if (nonNull(transport)) {
+            channel.setSharedMemoryTransport(transport);
+        }
+        this.putChannel(channel);
+        this.traceChannel(channel);
+        return channel;
+    }
+
+    private void putChannel(Channel channel) {
+        this.channelMap.put(channel.getName(), channel);
+        var waiter = this.channelWaiters.remove(channel.getName());
+        if (nonNull(waiter)) {
+            channel.getOpenFuture().whenComplete((open, ex) -> {
+                if (nonNull(ex)) {
+                    waiter.completeExceptionally(ex);
+                } else {
+                    waiter.complete(open);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return channel created on either side of the connection with the name, null if there is none
+     */
+    public Channel getChannel(String name) {
+        return this.channelMap.get(name);
+    }
+
+    /**
+     * @return channels created on either side of the connection, not including the default channel
+     */
+    public Collection<Channel> getChannels() {
+        return Collections.unmodifiableCollection(this.channelMap.values());
+    }
+
+    /**
+     * @return future completed with the channel of the name once it exists, created by either side, and is open.
+     *         Completed exceptionally if the channel or the connection closes first
+     */
+    public CompletableFuture<Channel> getChannelFuture(String name) {
+        var channel = this.channelMap.get(name);
+        if (nonNull(channel)) {
+            return channel.getOpenFuture();
+        }
+        if (this.handle.isClosed()) {
+            return CompletableFuture.failedFuture(new IllegalStateException(String.format("Connection %s is closed", this.configuration.getPairingCode())));
+        }
+        var waiter = this.channelWaiters.computeIfAbsent(name, key -> new CompletableFuture<>());
+        // the channel may have been added before the waiter
+        channel = this.channelMap.get(name);
+        if (nonNull(channel) && this.channelWaiters.remove(name, waiter)) {
+            return channel.getOpenFuture();
+        }
+        return waiter.copy();
+    }
+
+    /**
+     * Wait until the channel of the name exists and is open
+     *
+     * @return the open channel, null on timeout
+     * @throws Exception if the channel or the connection closes first
+     */
+    public Channel awaitChannel(String name, long timeout, TimeUnit unit) throws Exception {
+        try {
+            return this.getChannelFuture(name).get(timeout, unit);
+        } catch (TimeoutException ex) {
+            return null;
+        } catch (ExecutionException ex) {
+            throw new Exception(ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+    /**
+     * Create a channel whose sends are scheduled by priority with other scheduled channels of this connection
+     *
+     * @param name name of the channel
+     * @param priority priority class of the channel
+     * @param weight share of the channel in its priority class
+     * @return the channel
+     */
+    public Channel createChannel(String name, SendPriority priority, int weight) {
+        var channel = this.createChannel(name);
+        this.getSendScheduler().register(channel, priority, weight);
         return channel;
     }
 
+    /**
+     * @return scheduler for sends of channels of this connection, created on first call
+     */
+    public synchronized SendScheduler getSendScheduler() {
+        if (isNull(this.sendScheduler)) {
+            this.sendScheduler = new SendScheduler();
+        }
+        return this.sendScheduler;
+    }
+
     public void waitUntilConnected() throws InterruptedException {
         connectedLatch.await();
     }
 
+    /**
+     * Wait until the peer connection is connected.  Does not pin virtual threads.
+     *
+     * @return false on timeout
+     * @throws InterruptedException
+     */
+    public boolean awaitOpen(long timeout, TimeUnit unit) throws InterruptedException {
+        return connectedLatch.await(timeout, unit);
+    }
+
+    /**
+     * Close every channel, the peer connection and the factory, releasing their native resources and threads.
+     * Calling close again does nothing.
+     */
     public void close() {
+        if (!this.handle.close()) {
+            return;
+        }
         logger.debug("Closing {}", this.configuration.getPairingCode());
         if (nonNull(this.defaultChannel)) {
             this.defaultChannel.close();
         }
+        for (Channel channel : this.channelMap.values()) {
+            channel.close();
+        }
+        this.channelMap.clear();
+        for (var waiter : this.channelWaiters.values()) {
+            waiter.completeExceptionally(new IllegalStateException(String.format("Connection %s is closed", this.configuration.getPairingCode())));
+        }
+        this.channelWaiters.clear();
+        this.deleteSharedMemoryProbe();
         if (nonNull(this.peerConnection)) {
             this.peerConnection.close();
             this.peerConnection = null;
         }
+        this.factory.dispose();
+    }
+
+    public boolean isClosed() {
+        return this.handle.isClosed();
+    }
+
+    /**
+     * Offer shared memory to the peer, to be sent with the offer.  A probe file in the directory lets the peer check
+     * that it shares the directory, which means it is on the same host.
+     *
+     * @return offer of shared memory, null if SharedMemoryOptions are not set
+     */
+    protected JSONObject createSharedMemoryOffer() {
+        var options = this.configuration.getSharedMemoryOptions();
+        if (isNull(options)) {
+            return null;
+        }
+        Path probe = Paths.get(options.getDirectory(), String.format("webrtc-%s.probe", this.sharedMemoryOffer));
+        try {
+            Files.createFile(probe);
+        } catch (FileAlreadyExistsException ex) {
+            // offered again for renegotiation
+        } catch (IOException ex) {
+            logger.error("Error creating {}, not offering shared memory", probe, ex);
+            return null;
+        }
+        JSONObject offer = new JSONObject();
+        offer.put("session", this.sharedMemoryOffer);
+        offer.put("directory", options.getDirectory());
+        return offer;
+    }
+
+    /**
+     * Accept shared memory offered by the peer, if SharedMemoryOptions are set and the probe file of the peer is found
+     *
+     * @param offer offer of shared memory from the peer, null if not offered
+     * @return acceptance to be sent with the answer, null if not accepted
+     */
+    protected JSONObject acceptSharedMemory(JSONObject offer) {
+        if (isNull(this.configuration.getSharedMemoryOptions()) || isNull(offer)) {
+            return null;
+        }
+        String session = offer.getString("session");
+        Path directory = Paths.get(offer.getString("directory"));
+        if (!Files.exists(directory.resolve(String.format("webrtc-%s.probe", session)))) {
+            logger.info("Peer of {} is not on this host, not using shared memory", this.configuration.getPairingCode());
+            return null;
+        }
+        this.sharedMemoryDirectory = directory;
+        this.sharedMemoryOfferer = false;
+        this.sharedMemorySession = session;
+        JSONObject accepted = new JSONObject();
+        accepted.put("session", session);
+        return accepted;
+    }
+
+    /**
+     * Process the answer of the peer to createSharedMemoryOffer.  Channels created after this use shared memory if
+     * the peer accepted it.
+     *
+     * @param answer acceptance of the peer, null if the peer did not accept or does not support shared memory
+     */
+    protected void onSharedMemoryAnswer(JSONObject answer) {
+        var options = this.configuration.getSharedMemoryOptions();
+        if (isNull(options)) {
+            return;
+        }
+        this.deleteSharedMemoryProbe();
+        if (isNull(answer) || !this.sharedMemoryOffer.equals(answer.optString("session"))) {
+            logger.info("Peer of {} does not support shared memory, using data channels", this.configuration.getPairingCode());
+            return;
+        }
+        this.sharedMemoryDirectory = Paths.get(options.getDirectory());
+        this.sharedMemoryOfferer = true;
+        this.sharedMemorySession = this.sharedMemoryOffer;
+    }
+
+    /**
+     * @return true if channels are carried in shared memory
+     */
+    public boolean isSharedMemory() {
+        return nonNull(this.sharedMemorySession);
+    }
+
+    private void deleteSharedMemoryProbe() {
+        var options = this.configuration.getSharedMemoryOptions();
+        if (nonNull(options)) {
+            try {
+                Files.deleteIfExists(Paths.get(options.getDirectory(), String.format("webrtc-%s.probe", this.sharedMemoryOffer)));
+            } catch (IOException ex) {
+                logger.debug("Error deleting shared memory probe", ex);
+            }
+        }
+    }
+
+    /**
+     * @return transport of a channel, null if shared memory is not negotiated or its ring can not be created
+     */
+    private SharedMemoryTransport createSharedMemoryTransport(String name) {
+        var session = this.sharedMemorySession;
+        if (isNull(session)) {
+            return null;
+        }
+        try {
+            return new SharedMemoryTransport(this.sharedMemoryDirectory, session, name, this.sharedMemoryOfferer,
+                    this.configuration.getSharedMemoryOptions());
+        } catch (IOException ex) {
+            logger.error("Error creating shared memory ring of channel {}", name, ex);
+            return null;
+        }
+    }
+
+    /**
+     * @return timestamps of setup phases of this connection
+     */
+    public SetupTrace getSetupTrace() {
+        return this.setupTrace;
+    }
+
+    /**
+     * Timestamp a setup phase, the first time it is reached, and notify listeners
+     */
+    protected void markSetupPhase(SetupPhase phase) {
+        if (this.setupTrace.mark(phase)) {
+            long elapsed = this.setupTrace.getElapsed(phase);
+            logger.debug("Setup phase {} of {} at {} us", phase, this.configuration.getPairingCode(), elapsed / 1000);
+            SetupMetrics.record(phase, elapsed);
+            for (ConnectionListener listener : this.connectionListeners) {
+                listener.onSetupPhase(phase, elapsed);
+            }
+        }
+    }
+
+    /**
+     * Mark CHANNEL_OPEN and FIRST_MESSAGE phases when a channel opens or receives its first message
+     */
+    private void traceChannel(Channel channel) {
+        if (this.setupTrace.isReached(SetupPhase.FIRST_MESSAGE)) {
+            return;
+        }
+        channel.addChannelListener(new ChannelListener() {
+            @Override
+            public void onStateChange(State state) {
+                if (state == State.OPEN) {
+                    markSetupPhase(SetupPhase.CHANNEL_OPEN);
+                } else if (state == State.CLOSED) {
+                    channel.removeChannelListener(this);
+                }
+            }
+            @Override
+            public void onMessage(String message) {
+            }
+            @Override
+            public void onMessage(ChannelMessage message) {
+                markSetupPhase(SetupPhase.FIRST_MESSAGE);
+                channel.removeChannelListener(this);
+            }
+        });
     }
 
     @Override
@@ -244,6 +665,8 @@ public abstract class Connection implements PeerConnectionObserver {
     public void onIceGatheringChange(RTCIceGatheringState state) {
         logger.debug("onIceGatheringChange {}", state.toString());
         if (state == RTCIceGatheringState.COMPLETE) {
+            this.gatheringComplete = true;
+            this.markSetupPhase(SetupPhase.ICE_GATHERING_COMPLETE);
             this.onLastIceCandidate();
         }
     }
@@ -251,6 +674,10 @@ public abstract class Connection implements PeerConnectionObserver {
     @Override
     public void onIceCandidate(RTCIceCandidate candidate) {
         logger.debug("onIceCandidate {}", candidate.toString());
+        if (nonNull(this.candidateFilter) && !this.candidateFilter.acceptLocal(candidate.sdp)) {
+            logger.debug("Filtered local candidate {}", candidate.sdp);
+            return;
+        }
         this.onNewIceCandidate(candidate);
     }
 
@@ -280,7 +707,22 @@ public abstract class Connection implements PeerConnectionObserver {
         logger.debug("onDataChannel {}", dataChannel.getLabel());
         if (!this.defaultChannelName.equals(dataChannel.getLabel())) {
             var channel = new Channel(dataChannel);
-            this.channelMap.put(dataChannel.getLabel(), channel);
+            if (this.handle.isClosed()) {
+                channel.close();
+                return;
+            }
+            if (SHARED_MEMORY_PROTOCOL.equals(dataChannel.getProtocol())) {
+                var transport = this.createSharedMemoryTransport(dataChannel.getLabel());
+                if (isNull(transport)) {
+                    // the peer writes to shared memory only
+                    logger.error("Closing channel {}, shared memory not available", dataChannel.getLabel());
+                    channel.close();
+                    return;
+                }
+                channel.setSharedMemoryTransport(transport);
+            }
+            this.putChannel(channel);
+            this.traceChannel(channel);
             this.fireChannelEvent(channel);
         }
     }
@@ -311,6 +753,10 @@ public abstract class Connection implements PeerConnectionObserver {
 
     private void fireConnectionStatusEvent(RTCPeerConnectionState state) {
         var mapState = this.mapState(state);
+        if (mapState == ConnectionListener.State.OPEN) {
+            this.markSetupPhase(SetupPhase.CONNECTED);
+            this.connectedLatch.countDown();
+        }
         if (nonNull(mapState)) {
             for (ConnectionListener listener : this.connectionListeners) {
                 listener.onStateChange(mapState);
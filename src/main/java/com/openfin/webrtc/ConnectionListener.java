@@ -10,4 +10,13 @@ public interface ConnectionListener {
     public void onStateChange(ConnectionListener.State state);
     public void onChannel(Channel channel);
 
+    /**
+     * Called the first time the connection reaches a setup phase
+     *
+     * @param phase setup phase
+     * @param elapsedNanos nanoseconds since the connection was created
+     */
+    default void onSetupPhase(SetupPhase phase, long elapsedNanos) {
+    }
+
 }
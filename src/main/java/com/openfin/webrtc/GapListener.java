@@ -0,0 +1,12 @@
+/**
+ * Listener for gaps in sequence numbers of messages received on a Channel
+ */
+package com.openfin.webrtc;
+
+public interface GapListener {
+    /**
+     * Called on the receiving thread when messages from sequence number from to to, inclusive, have not been received
+     * before a later message.  On unordered channels, some of them may still arrive.
+     */
+    public void onGap(Channel channel, long from, long to);
+}
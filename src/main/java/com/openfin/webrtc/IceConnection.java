@@ -1,5 +1,8 @@
 /**
  * WebRTC Connection that requires ICE Servers to initiate connectivity.
+ *
+ * Local candidates are queued until this side has sent its offer or answer, since the peer can not add candidates
+ * before it has the remote description.  Candidates are gathered before the offer when they are pre-gathered.
  */
 
 package com.openfin.webrtc;
@@ -11,6 +14,9 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static java.util.Objects.nonNull;
 
 public class IceConnection extends Connection implements SignalingListener {
@@ -18,6 +24,9 @@ public class IceConnection extends Connection implements SignalingListener {
 
     private final Signaling signaling;
     private boolean peerTrickleReady;
+    // guarded by this
+    private boolean descriptionSent;
+    private final List<JSONObject> localCandidates = new ArrayList<>();    // gathered before the description is sent
 
     public IceConnection(Configuration configuration) {
         super(configuration);
@@ -41,6 +50,11 @@ public class IceConnection extends Connection implements SignalingListener {
         }
     }
 
+    @Override
+    protected boolean isOfferer() {
+        return this.signaling.isPeerLeader();
+    }
+
     private void leaderOffer() {
         if (this.signaling.isPeerLeader()) {
             try {
@@ -56,21 +70,36 @@ public class IceConnection extends Connection implements SignalingListener {
     protected void makeOffer() throws Exception {
         var offer = this.createOfferPayload();
         this.signaling.emit("message", offer.getJSONObject("description"));
+        this.markSetupPhase(SetupPhase.DESCRIPTION_SENT);
+        this.sendQueuedCandidates();
     }
 
     @Override
-    protected void onNewIceCandidate(RTCIceCandidate candidate) {
+    protected synchronized void onNewIceCandidate(RTCIceCandidate candidate) {
+        JSONObject payload = this.createCandidatePayload(candidate);
+        if (this.descriptionSent) {
+            this.sendCandidate(payload);
+        } else {
+            this.localCandidates.add(payload);
+        }
+    }
+
+    /**
+     * Send candidates gathered before the description, and the ones that follow right away
+     */
+    private synchronized void sendQueuedCandidates() {
+        this.descriptionSent = true;
+        for (JSONObject candidate : this.localCandidates) {
+            this.sendCandidate(candidate);
+        }
+        this.localCandidates.clear();
+    }
+
+    private void sendCandidate(JSONObject candidate) {
         try {
             JSONObject payload = new JSONObject();
             payload.put("type", Connection.SDPCandidate);
-            JSONObject candidateJson = new JSONObject();
-            candidateJson.put(Connection.SDPCandidate, candidate.sdp);
-            candidateJson.put("sdpMid", candidate.sdpMid);
-            candidateJson.put("sdpMLineIndex", candidate.sdpMLineIndex);
-            if (nonNull(candidate.serverUrl)) {
-                candidateJson.put("serverUrl", candidate.serverUrl);
-            }
-            payload.put("candidate", candidateJson);
+            payload.put("candidate", candidate);
             this.signaling.emit("message", payload);
         } catch (Exception ex) {
             logger.error("Error sending message", ex);
@@ -84,11 +113,12 @@ public class IceConnection extends Connection implements SignalingListener {
         try {
             this.setRemoteDescription(new RTCSessionDescription(RTCSdpType.OFFER, payload.getString("sdp")));
             this.createAnswer();
-            var description = this.peerConnection.getLocalDescription();
             JSONObject answer = new JSONObject();
             answer.put("type", Connection.SDPAnswer);
-            answer.put("sdp", description.sdp);
+            answer.put("sdp", this.getLocalSdp());
             this.signaling.emit("message", answer);
+            this.markSetupPhase(SetupPhase.DESCRIPTION_SENT);
+            this.sendQueuedCandidates();
             ret.put("status", 200);
         } catch (Exception ex) {
             logger.error("Error setRemoteDescription", ex);
@@ -99,6 +129,12 @@ public class IceConnection extends Connection implements SignalingListener {
     }
 
 
+    @Override
+    public void close() {
+        super.close();
+        this.signaling.close();
+    }
+
     @Override
     public void onRtcConfig(JSONObject configuration) {
         try {
@@ -123,6 +159,11 @@ public class IceConnection extends Connection implements SignalingListener {
         this.addIceCandidate(candidate);
     }
 
+    @Override
+    public void onSignalingPhase(SetupPhase phase) {
+        this.markSetupPhase(phase);
+    }
+
     @Override
     public void onSignalingTrickleReady(String code) {
         this.peerTrickleReady = true;
@@ -0,0 +1,114 @@
+/**
+ * Open addressing hash map with primitive int keys, so lookups do not box the key.  Not thread-safe.
+ */
+package com.openfin.webrtc;
+
+import java.util.Arrays;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+class IntObjectMap<V> {
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    IntObjectMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2 - 1, 1)) << 1;
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private IntObjectMap(IntObjectMap<V> other) {
+        this.keys = Arrays.copyOf(other.keys, other.keys.length);
+        this.values = Arrays.copyOf(other.values, other.values.length);
+        this.mask = other.mask;
+        this.size = other.size;
+    }
+
+    int slotOf(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        for (int slot = slotOf(key); nonNull(this.values[slot]); slot = (slot + 1) & this.mask) {
+            if (this.keys[slot] == key) {
+                return (V) this.values[slot];
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        if ((this.size + 1) * 2 > this.values.length) {
+            this.resize(this.values.length * 2);
+        }
+        int slot = slotOf(key);
+        for (; nonNull(this.values[slot]); slot = (slot + 1) & this.mask) {
+            if (this.keys[slot] == key) {
+                V previous = (V) this.values[slot];
+                this.values[slot] = value;
+                return previous;
+            }
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int slot = slotOf(key);
+        for (; nonNull(this.values[slot]); slot = (slot + 1) & this.mask) {
+            if (this.keys[slot] == key) {
+                break;
+            }
+        }
+        V previous = (V) this.values[slot];
+        if (isNull(previous)) {
+            return null;
+        }
+        // shift back following entries of the same probe sequence
+        int gap = slot;
+        for (int next = (gap + 1) & this.mask; nonNull(this.values[next]); next = (next + 1) & this.mask) {
+            int home = slotOf(this.keys[next]);
+            if (((next - home) & this.mask) >= ((next - gap) & this.mask)) {
+                this.keys[gap] = this.keys[next];
+                this.values[gap] = this.values[next];
+                gap = next;
+            }
+        }
+        this.values[gap] = null;
+        this.size--;
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (nonNull(oldValues[i])) {
+                this.put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    IntObjectMap<V> copy() {
+        return new IntObjectMap<>(this);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Options for journaling messages sent on a Channel, so they can be replayed to the peer after a reconnect.  A journal
+ * is bounded by size, and optionally by age of its messages.
+ */
+package com.openfin.webrtc;
+
+public class JournalOptions {
+
+    private String directory = System.getProperty("java.io.tmpdir");
+    private int maxBytes = 64 * 1024 * 1024;    // size of the journal file, oldest messages are overwritten
+    private long retentionMillis;               // messages older than this are not replayed, 0 to keep until overwritten
+    private long resumeTimeoutMillis = 5000;    // wait for the peer to announce its last received sequence number
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param directory directory of journal files, named by channel.  Each side of a channel needs its own directory
+     */
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getRetentionMillis() {
+        return retentionMillis;
+    }
+
+    public void setRetentionMillis(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+    }
+
+    public long getResumeTimeoutMillis() {
+        return resumeTimeoutMillis;
+    }
+
+    /**
+     * @param resumeTimeoutMillis time to wait for the peer to announce its last received sequence number, after which
+     *                            messages not sent yet are sent, for peers without a journal
+     */
+    public void setResumeTimeoutMillis(long resumeTimeoutMillis) {
+        this.resumeTimeoutMillis = resumeTimeoutMillis;
+    }
+}
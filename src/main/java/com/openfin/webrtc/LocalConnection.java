@@ -1,26 +1,53 @@
 /**
  * WebRTC Connection that uses OpenFin channel API, instead of ICE Servers, to initiate connectivity.
+ *
+ * By default the offer is dispatched once ICE gathering completes, with all candidates.  With trickle ICE enabled in
+ * Configuration, the offer is dispatched right away and candidates follow with the ice-candidate action, in both
+ * directions.  A candidate of null marks the end of candidates.
+ *
+ * The OpenFin channel is connected in initialize(), while the peer connection is created and candidates are gathered,
+ * and it stays connected for renegotiation.
+ *
+ * With SharedMemoryOptions in Configuration, the offer carries an offer of shared memory for channel messages.  A peer
+ * on the same host that supports it returns its acceptance with the answer, otherwise data channels are used.
  */
 package com.openfin.webrtc;
 
+import com.openfin.desktop.Ack;
+import com.openfin.desktop.AckListener;
 import com.openfin.desktop.AsyncCallback;
 import com.openfin.desktop.DesktopConnection;
 import com.openfin.desktop.channel.ChannelAction;
 import com.openfin.desktop.channel.ChannelClient;
+import dev.onvoid.webrtc.RTCIceCandidate;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import static java.util.Objects.nonNull;
+
 public class LocalConnection extends Connection {
     private final static Logger logger = LoggerFactory.getLogger(LocalConnection.class);
 
     private final DesktopConnection desktopConnection;
     private final String ofChannelName;
-    private ChannelClient ofChannelClient;
+    private volatile ChannelClient ofChannelClient;
+    private final CompletableFuture<ChannelClient> ofChannelConnected;
     private static final String OFFER_ACTION  = "offer-description";
     private static final String ANSWER_ACTION = "answer-description";
+    private static final String CANDIDATE_ACTION = "ice-candidate";
+    private final boolean trickle;
+    private boolean firstOfferSent;     // guarded by this
+    // trickle ICE state, guarded by this
+    private boolean offerSent;
+    private boolean answerReceived;
+    private final List<JSONObject> localCandidates = new ArrayList<>();    // gathered before the offer is sent
+    private final List<JSONObject> remoteCandidates = new ArrayList<>();   // received before the answer
     private CopyOnWriteArrayList<ConnectionListener> connectionListeners;
 
     public LocalConnection(Configuration configuration) {
@@ -28,43 +55,202 @@ public class LocalConnection extends Connection {
 
         this.desktopConnection = configuration.getDesktopConnection();
         this.ofChannelName = String.format("webrtc:%s:offer:answer", this.configuration.getPairingCode());
+        this.trickle = configuration.isTrickleIce();
+        this.ofChannelConnected = new CompletableFuture<>();
 
         logger.debug("Created Connection with OF channel {}", this.ofChannelName);
     }
 
     @Override
     public void initialize() throws Exception {
+        // connecting to the OpenFin channel overlaps creating the peer connection and gathering candidates
+        this.connectChannel();
         this.createPeerConnection(null);
     }
 
+    @Override
+    protected boolean isOfferer() {
+        return true;
+    }
+
+    @Override
+    public void initializeOffer() throws Exception {
+        super.initializeOffer();
+        if (this.trickle || this.isGatheringComplete()) {
+            // with trickle ICE, candidates are queued until the offer is sent
+            this.sendFirstOffer();
+        }
+    }
+
+    /**
+     * Create a new offer and dispatch it on the connected OpenFin channel, for changes that need renegotiation
+     *
+     * @throws Exception
+     */
+    public void renegotiate() throws Exception {
+        this.createOffer();
+        this.sendOffer();
+    }
+
     @Override
     protected void makeOffer() throws Exception {
         var offer = this.createOfferPayload();
+        offer.put("trickle", this.trickle);
+        var sharedMemory = this.createSharedMemoryOffer();
+        if (nonNull(sharedMemory)) {
+            offer.put("sharedMemory", sharedMemory);
+        }
         this.ofChannelClient.dispatch(OFFER_ACTION, offer, null);
+        this.markSetupPhase(SetupPhase.DESCRIPTION_SENT);
+        if (this.trickle) {
+            synchronized (this) {
+                this.offerSent = true;
+                for (JSONObject candidate : this.localCandidates) {
+                    this.dispatchCandidate(candidate);
+                }
+                this.localCandidates.clear();
+            }
+        }
+    }
+
+    @Override
+    protected void onNewIceCandidate(RTCIceCandidate candidate) {
+        if (this.trickle) {
+            this.sendCandidate(this.createCandidatePayload(candidate));
+        }
     }
 
     @Override
     protected void onLastIceCandidate() {
         super.onLastIceCandidate();
+        if (this.trickle) {
+            this.sendCandidate(null);
+        } else if (this.isOfferInitialized()) {
+            this.sendFirstOffer();
+        }
+    }
+
+    /**
+     * Send the offer of initializeOffer once, when gathering can complete before or after it
+     */
+    private synchronized void sendFirstOffer() {
+        if (!this.firstOfferSent) {
+            this.firstOfferSent = true;
+            this.sendOffer();
+        }
+    }
+
+    /**
+     * Dispatch a local candidate, or queue it until the offer is sent
+     *
+     * @param candidate candidate, null for end of candidates
+     */
+    private synchronized void sendCandidate(JSONObject candidate) {
+        if (this.offerSent) {
+            this.dispatchCandidate(candidate);
+        } else {
+            this.localCandidates.add(candidate);
+        }
+    }
+
+    private void dispatchCandidate(JSONObject candidate) {
+        JSONObject payload = new JSONObject();
+        payload.put("candidate", nonNull(candidate) ? candidate : JSONObject.NULL);
+        this.ofChannelClient.dispatch(CANDIDATE_ACTION, payload, null);
+    }
+
+    private void onRemoteCandidate(JSONObject payload) {
+        JSONObject candidate = payload.optJSONObject("candidate");
+        if (candidate == null || candidate.optString(Connection.SDPCandidate).isEmpty()) {
+            logger.debug("End of remote candidates {}", this.ofChannelName);
+            return;
+        }
+        synchronized (this) {
+            if (!this.answerReceived) {
+                this.remoteCandidates.add(candidate);
+                return;
+            }
+        }
+        this.addIceCandidate(candidate);
+    }
+
+    @Override
+    protected JSONObject onAnswer(JSONObject payload) {
+        JSONObject ret = super.onAnswer(payload);
+        List<JSONObject> candidates;
+        synchronized (this) {
+            this.answerReceived = true;
+            candidates = new ArrayList<>(this.remoteCandidates);
+            this.remoteCandidates.clear();
+        }
+        for (JSONObject candidate : candidates) {
+            this.addIceCandidate(candidate);
+        }
+        return ret;
+    }
+
+    /**
+     * Dispatch the offer once the OpenFin channel is connected
+     */
+    private void sendOffer() {
+        this.ofChannelConnected.thenRun(() -> {
+            try {
+                this.makeOffer();
+            } catch (Exception ex) {
+                logger.error("Error creating offer", ex);
+            }
+        });
+    }
+
+    /**
+     * Connect to the OpenFin channel of the pairing code and register actions of the peer
+     */
+    private void connectChannel() {
         logger.debug("Connecting to OpenFin Channel {}", this.ofChannelName);
         this.desktopConnection.getChannel(this.ofChannelName).connect(new AsyncCallback<ChannelClient>() {
             @Override
             public void onSuccess(ChannelClient client) {
                 logger.debug("Connected to OpenFin Channel {}", client.getName());
                 LocalConnection.this.ofChannelClient = client;
+                LocalConnection.this.markSetupPhase(SetupPhase.SIGNALING_CONNECTED);
                 client.register(ANSWER_ACTION, new ChannelAction() {
                     @Override
                     public JSONObject invoke(String s, JSONObject payload, JSONObject senderIdentity) {
+                        LocalConnection.this.onSharedMemoryAnswer(payload.optJSONObject("sharedMemory"));
                         return LocalConnection.this.onAnswer(payload.getJSONObject("description"));
                     }
                 });
-                try {
-                    LocalConnection.this.makeOffer();
-                } catch (Exception ex) {
-                    logger.error("Error creating offer", ex);
+                if (LocalConnection.this.trickle) {
+                    client.register(CANDIDATE_ACTION, new ChannelAction() {
+                        @Override
+                        public JSONObject invoke(String s, JSONObject payload, JSONObject senderIdentity) {
+                            LocalConnection.this.onRemoteCandidate(payload);
+                            return null;
+                        }
+                    });
                 }
+                LocalConnection.this.ofChannelConnected.complete(client);
             }
         });
     }
 
+    @Override
+    public void close() {
+        super.close();
+        this.ofChannelConnected.cancel(false);
+        var client = this.ofChannelClient;
+        if (nonNull(client)) {
+            this.ofChannelClient = null;
+            client.disconnect(new AckListener() {
+                @Override
+                public void onSuccess(Ack ack) {
+                    logger.debug("Disconnected from OpenFin Channel {}", LocalConnection.this.ofChannelName);
+                }
+                @Override
+                public void onError(Ack ack) {
+                    logger.error("Error disconnecting from OpenFin Channel {} {}", LocalConnection.this.ofChannelName, ack.getReason());
+                }
+            });
+        }
+    }
 }
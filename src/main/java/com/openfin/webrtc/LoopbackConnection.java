@@ -0,0 +1,135 @@
+/**
+ * WebRTC Connection paired with another LoopbackConnection in the same process.  Offer and answer are handed
+ * over directly, without ICE servers or OpenFin channel, which makes it useful for tests and benchmarks.
+ */
+package com.openfin.webrtc;
+
+import dev.onvoid.webrtc.RTCSdpType;
+import dev.onvoid.webrtc.RTCSessionDescription;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LoopbackConnection extends Connection {
+    private final static Logger logger = LoggerFactory.getLogger(LoopbackConnection.class);
+
+    // offer and answer can not be processed on WebRTC callback threads, which would block on themselves
+    private static final ExecutorService signalingExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "LoopbackSignaling");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final boolean offerer;
+    private LoopbackConnection peer;
+    private boolean descriptionSent;
+
+    private LoopbackConnection(Configuration configuration, boolean offerer) {
+        super(configuration);
+        this.offerer = offerer;
+    }
+
+    /**
+     * Create a pair of connected LoopbackConnections.  Call initializeOffer on the returned connection to connect them.
+     *
+     * @param configuration connection Configuration
+     * @return the offering side.  The answering side is available from getPeer()
+     * @throws Exception
+     */
+    public static LoopbackConnection createPair(Configuration configuration) throws Exception {
+        LoopbackConnection offerer = new LoopbackConnection(configuration, true);
+        LoopbackConnection answerer = new LoopbackConnection(configuration, false);
+        offerer.peer = answerer;
+        answerer.peer = offerer;
+        offerer.initialize();
+        answerer.initialize();
+        return offerer;
+    }
+
+    public LoopbackConnection getPeer() {
+        return this.peer;
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        this.createPeerConnection(null);
+    }
+
+    @Override
+    protected boolean isOfferer() {
+        return this.offerer;
+    }
+
+    @Override
+    public void initializeOffer() throws Exception {
+        super.initializeOffer();
+        if (this.isGatheringComplete()) {
+            // candidates were pre-gathered
+            this.sendDescription();
+        }
+    }
+
+    @Override
+    protected void makeOffer() throws Exception {
+        var offer = this.createOfferPayload();
+        signalingExecutor.execute(() -> this.peer.onOffer(offer.getJSONObject("description")));
+        this.markSetupPhase(SetupPhase.DESCRIPTION_SENT);
+    }
+
+    @Override
+    protected JSONObject onOffer(JSONObject payload) {
+        logger.debug("Got offer {}", payload.toString());
+        JSONObject ret = new JSONObject();
+        try {
+            this.setRemoteDescription(new RTCSessionDescription(RTCSdpType.OFFER, payload.getString("sdp")));
+            this.createAnswer();
+            ret.put("status", 200);
+        } catch (Exception ex) {
+            logger.error("Error setRemoteDescription", ex);
+            ret.put("status", 500);
+            ret.put("message", ex.getMessage());
+        }
+        return ret;
+    }
+
+    private void makeAnswer() {
+        JSONObject answer = new JSONObject();
+        answer.put("type", Connection.SDPAnswer);
+        answer.put("sdp", this.getLocalSdp());
+        signalingExecutor.execute(() -> this.peer.onAnswer(answer));
+        this.markSetupPhase(SetupPhase.DESCRIPTION_SENT);
+    }
+
+    @Override
+    protected void onLastIceCandidate() {
+        super.onLastIceCandidate();
+        this.sendDescription();
+    }
+
+    private synchronized void sendDescription() {
+        if (this.descriptionSent || (this.offerer && !this.isOfferInitialized())) {
+            return;
+        }
+        this.descriptionSent = true;
+        if (this.offerer) {
+            try {
+                this.makeOffer();
+            } catch (Exception ex) {
+                logger.error("Error creating offer", ex);
+            }
+        } else {
+            this.makeAnswer();
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (this.offerer) {
+            this.peer.close();
+        }
+    }
+}
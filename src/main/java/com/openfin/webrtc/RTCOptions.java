@@ -0,0 +1,235 @@
+/**
+ * Typed options of the peer connection and the ICE candidates a Connection uses, set in Configuration.  Built with
+ * RTCOptions.builder(), or taken from a profile like sameHost().
+ *
+ * Candidate filters apply to candidates a Connection signals to its peer, trickled or in the SDP of its description,
+ * and candidate types and protocols also to candidates it gets from the peer.  Gathering itself is done by WebRTC and
+ * is not limited by the filters, except that no STUN or TURN servers are used when only host candidates are allowed.
+ */
+package com.openfin.webrtc;
+
+import dev.onvoid.webrtc.RTCBundlePolicy;
+import dev.onvoid.webrtc.RTCConfiguration;
+import dev.onvoid.webrtc.RTCIceTransportPolicy;
+import dev.onvoid.webrtc.RTCRtcpMuxPolicy;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static java.util.Objects.nonNull;
+
+public class RTCOptions {
+
+    public enum CandidateType {
+        HOST, SRFLX, PRFLX, RELAY;
+
+        static CandidateType parse(String type) {
+            try {
+                return valueOf(type.toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                return null;
+            }
+        }
+    }
+
+    public enum Protocol {
+        UDP, TCP
+    }
+
+    private final RTCIceTransportPolicy iceTransportPolicy;
+    private final RTCBundlePolicy bundlePolicy;
+    private final RTCRtcpMuxPolicy rtcpMuxPolicy;
+    private final Set<CandidateType> candidateTypes;    // empty for all
+    private final Set<Protocol> protocols;              // empty for all
+    private final Set<String> networkInterfaces;        // names of interfaces of local candidates, empty for all
+    private final boolean ipv6;
+    private final boolean singleAddress;
+    private final int iceCandidatePoolSize;
+
+    private RTCOptions(Builder builder) {
+        this.iceTransportPolicy = builder.iceTransportPolicy;
+        this.bundlePolicy = builder.bundlePolicy;
+        this.rtcpMuxPolicy = builder.rtcpMuxPolicy;
+        this.candidateTypes = Collections.unmodifiableSet(EnumSet.copyOf(builder.candidateTypes));
+        this.protocols = Collections.unmodifiableSet(EnumSet.copyOf(builder.protocols));
+        this.networkInterfaces = Collections.unmodifiableSet(new LinkedHashSet<>(builder.networkInterfaces));
+        this.ipv6 = builder.ipv6;
+        this.singleAddress = builder.singleAddress;
+        this.iceCandidatePoolSize = builder.iceCandidatePoolSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Profile for peers on the same machine, like LocalConnection and its JavaScript peer.  Only UDP host candidates
+     * of loopback and one other IPv4 address are signaled, so connectivity checks run on few pairs and no STUN or TURN
+     * servers are contacted.  WebRTC skips loopback interfaces by default, which leaves a single address.  Media is
+     * bundled on one transport with RTCP muxed.
+     */
+    public static RTCOptions sameHost() {
+        return builder()
+                .bundlePolicy(RTCBundlePolicy.MAX_BUNDLE)
+                .rtcpMuxPolicy(RTCRtcpMuxPolicy.REQUIRE)
+                .candidateTypes(CandidateType.HOST)
+                .protocols(Protocol.UDP)
+                .ipv6(false)
+                .singleAddress(true)
+                .build();
+    }
+
+    public RTCIceTransportPolicy getIceTransportPolicy() {
+        return iceTransportPolicy;
+    }
+
+    public RTCBundlePolicy getBundlePolicy() {
+        return bundlePolicy;
+    }
+
+    public RTCRtcpMuxPolicy getRtcpMuxPolicy() {
+        return rtcpMuxPolicy;
+    }
+
+    public Set<CandidateType> getCandidateTypes() {
+        return candidateTypes;
+    }
+
+    public Set<Protocol> getProtocols() {
+        return protocols;
+    }
+
+    public Set<String> getNetworkInterfaces() {
+        return networkInterfaces;
+    }
+
+    public boolean isIpv6() {
+        return ipv6;
+    }
+
+    public boolean isSingleAddress() {
+        return singleAddress;
+    }
+
+    public int getIceCandidatePoolSize() {
+        return iceCandidatePoolSize;
+    }
+
+    /**
+     * @return true if STUN and TURN servers can not produce any allowed candidate
+     */
+    public boolean isHostOnly() {
+        return this.candidateTypes.equals(EnumSet.of(CandidateType.HOST));
+    }
+
+    void apply(RTCConfiguration config) {
+        if (nonNull(this.iceTransportPolicy)) {
+            config.iceTransportPolicy = this.iceTransportPolicy;
+        }
+        if (nonNull(this.bundlePolicy)) {
+            config.bundlePolicy = this.bundlePolicy;
+        }
+        if (nonNull(this.rtcpMuxPolicy)) {
+            config.rtcpMuxPolicy = this.rtcpMuxPolicy;
+        }
+        if (this.isHostOnly()) {
+            config.iceServers.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RTCOptions{iceTransportPolicy=%s, bundlePolicy=%s, rtcpMuxPolicy=%s, candidateTypes=%s, protocols=%s, networkInterfaces=%s, ipv6=%s, singleAddress=%s, iceCandidatePoolSize=%d}",
+                this.iceTransportPolicy, this.bundlePolicy, this.rtcpMuxPolicy, this.candidateTypes, this.protocols,
+                this.networkInterfaces, this.ipv6, this.singleAddress, this.iceCandidatePoolSize);
+    }
+
+    public static class Builder {
+        private RTCIceTransportPolicy iceTransportPolicy;   // null for WebRTC default
+        private RTCBundlePolicy bundlePolicy;
+        private RTCRtcpMuxPolicy rtcpMuxPolicy;
+        private final Set<CandidateType> candidateTypes = EnumSet.noneOf(CandidateType.class);
+        private final Set<Protocol> protocols = EnumSet.noneOf(Protocol.class);
+        private final Set<String> networkInterfaces = new LinkedHashSet<>();
+        private boolean ipv6 = true;
+        private boolean singleAddress;
+        private int iceCandidatePoolSize;
+
+        private Builder() {
+        }
+
+        public Builder iceTransportPolicy(RTCIceTransportPolicy iceTransportPolicy) {
+            this.iceTransportPolicy = iceTransportPolicy;
+            return this;
+        }
+
+        public Builder bundlePolicy(RTCBundlePolicy bundlePolicy) {
+            this.bundlePolicy = bundlePolicy;
+            return this;
+        }
+
+        public Builder rtcpMuxPolicy(RTCRtcpMuxPolicy rtcpMuxPolicy) {
+            this.rtcpMuxPolicy = rtcpMuxPolicy;
+            return this;
+        }
+
+        /**
+         * @param types candidate types to signal and accept, none for all
+         */
+        public Builder candidateTypes(CandidateType... types) {
+            this.candidateTypes.clear();
+            Collections.addAll(this.candidateTypes, types);
+            return this;
+        }
+
+        /**
+         * @param protocols transport protocols of candidates to signal and accept, none for all
+         */
+        public Builder protocols(Protocol... protocols) {
+            this.protocols.clear();
+            Collections.addAll(this.protocols, protocols);
+            return this;
+        }
+
+        /**
+         * @param names names of network interfaces, as in java.net.NetworkInterface, local candidates are signaled
+         *              from.  None for all
+         */
+        public Builder networkInterfaces(String... names) {
+            this.networkInterfaces.clear();
+            Collections.addAll(this.networkInterfaces, names);
+            return this;
+        }
+
+        /**
+         * @param ipv6 false to signal IPv4 candidates only
+         */
+        public Builder ipv6(boolean ipv6) {
+            this.ipv6 = ipv6;
+            return this;
+        }
+
+        /**
+         * @param singleAddress true to signal candidates of loopback and the first other allowed local address only
+         */
+        public Builder singleAddress(boolean singleAddress) {
+            this.singleAddress = singleAddress;
+            return this;
+        }
+
+        /**
+         * @param iceCandidatePoolSize above 0 for the offering side to start gathering candidates when its peer
+         *                             connection is created, instead of in initializeOffer
+         */
+        public Builder iceCandidatePoolSize(int iceCandidatePoolSize) {
+            this.iceCandidatePoolSize = iceCandidatePoolSize;
+            return this;
+        }
+
+        public RTCOptions build() {
+            return new RTCOptions(this);
+        }
+    }
+}
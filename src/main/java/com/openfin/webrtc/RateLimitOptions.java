@@ -0,0 +1,66 @@
+/**
+ * Options for limiting the rate of messages sent on a Channel with token buckets
+ */
+package com.openfin.webrtc;
+
+public class RateLimitOptions {
+    public enum Mode {
+        BLOCK,      // send blocks the caller until tokens are available
+        PACE;       // send queues the message, and queued messages are released as tokens become available
+    }
+
+    private double messagesPerSecond;   // 0 for no limit
+    private double bytesPerSecond;      // 0 for no limit
+    private int messageBurst = 1;
+    private int byteBurst = 64 * 1024;
+    private Mode mode = Mode.PACE;
+    private int maxQueuedMessages = 100000;
+
+    public double getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    public void setMessagesPerSecond(double messagesPerSecond) {
+        this.messagesPerSecond = messagesPerSecond;
+    }
+
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public void setBytesPerSecond(double bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public int getMessageBurst() {
+        return messageBurst;
+    }
+
+    public void setMessageBurst(int messageBurst) {
+        this.messageBurst = messageBurst;
+    }
+
+    public int getByteBurst() {
+        return byteBurst;
+    }
+
+    public void setByteBurst(int byteBurst) {
+        this.byteBurst = byteBurst;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public int getMaxQueuedMessages() {
+        return maxQueuedMessages;
+    }
+
+    public void setMaxQueuedMessages(int maxQueuedMessages) {
+        this.maxQueuedMessages = maxQueuedMessages;
+    }
+}
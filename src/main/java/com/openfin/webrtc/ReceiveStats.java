@@ -0,0 +1,271 @@
+/**
+ * Statistics of messages received on a Channel: message and byte counts, ids missing from a numbered stream, and
+ * inter-arrival times with their jitter.  Recording does not allocate, so it can run on the WebRTC callback thread,
+ * and sample() reports the counts of each interval to a reader on another thread, like a UI timer.
+ *
+ * Numbered messages carry their id, starting at 1, as a number field of a JSON text, which is found by scanning the
+ * bytes of the message instead of parsing it.  Ids are tracked by a SequenceTracker, so an id arriving late fills its
+ * gap and a duplicate does not.  An id 1 that was already received starts the stream over.  Jitter is the smoothed
+ * variation of inter-arrival times, like the interarrival jitter of RFC 3550 with arrival spacing in place of transit
+ * time.
+ *
+ * record() is called by one thread at a time, the thread delivering messages of the channel.
+ */
+package com.openfin.webrtc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ReceiveStats {
+    public static final String DEFAULT_ID_KEY = "id";
+    public static final long NO_ID = -1;
+
+    private final byte[] idKey;
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile SequenceTracker ids = new SequenceTracker();
+    // counts of streams before the last start over, written by the recording thread
+    private volatile long previousMissing;
+    private volatile long previousReordered;
+    private volatile long previousDuplicates;
+    private final AtomicLong jitter = new AtomicLong();     // nanoseconds scaled by 16
+    private final LatencyHistogram interArrival = new LatencyHistogram();
+
+    // recording thread only
+    private long lastArrival;
+    private long lastInterArrival = -1;
+
+    // sampling thread only
+    private long sampleTime = System.nanoTime();
+    private long sampleMessages;
+    private long sampleBytes;
+    private long sampleMissing;
+
+    public ReceiveStats() {
+        this(DEFAULT_ID_KEY);
+    }
+
+    /**
+     * @param idKey name of the JSON field with the id of numbered messages, null if messages are not numbered
+     */
+    public ReceiveStats(String idKey) {
+        this.idKey = idKey != null ? ('"' + idKey + '"').getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Record a received message, with its id if it is numbered text
+     */
+    public void onMessage(ChannelMessage message) {
+        ByteBuffer data = message.getData();
+        long id = !message.isBinary() && this.idKey != null ? findId(data, this.idKey) : NO_ID;
+        this.record(System.nanoTime(), data.remaining(), id);
+    }
+
+    /**
+     * @param arrivalNanos System.nanoTime() when the message arrived
+     * @param id id of the message, NO_ID if it is not numbered
+     */
+    public void record(long arrivalNanos, int size, long id) {
+        if (this.messages.get() > 0) {
+            long interArrival = Math.max(arrivalNanos - this.lastArrival, 0);
+            this.interArrival.record(interArrival);
+            if (this.lastInterArrival >= 0) {
+                long variation = Math.abs(interArrival - this.lastInterArrival);
+                long scaled = this.jitter.get();
+                this.jitter.lazySet(scaled + variation - ((scaled + 8) >> 4));
+            }
+            this.lastInterArrival = interArrival;
+        }
+        this.lastArrival = arrivalNanos;
+        if (id > 0) {
+            var ids = this.ids;
+            if (id == 1 && ids.isReceived(1)) {
+                // the stream started over
+                this.previousMissing = this.getMissing();
+                this.previousReordered += ids.getReordered();
+                this.previousDuplicates += ids.getDuplicates();
+                ids = new SequenceTracker();
+                this.ids = ids;
+            }
+            ids.onSequence(id);
+        }
+        this.bytes.addAndGet(size);
+        this.messages.incrementAndGet();
+    }
+
+    /**
+     * Find the number value of a field in JSON text without decoding it
+     *
+     * @param data UTF-8 text from position to limit, which is not changed
+     * @param key field name in quotes
+     * @return the value, NO_ID if the field is not found or is not a non-negative integer
+     */
+    static long findId(ByteBuffer data, byte[] key) {
+        int limit = data.limit();
+        for (int i = data.position(); i <= limit - key.length; i++) {
+            if (data.get(i) != key[0] || !matches(data, i, key)) {
+                continue;
+            }
+            int p = skipSpaces(data, i + key.length, limit);
+            if (p >= limit || data.get(p) != ':') {
+                continue;
+            }
+            p = skipSpaces(data, p + 1, limit);
+            long value = 0;
+            int digits = 0;
+            for (; p < limit && digits < 19; p++, digits++) {
+                int c = data.get(p) - '0';
+                if (c < 0 || c > 9) {
+                    break;
+                }
+                value = value * 10 + c;
+            }
+            return digits > 0 ? value : NO_ID;
+        }
+        return NO_ID;
+    }
+
+    private static boolean matches(ByteBuffer data, int index, byte[] key) {
+        for (int k = 1; k < key.length; k++) {
+            if (data.get(index + k) != key[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpaces(ByteBuffer data, int index, int limit) {
+        while (index < limit && Character.isWhitespace(data.get(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    public long getMessages() {
+        return this.messages.get();
+    }
+
+    public long getBytes() {
+        return this.bytes.get();
+    }
+
+    /**
+     * @return ids skipped by numbered messages, less the ones that arrived late to fill their gap.  Ids arriving after
+     * sliding out of the window of the tracker stay missing
+     */
+    public long getMissing() {
+        var ids = this.ids;
+        return this.previousMissing + ids.getGaps() - ids.getReordered();
+    }
+
+    /**
+     * @return ids that arrived after a later one and filled their gap
+     */
+    public long getReordered() {
+        return this.previousReordered + this.ids.getReordered();
+    }
+
+    public long getDuplicates() {
+        return this.previousDuplicates + this.ids.getDuplicates();
+    }
+
+    /**
+     * @return highest id of numbered messages since the stream started over, NO_ID if none was received
+     */
+    public long getLastId() {
+        var ids = this.ids;
+        return ids.getReceived() > 0 ? ids.getHighestSequence() : NO_ID;
+    }
+
+    public long getJitterNanos() {
+        return this.jitter.get() >> 4;
+    }
+
+    public LatencyHistogram getInterArrival() {
+        return this.interArrival;
+    }
+
+    /**
+     * Counts since the previous sample, called by one thread at a time
+     */
+    public Sample sample() {
+        long now = System.nanoTime();
+        long messages = this.messages.get();
+        long bytes = this.bytes.get();
+        long missing = this.getMissing();
+        Sample sample = new Sample(now - this.sampleTime, messages - this.sampleMessages, bytes - this.sampleBytes,
+                missing - this.sampleMissing, this.getJitterNanos(), this.getLastId());
+        this.sampleTime = now;
+        this.sampleMessages = messages;
+        this.sampleBytes = bytes;
+        this.sampleMissing = missing;
+        return sample;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("messages %d bytes %d last id %d missing %d reordered %d duplicates %d jitter %d us inter-arrival %s",
+                getMessages(), getBytes(), getLastId(), getMissing(), getReordered(), getDuplicates(), getJitterNanos() / 1000,
+                this.interArrival.toMicrosString());
+    }
+
+    /**
+     * Counts of an interval between samples
+     */
+    public static class Sample {
+        private final long durationNanos;
+        private final long messages;
+        private final long bytes;
+        private final long missing;
+        private final long jitterNanos;
+        private final long lastId;
+
+        Sample(long durationNanos, long messages, long bytes, long missing, long jitterNanos, long lastId) {
+            this.durationNanos = durationNanos;
+            this.messages = messages;
+            this.bytes = bytes;
+            this.missing = missing;
+            this.jitterNanos = jitterNanos;
+            this.lastId = lastId;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public long getMessages() {
+            return messages;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMissing() {
+            return missing;
+        }
+
+        public long getJitterNanos() {
+            return jitterNanos;
+        }
+
+        public long getLastId() {
+            return lastId;
+        }
+
+        public double getMessagesPerSecond() {
+            return this.durationNanos > 0 ? this.messages * 1e9 / this.durationNanos : 0;
+        }
+
+        public double getBytesPerSecond() {
+            return this.durationNanos > 0 ? this.bytes * 1e9 / this.durationNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f messages/s %.2f MB/s missing %d jitter %d us last id %d",
+                    getMessagesPerSecond(), getBytesPerSecond() / 1e6, missing, jitterNanos / 1000, lastId);
+        }
+    }
+}
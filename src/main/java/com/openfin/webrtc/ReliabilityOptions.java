@@ -0,0 +1,60 @@
+/**
+ * Options for delivery of a Channel's messages.  By default, messages are delivered reliably and in order.  Limiting
+ * retransmissions or packet lifetime makes delivery partially reliable, so messages can be lost instead of delaying
+ * the ones after them.  Only one of maxRetransmits and maxPacketLifeTime can be set.
+ */
+package com.openfin.webrtc;
+
+import dev.onvoid.webrtc.RTCDataChannelInit;
+
+public class ReliabilityOptions {
+
+    private boolean ordered = true;
+    private int maxRetransmits = -1;        // -1 for no limit
+    private int maxPacketLifeTime = -1;     // milliseconds, -1 for no limit
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    public int getMaxRetransmits() {
+        return maxRetransmits;
+    }
+
+    public void setMaxRetransmits(int maxRetransmits) {
+        this.maxRetransmits = maxRetransmits;
+    }
+
+    public int getMaxPacketLifeTime() {
+        return maxPacketLifeTime;
+    }
+
+    public void setMaxPacketLifeTime(int maxPacketLifeTime) {
+        this.maxPacketLifeTime = maxPacketLifeTime;
+    }
+
+    /**
+     * @throws IllegalArgumentException if both maxRetransmits and maxPacketLifeTime are set
+     */
+    void validate() {
+        if (this.maxRetransmits >= 0 && this.maxPacketLifeTime >= 0) {
+            throw new IllegalArgumentException("Only one of maxRetransmits and maxPacketLifeTime can be set");
+        }
+    }
+
+    void apply(RTCDataChannelInit init) {
+        this.validate();
+        init.ordered = this.ordered;
+        init.maxRetransmits = this.maxRetransmits;
+        init.maxPacketLifeTime = this.maxPacketLifeTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ordered %b maxRetransmits %d maxPacketLifeTime %d", ordered, maxRetransmits, maxPacketLifeTime);
+    }
+}
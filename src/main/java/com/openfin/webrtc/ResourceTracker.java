@@ -0,0 +1,126 @@
+/**
+ * Counts open Connections and Channels, and keeps their handles until they are closed, so the ones left open can be
+ * reported.  Unclosed objects can not be found by garbage collection: native code holds each data channel observer and
+ * peer connection observer, so they stay reachable until closed.  Open objects are logged when the JVM shuts down, or
+ * by reportOpen.  Set system property com.openfin.webrtc.trackAllocations=true to log where they were created.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.nonNull;
+
+public final class ResourceTracker {
+    private final static Logger logger = LoggerFactory.getLogger(ResourceTracker.class);
+
+    private static final boolean trackAllocations = Boolean.getBoolean("com.openfin.webrtc.trackAllocations");
+    private static final Set<Handle> openHandles = ConcurrentHashMap.newKeySet();
+    private static final LongAdder openConnections = new LongAdder();
+    private static final LongAdder openChannels = new LongAdder();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ResourceTracker::reportOpen, "ResourceTrackerReport"));
+    }
+
+    private ResourceTracker() {
+    }
+
+    /**
+     * Handle of a tracked object.  Does not reference the object, so a report does not keep it alive.
+     */
+    static class Handle {
+        private final String description;
+        private final LongAdder openCount;
+        private final Throwable allocation;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Handle(String description, LongAdder openCount) {
+            this.description = description;
+            this.openCount = openCount;
+            this.allocation = trackAllocations ? new Throwable("Created here") : null;
+        }
+
+        /**
+         * @return true on the first call, false if already closed
+         */
+        boolean close() {
+            if (this.closed.compareAndSet(false, true)) {
+                openHandles.remove(this);
+                this.openCount.decrement();
+                return true;
+            }
+            return false;
+        }
+
+        boolean isClosed() {
+            return this.closed.get();
+        }
+
+        @Override
+        public String toString() {
+            return this.description;
+        }
+    }
+
+    static Handle trackConnection(String name) {
+        return track("Connection " + name, openConnections);
+    }
+
+    static Handle trackChannel(String name) {
+        return track("Channel " + name, openChannels);
+    }
+
+    private static Handle track(String description, LongAdder openCount) {
+        var handle = new Handle(description, openCount);
+        openCount.increment();
+        openHandles.add(handle);
+        return handle;
+    }
+
+    /**
+     * @return number of Connections created and not closed
+     */
+    public static long getOpenConnections() {
+        return openConnections.sum();
+    }
+
+    /**
+     * @return number of Channels created and not closed
+     */
+    public static long getOpenChannels() {
+        return openChannels.sum();
+    }
+
+    /**
+     * @return descriptions of the Connections and Channels created and not closed
+     */
+    public static List<String> getOpenResources() {
+        return openHandles.stream().map(Handle::toString).sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Log the Connections and Channels created and not closed, with where they were created if allocations are tracked
+     *
+     * @return number of them
+     */
+    public static int reportOpen() {
+        int count = 0;
+        for (Handle handle : openHandles) {
+            if (nonNull(handle.allocation)) {
+                logger.warn("{} was not closed", handle.description, handle.allocation);
+            } else {
+                logger.warn("{} was not closed", handle.description);
+            }
+            count++;
+        }
+        return count;
+    }
+}
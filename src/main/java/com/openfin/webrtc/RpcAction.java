@@ -0,0 +1,10 @@
+/**
+ * Handler of an RPC action registered with ChannelRpc
+ */
+package com.openfin.webrtc;
+
+import org.json.JSONObject;
+
+public interface RpcAction {
+    public JSONObject invoke(String action, JSONObject payload) throws Exception;
+}
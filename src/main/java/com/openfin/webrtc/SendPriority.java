@@ -0,0 +1,11 @@
+/**
+ * Priority class of a Channel in SendScheduler.  Classes are served in strict priority order, CONTROL first.
+ */
+package com.openfin.webrtc;
+
+public enum SendPriority {
+    CONTROL,
+    HIGH,
+    NORMAL,
+    BULK;
+}
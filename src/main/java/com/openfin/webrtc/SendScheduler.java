@@ -0,0 +1,292 @@
+/**
+ * Schedules sends across the Channels of a Connection, which share one SCTP association.  Messages of registered
+ * Channels are queued, and released while the total bufferedAmount of the Channels is below a limit, so a large
+ * bulk send can not hold up control messages for long.
+ *
+ * Priority classes are served in strict order.  Channels in the same class share it by weight, with deficit round robin.
+ *
+ * A message that can not be sent, because its Channel is not open yet or its buffer is full, stays at the head of its
+ * queue, and the Channel is skipped until it opens or its bufferedAmount changes.  Messages queued for a Channel that
+ * closes are discarded with an error.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+public class SendScheduler {
+    private final static Logger logger = LoggerFactory.getLogger(SendScheduler.class);
+
+    public static final long DEFAULT_BUFFERED_AMOUNT_LIMIT = 256 * 1024;
+    public static final long DEFAULT_MAX_QUEUED_BYTES = 16 * 1024 * 1024;
+    private static final int QUANTUM = 4096;
+
+    private final long bufferedAmountLimit;
+    private final long maxQueuedBytes;
+    private final Map<Channel, ChannelQueue> queues;
+    private final List<List<ChannelQueue>> classes;     // guarded by lock, indexed by SendPriority ordinal
+    private final int[] cursors;                        // guarded by lock, round robin position in each class
+    private final ReentrantLock lock;
+    private volatile boolean drainRequested;
+
+    private class ChannelQueue implements ChannelListener {
+        private final Channel channel;
+        private final SendPriority priority;
+        private final int weight;
+        private final ArrayDeque<QueuedMessage> messages = new ArrayDeque<>();
+        private long queuedBytes;
+        private long deficit;
+        // the queue is stalled while stalledAt equals wakeups, so a wakeup during a failed send is not missed
+        private volatile long wakeups;
+        private long stalledAt = -1;
+
+        private ChannelQueue(Channel channel, SendPriority priority, int weight) {
+            this.channel = channel;
+            this.priority = priority;
+            this.weight = weight;
+        }
+
+        private boolean isStalled() {
+            return this.stalledAt == this.wakeups;
+        }
+
+        private void wakeup() {
+            this.wakeups++;
+            drain();
+        }
+
+        @Override
+        public void onStateChange(State state) {
+            this.wakeup();
+        }
+
+        @Override
+        public void onMessage(String message) {
+        }
+
+        @Override
+        public void onMessage(ChannelMessage message) {
+        }
+
+        @Override
+        public void onBufferedAmountChange(long previousAmount) {
+            this.wakeup();
+        }
+    }
+
+    private static class QueuedMessage {
+        private final ByteBuffer data;
+        private final boolean text;
+
+        private QueuedMessage(ByteBuffer data, boolean text) {
+            this.data = data;
+            this.text = text;
+        }
+    }
+
+    public SendScheduler() {
+        this(DEFAULT_BUFFERED_AMOUNT_LIMIT, DEFAULT_MAX_QUEUED_BYTES);
+    }
+
+    /**
+     * @param bufferedAmountLimit messages are held while the total bufferedAmount of registered Channels is at or above this limit
+     * @param maxQueuedBytes maximum bytes queued for each Channel, sending more fails
+     */
+    public SendScheduler(long bufferedAmountLimit, long maxQueuedBytes) {
+        this.bufferedAmountLimit = bufferedAmountLimit;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.queues = new ConcurrentHashMap<>();
+        this.classes = new ArrayList<>();
+        for (int i = 0; i < SendPriority.values().length; i++) {
+            this.classes.add(new ArrayList<>());
+        }
+        this.cursors = new int[SendPriority.values().length];
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Schedule sends of a Channel.  Channel.send queues messages from now on
+     *
+     * @param channel Channel of the Connection
+     * @param priority priority class of the Channel
+     * @param weight share of the Channel in its priority class, relative to other Channels in the class
+     */
+    public void register(Channel channel, SendPriority priority, int weight) {
+        var queue = new ChannelQueue(channel, priority, Math.max(weight, 1));
+        this.lock.lock();
+        try {
+            if (nonNull(this.queues.putIfAbsent(channel, queue))) {
+                throw new IllegalStateException(String.format("Channel %s is already registered", channel.getName()));
+            }
+            this.classes.get(priority.ordinal()).add(queue);
+        } finally {
+            this.lock.unlock();
+        }
+        channel.addChannelListener(queue);
+        channel.setSendScheduler(this);
+    }
+
+    /**
+     * Stop scheduling sends of a Channel and discard its queued messages
+     */
+    public void unregister(Channel channel) {
+        channel.setSendScheduler(null);
+        this.lock.lock();
+        try {
+            var queue = this.queues.remove(channel);
+            if (nonNull(queue)) {
+                channel.removeChannelListener(queue);
+                var list = this.classes.get(queue.priority.ordinal());
+                list.remove(queue);
+                this.cursors[queue.priority.ordinal()] = 0;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        this.drain();
+    }
+
+    void enqueue(Channel channel, ByteBuffer data, boolean text) throws Exception {
+        var queue = this.queues.get(channel);
+        if (isNull(queue)) {
+            throw new IllegalStateException(String.format("Channel %s is not registered", channel.getName()));
+        }
+        if (channel.isClosed()) {
+            throw new IllegalStateException(String.format("Channel %s is closed", channel.getName()));
+        }
+        // the caller may reuse its buffer after send returns
+        ByteBuffer copy = ByteBuffer.allocate(data.remaining()).put(data.duplicate()).flip();
+        this.lock.lock();
+        try {
+            if (queue.queuedBytes + copy.remaining() > this.maxQueuedBytes) {
+                throw new Exception(String.format("Send queue of channel %s is full", channel.getName()));
+            }
+            queue.messages.add(new QueuedMessage(copy, text));
+            queue.queuedBytes += copy.remaining();
+        } finally {
+            this.lock.unlock();
+        }
+        this.drain();
+    }
+
+    /**
+     * Release queued messages while the total bufferedAmount is below the limit.  Never blocks: if another thread is
+     * draining, it drains again on behalf of the caller, since sending can block on the WebRTC signaling thread, which
+     * calls onBufferedAmountChange.
+     */
+    public void drain() {
+        this.drainRequested = true;
+        while (this.drainRequested && this.lock.tryLock()) {
+            try {
+                this.drainRequested = false;
+                this.drainQueues();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private void drainQueues() {
+        long bufferedAmount = 0;
+        for (var queue : this.queues.values()) {
+            if (queue.channel.isClosed()) {
+                this.discard(queue);
+            }
+            bufferedAmount += queue.channel.getBufferedAmount();
+        }
+        while (bufferedAmount < this.bufferedAmountLimit) {
+            var queue = this.nextQueue();
+            if (isNull(queue)) {
+                return;
+            }
+            var message = queue.messages.peek();
+            long wakeups = queue.wakeups;
+            try {
+                if (!queue.channel.isOpen()) {
+                    throw new IllegalStateException(String.format("Channel %s is not open", queue.channel.getName()));
+                }
+                queue.channel.transmit(message.data, message.text);
+            } catch (Exception ex) {
+                // keep the message at the head, and its share of the round
+                queue.deficit += message.data.remaining();
+                if (queue.channel.isClosed()) {
+                    this.discard(queue);
+                } else {
+                    logger.debug("Holding sends of channel {}", queue.channel.getName(), ex);
+                    queue.stalledAt = wakeups;
+                }
+                continue;
+            }
+            queue.messages.poll();
+            queue.queuedBytes -= message.data.remaining();
+            bufferedAmount += message.data.remaining();
+        }
+    }
+
+    private void discard(ChannelQueue queue) {
+        if (!queue.messages.isEmpty()) {
+            logger.error("Discarded {} messages, {} bytes queued for closed channel {}", queue.messages.size(),
+                    queue.queuedBytes, queue.channel.getName());
+            queue.messages.clear();
+            queue.queuedBytes = 0;
+        }
+    }
+
+    /**
+     * @return queue to send the next message from, by strict priority between classes and deficit round robin in a class
+     */
+    private ChannelQueue nextQueue() {
+        for (int priority = 0; priority < this.classes.size(); priority++) {
+            var list = this.classes.get(priority);
+            boolean pending = false;
+            for (var queue : list) {
+                pending |= !queue.messages.isEmpty() && !queue.isStalled();
+            }
+            if (!pending) {
+                continue;
+            }
+            while (true) {
+                int cursor = this.cursors[priority] % list.size();
+                var queue = list.get(cursor);
+                var head = queue.isStalled() ? null : queue.messages.peek();
+                if (isNull(head)) {
+                    queue.deficit = 0;
+                } else if (queue.deficit >= head.data.remaining()) {
+                    queue.deficit -= head.data.remaining();
+                    return queue;
+                } else {
+                    queue.deficit += (long) QUANTUM * queue.weight;
+                }
+                this.cursors[priority] = (cursor + 1) % list.size();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return bytes queued for the Channel, 0 if it is not registered
+     */
+    public long getQueuedBytes(Channel channel) {
+        var queue = this.queues.get(channel);
+        if (isNull(queue)) {
+            return 0;
+        }
+        this.lock.lock();
+        try {
+            return queue.queuedBytes;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Tracks sequence numbers of received messages in a sliding window of bits, to count gaps, losses, duplicates
+ * and reordering.  Sequence numbers start at 1.
+ *
+ * A sequence number missing when a later one arrives is counted as a gap.  It is counted as lost once it slides out of
+ * the window, and as reordered if it arrives while still in the window.
+ */
+package com.openfin.webrtc;
+
+import java.util.Arrays;
+
+public class SequenceTracker {
+    public static final int DEFAULT_WINDOW_SIZE = 1024;
+
+    private final int windowSize;
+    private final long[] window;        // bit of sequence number s is set when s has been received
+    private long highest;
+
+    private long received;
+    private long gaps;
+    private long lost;
+    private long duplicates;
+    private long reordered;
+    private long late;
+    private long maxReorderDepth;
+
+    public SequenceTracker() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize number of sequence numbers tracked behind the highest one, rounded up to a multiple of 64
+     */
+    public SequenceTracker(int windowSize) {
+        int words = Math.max((windowSize + Long.SIZE - 1) / Long.SIZE, 1);
+        this.windowSize = words * Long.SIZE;
+        this.window = new long[words];
+        // sequence numbers before the first one are never missing
+        Arrays.fill(this.window, -1L);
+    }
+
+    private boolean isSet(long sequence) {
+        int bit = (int) (sequence % this.windowSize);
+        return (this.window[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void set(long sequence) {
+        int bit = (int) (sequence % this.windowSize);
+        this.window[bit >>> 6] |= 1L << bit;
+    }
+
+    private void clear(long sequence) {
+        int bit = (int) (sequence % this.windowSize);
+        this.window[bit >>> 6] &= ~(1L << bit);
+    }
+
+    /**
+     * Continue after sequence numbers received before, like the ones of a journal, if none have been received yet
+     */
+    synchronized void startAfter(long sequence) {
+        if (this.received == 0 && this.highest == 0) {
+            this.highest = sequence;
+        }
+    }
+
+    /**
+     * @return true if the sequence number has been received, or is too old to tell
+     */
+    synchronized boolean isReceived(long sequence) {
+        return sequence <= this.highest && (sequence <= this.highest - this.windowSize || this.isSet(sequence));
+    }
+
+    /**
+     * Record a received sequence number
+     *
+     * @return number of sequence numbers skipped by this one, 0 if it is the next one, a duplicate or late
+     */
+    public synchronized long onSequence(long sequence) {
+        this.received++;
+        if (sequence > this.highest) {
+            long skipped = sequence - this.highest - 1;
+            if (sequence - this.highest >= this.windowSize) {
+                // everything in the window slides out
+                for (long word : this.window) {
+                    this.lost += Long.SIZE - Long.bitCount(word);
+                }
+                this.lost += sequence - this.highest - this.windowSize;
+                Arrays.fill(this.window, 0L);
+            } else {
+                for (long s = this.highest + 1; s < sequence; s++) {
+                    // the slot of s was used by s - windowSize
+                    if (!this.isSet(s)) {
+                        this.lost++;
+                    }
+                    this.clear(s);
+                }
+                if (!this.isSet(sequence)) {
+                    this.lost++;
+                }
+            }
+            this.set(sequence);
+            this.highest = sequence;
+            this.gaps += skipped;
+            return skipped;
+        }
+        if (sequence <= Math.max(this.highest - this.windowSize, 0)) {
+            this.late++;
+        } else if (this.isSet(sequence)) {
+            this.duplicates++;
+        } else {
+            this.set(sequence);
+            this.reordered++;
+            this.maxReorderDepth = Math.max(this.maxReorderDepth, this.highest - sequence);
+        }
+        return 0;
+    }
+
+    public synchronized long getHighestSequence() {
+        return highest;
+    }
+
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    /**
+     * @return number of sequence numbers that were missing when a later one arrived
+     */
+    public synchronized long getGaps() {
+        return gaps;
+    }
+
+    /**
+     * @return number of sequence numbers that slid out of the window without being received
+     */
+    public synchronized long getLost() {
+        return lost;
+    }
+
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return number of sequence numbers received after a later one, while still in the window
+     */
+    public synchronized long getReordered() {
+        return reordered;
+    }
+
+    /**
+     * @return number of sequence numbers received after sliding out of the window.  They have been counted as lost
+     */
+    public synchronized long getLate() {
+        return late;
+    }
+
+    /**
+     * @return largest distance between the highest sequence number and a reordered one
+     */
+    public synchronized long getMaxReorderDepth() {
+        return maxReorderDepth;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("highest %d received %d gaps %d lost %d duplicates %d reordered %d late %d max reorder depth %d",
+                highest, received, gaps, lost, duplicates, reordered, late, maxReorderDepth);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Histograms, over all Connections in the process, of the time from creation of a Connection to each setup phase
+ */
+package com.openfin.webrtc;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public final class SetupMetrics {
+    private static final Map<SetupPhase, LatencyHistogram> histograms = new EnumMap<>(SetupPhase.class);
+
+    static {
+        for (SetupPhase phase : SetupPhase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    private SetupMetrics() {
+    }
+
+    static void record(SetupPhase phase, long elapsedNanos) {
+        histograms.get(phase).record(elapsedNanos);
+    }
+
+    /**
+     * @return histogram, in nanoseconds, of time from creation of a Connection to the phase
+     */
+    public static LatencyHistogram getHistogram(SetupPhase phase) {
+        return histograms.get(phase);
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * @return median and p99 time to each phase reached by any Connection, in milliseconds
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        for (SetupPhase phase : SetupPhase.values()) {
+            LatencyHistogram histogram = histograms.get(phase);
+            if (histogram.getCount() > 0) {
+                sb.append(String.format("%n  %-24s count %d p50 %.1f p99 %.1f ms", phase, histogram.getCount(),
+                        histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6));
+            }
+        }
+        return sb.toString();
+    }
+}
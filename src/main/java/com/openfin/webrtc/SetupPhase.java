@@ -0,0 +1,20 @@
+/**
+ * Phases of setting up a Connection, in the order they normally happen.  Signaling phases only apply to Connections
+ * that use a signaling server or an OpenFin channel.
+ */
+package com.openfin.webrtc;
+
+public enum SetupPhase {
+    SIGNALING_AUTH,             // signaling server auth check completed
+    SIGNALING_CONNECTED,        // signaling socket or OpenFin channel connected
+    SIGNALING_READY,            // both peers joined the signaling room
+    RTC_CONFIG,                 // RTC configuration fetched from the signaling server
+    PEER_CONNECTION,            // peer connection created
+    LOCAL_DESCRIPTION,          // offer or answer created and set as local description
+    ICE_GATHERING_COMPLETE,     // all local ICE candidates gathered
+    DESCRIPTION_SENT,           // offer or answer sent to the peer
+    REMOTE_DESCRIPTION,         // offer or answer of the peer set as remote description
+    CONNECTED,                  // peer connection connected
+    CHANNEL_OPEN,               // first channel open
+    FIRST_MESSAGE               // first message received on a channel
+}
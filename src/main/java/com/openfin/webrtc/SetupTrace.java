@@ -0,0 +1,87 @@
+/**
+ * Timestamps of setup phases of a Connection.  Each phase is timestamped the first time it is reached, with
+ * System.nanoTime().  Timestamps are relative to creation of the Connection.
+ */
+package com.openfin.webrtc;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class SetupTrace {
+    private final long start;
+    private final AtomicLongArray timestamps;   // 0 until the phase is reached
+
+    SetupTrace() {
+        this.start = System.nanoTime();
+        this.timestamps = new AtomicLongArray(SetupPhase.values().length);
+    }
+
+    /**
+     * @return true if the phase is reached for the first time
+     */
+    boolean mark(SetupPhase phase) {
+        long now = System.nanoTime();
+        // 0 means not reached
+        return this.timestamps.compareAndSet(phase.ordinal(), 0, now != 0 ? now : 1);
+    }
+
+    /**
+     * @return System.nanoTime() when the Connection was created
+     */
+    public long getStart() {
+        return this.start;
+    }
+
+    public boolean isReached(SetupPhase phase) {
+        return this.timestamps.get(phase.ordinal()) != 0;
+    }
+
+    /**
+     * @return System.nanoTime() when the phase was reached, 0 if it is not reached
+     */
+    public long getTimestamp(SetupPhase phase) {
+        return this.timestamps.get(phase.ordinal());
+    }
+
+    /**
+     * @return nanoseconds from creation of the Connection to the phase, -1 if it is not reached
+     */
+    public long getElapsed(SetupPhase phase) {
+        long timestamp = this.getTimestamp(phase);
+        return timestamp != 0 ? timestamp - this.start : -1;
+    }
+
+    /**
+     * @return reached phases in the order they were reached
+     */
+    public List<SetupPhase> getReachedPhases() {
+        List<SetupPhase> phases = new ArrayList<>();
+        for (SetupPhase phase : SetupPhase.values()) {
+            if (this.isReached(phase)) {
+                phases.add(phase);
+            }
+        }
+        phases.sort(Comparator.comparingLong(this::getTimestamp));
+        return phases;
+    }
+
+    /**
+     * @return reached phases with time since creation and since the previous phase, in milliseconds
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        long previous = this.start;
+        for (SetupPhase phase : this.getReachedPhases()) {
+            long timestamp = this.getTimestamp(phase);
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(String.format("%s %.1f (+%.1f)", phase, (timestamp - this.start) / 1e6, (timestamp - previous) / 1e6));
+            previous = timestamp;
+        }
+        return sb.append(" ms").toString();
+    }
+}
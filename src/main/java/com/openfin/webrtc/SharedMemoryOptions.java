@@ -0,0 +1,68 @@
+/**
+ * Options for carrying Channel messages in memory-mapped ring buffers, instead of the data channel, when both peers
+ * run on the same host.  Both peers have to enable it, otherwise data channels are used.
+ */
+package com.openfin.webrtc;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class SharedMemoryOptions {
+
+    // tmpfs on Linux, so ring files are never written back to disk
+    private String directory = Files.isDirectory(Paths.get("/dev/shm")) ? "/dev/shm" : System.getProperty("java.io.tmpdir");
+    private int ringCapacity = 4 * 1024 * 1024;     // bytes of each direction of a channel, a power of 2
+    private long idleParkNanos = 50_000;            // reader park time when nothing is received
+    private long openTimeoutMillis = 10000;         // wait for the ring of the peer
+    private long sendTimeoutMillis = 10000;         // wait for room in the ring of the peer
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param directory directory of ring files, used by both peers.  The offering side decides
+     */
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getRingCapacity() {
+        return ringCapacity;
+    }
+
+    public void setRingCapacity(int ringCapacity) {
+        if (Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException(String.format("Ring capacity %d is not a power of 2", ringCapacity));
+        }
+        this.ringCapacity = ringCapacity;
+    }
+
+    public long getIdleParkNanos() {
+        return idleParkNanos;
+    }
+
+    public void setIdleParkNanos(long idleParkNanos) {
+        this.idleParkNanos = idleParkNanos;
+    }
+
+    public long getOpenTimeoutMillis() {
+        return openTimeoutMillis;
+    }
+
+    public void setOpenTimeoutMillis(long openTimeoutMillis) {
+        this.openTimeoutMillis = openTimeoutMillis;
+    }
+
+    public long getSendTimeoutMillis() {
+        return sendTimeoutMillis;
+    }
+
+    /**
+     * @param sendTimeoutMillis time a send waits while the ring is full before it fails, since the peer may have
+     *                          stopped reading.  0 to wait until the channel is closed
+     */
+    public void setSendTimeoutMillis(long sendTimeoutMillis) {
+        this.sendTimeoutMillis = sendTimeoutMillis;
+    }
+}
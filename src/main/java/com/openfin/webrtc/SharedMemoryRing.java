@@ -0,0 +1,165 @@
+/**
+ * Single producer, single consumer ring buffer of messages in a memory-mapped file, shared by two processes.
+ *
+ * Layout, in native byte order: magic and capacity, then the tail written by the producer and the head written by
+ * the consumer on cache lines of their own, then the data.  Each record is [length][flags][payload], aligned to 8
+ * bytes.  A record never wraps, a length of -1 pads the rest of the ring instead.  Positions only grow, and the
+ * producer publishes a record by storing the tail with release semantics after writing it.
+ */
+package com.openfin.webrtc;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+class SharedMemoryRing {
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int MAGIC = 0x4f465752;   // OFWR
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int TAIL_OFFSET = 128;
+    private static final int HEAD_OFFSET = 256;
+    private static final int DATA_OFFSET = 384;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int PADDING = -1;
+    private static final int FLAG_BINARY = 1;
+
+    interface Handler {
+        void onMessage(ByteBuffer data, boolean binary);
+    }
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private long position;      // tail of the producer, or head of the consumer
+    private long cachedHead;    // producer only, head last read from the consumer
+
+    private SharedMemoryRing(MappedByteBuffer buffer, int capacity) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Create the ring of a producer.  The file is complete once it appears under path.
+     */
+    static SharedMemoryRing create(Path path, int capacity) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        MappedByteBuffer buffer;
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        return new SharedMemoryRing(buffer, capacity);
+    }
+
+    /**
+     * Open the ring of a consumer
+     */
+    static SharedMemoryRing open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, file.size());
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        int capacity = buffer.getInt(CAPACITY_OFFSET);
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.capacity() != DATA_OFFSET + capacity) {
+            throw new IOException(String.format("%s is not a ring buffer", path));
+        }
+        SharedMemoryRing ring = new SharedMemoryRing(buffer, capacity);
+        ring.position = (long) LONG.getAcquire(buffer, HEAD_OFFSET);
+        return ring;
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * @return largest message that can be written
+     */
+    int getMaxMessageSize() {
+        return this.capacity / 2 - RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Write a message, producer only
+     *
+     * @param data message from position to limit, which is not changed
+     * @return false if the ring has no room for the message
+     */
+    boolean offer(ByteBuffer data, boolean binary) {
+        int length = data.remaining();
+        if (length > this.getMaxMessageSize()) {
+            throw new IllegalArgumentException(String.format("Message of %d bytes is larger than %d", length, this.getMaxMessageSize()));
+        }
+        int recordSize = align(RECORD_HEADER_SIZE + length);
+        long tail = this.position;
+        int index = (int) (tail & this.mask);
+        int padding = this.capacity - index < recordSize ? this.capacity - index : 0;
+        if (tail + padding + recordSize - this.cachedHead > this.capacity) {
+            this.cachedHead = (long) LONG.getAcquire(this.buffer, HEAD_OFFSET);
+            if (tail + padding + recordSize - this.cachedHead > this.capacity) {
+                return false;
+            }
+        }
+        if (padding > 0) {
+            this.buffer.putInt(DATA_OFFSET + index, PADDING);
+            tail += padding;
+            index = 0;
+        }
+        this.buffer.putInt(DATA_OFFSET + index, length);
+        this.buffer.putInt(DATA_OFFSET + index + 4, binary ? FLAG_BINARY : 0);
+        ByteBuffer target = this.buffer.duplicate();
+        target.position(DATA_OFFSET + index + RECORD_HEADER_SIZE);
+        target.put(data.duplicate());
+        this.position = tail + recordSize;
+        LONG.setRelease(this.buffer, TAIL_OFFSET, this.position);
+        return true;
+    }
+
+    /**
+     * Read available messages, consumer only.  Data passed to the handler is only valid during the call.
+     *
+     * @return number of messages read
+     */
+    int poll(Handler handler, int limit) {
+        long tail = (long) LONG.getAcquire(this.buffer, TAIL_OFFSET);
+        int count = 0;
+        while (this.position < tail && count < limit) {
+            int index = (int) (this.position & this.mask);
+            int length = this.buffer.getInt(DATA_OFFSET + index);
+            if (length == PADDING) {
+                this.position += this.capacity - index;
+                continue;
+            }
+            boolean binary = (this.buffer.getInt(DATA_OFFSET + index + 4) & FLAG_BINARY) != 0;
+            int start = DATA_OFFSET + index + RECORD_HEADER_SIZE;
+            ByteBuffer data = this.buffer.duplicate().position(start).limit(start + length);
+            handler.onMessage(data, binary);
+            this.position += align(RECORD_HEADER_SIZE + length);
+            LONG.setRelease(this.buffer, HEAD_OFFSET, this.position);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return bytes written and not read yet
+     */
+    long getUsedBytes() {
+        long head = (long) LONG.getAcquire(this.buffer, HEAD_OFFSET);
+        return (long) LONG.getAcquire(this.buffer, TAIL_OFFSET) - head;
+    }
+}
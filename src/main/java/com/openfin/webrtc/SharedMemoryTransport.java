@@ -0,0 +1,190 @@
+/**
+ * Carries the frames of one Channel in a pair of SharedMemoryRings, one per direction, while the data channel only
+ * carries the channel state.  Each side creates the ring it writes, and a reader thread waits for the ring of the
+ * peer, then delivers its messages to the Channel as if they came from the data channel.  Ring files are removed
+ * once both sides have mapped them.
+ *
+ * Sends block while the ring of the peer is full, and fail after SharedMemoryOptions.getSendTimeoutMillis if the peer
+ * does not read.  Since the peer does not report reads, the reader thread reports
+ * decreases of the written bytes to the Channel like onBufferedAmountChange of the data channel.
+ */
+package com.openfin.webrtc;
+
+import dev.onvoid.webrtc.RTCDataChannelBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.isNull;
+
+class SharedMemoryTransport implements Runnable {
+    private final static Logger logger = LoggerFactory.getLogger(SharedMemoryTransport.class);
+    private static final int POLL_LIMIT = 256;
+    private static final int IDLE_SPINS = 1000;
+    private static final int IDLE_YIELDS = 100;
+
+    private final String name;
+    private final SharedMemoryOptions options;
+    private final Path outboundPath;
+    private final Path inboundPath;
+    private final SharedMemoryRing outbound;
+    private SharedMemoryRing inbound;           // reader thread only
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private volatile Channel channel;
+    private volatile boolean closed;
+    private long lastUsedBytes;                 // reader thread only
+
+    /**
+     * Create the ring this side writes
+     *
+     * @param session id of the shared memory session of the connection
+     * @param name name of the channel
+     * @param offerer true on the offering side of the connection
+     */
+    SharedMemoryTransport(Path directory, String session, String name, boolean offerer, SharedMemoryOptions options) throws IOException {
+        this.name = name;
+        this.options = options;
+        String prefix = String.format("webrtc-%s-%s", session, name.replaceAll("[^A-Za-z0-9._-]", "_"));
+        this.outboundPath = directory.resolve(prefix + (offerer ? "-offerer.ring" : "-answerer.ring"));
+        this.inboundPath = directory.resolve(prefix + (offerer ? "-answerer.ring" : "-offerer.ring"));
+        this.outbound = SharedMemoryRing.create(this.outboundPath, options.getRingCapacity());
+    }
+
+    /**
+     * Start delivering messages of the peer to the channel
+     */
+    void start(Channel channel) {
+        this.channel = channel;
+        Thread thread = new Thread(this, "SharedMemoryReader-" + this.name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Write a message to the ring, waiting while it is full
+     *
+     * @throws TimeoutException if the ring stayed full for the send timeout
+     */
+    void send(ByteBuffer data, boolean binary) throws TimeoutException {
+        this.sendLock.lock();
+        try {
+            int idle = 0;
+            long deadline = 0;
+            while (!this.outbound.offer(data, binary)) {
+                if (this.closed) {
+                    throw new IllegalStateException(String.format("Channel %s is closed", this.name));
+                }
+                long timeout = this.options.getSendTimeoutMillis();
+                if (idle == IDLE_SPINS && timeout > 0) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+                } else if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                    throw new TimeoutException(String.format("Shared memory ring of channel %s is full for %d ms",
+                            this.name, timeout));
+                }
+                this.idle(idle++);
+            }
+        } finally {
+            this.sendLock.unlock();
+        }
+    }
+
+    /**
+     * @return bytes written and not read by the peer yet
+     */
+    long getBufferedAmount() {
+        return this.outbound.getUsedBytes();
+    }
+
+    @Override
+    public void run() {
+        long deadline = System.currentTimeMillis() + this.options.getOpenTimeoutMillis();
+        int idle = 0;
+        while (!this.closed) {
+            int count = 0;
+            if (isNull(this.inbound)) {
+                if (!this.openInbound(deadline)) {
+                    return;
+                }
+            } else {
+                count = this.inbound.poll(this::deliver, POLL_LIMIT);
+            }
+            this.checkBufferedAmount();
+            if (count > 0) {
+                idle = 0;
+            } else {
+                this.idle(idle++);
+            }
+        }
+    }
+
+    /**
+     * @return false if the ring of the peer did not appear in time, and the channel is closed
+     */
+    private boolean openInbound(long deadline) {
+        try {
+            if (Files.exists(this.inboundPath)) {
+                this.inbound = SharedMemoryRing.open(this.inboundPath);
+                Files.deleteIfExists(this.inboundPath);
+                logger.debug("Opened shared memory ring {}", this.inboundPath);
+                return true;
+            }
+        } catch (IOException ex) {
+            logger.error("Error opening shared memory ring {}", this.inboundPath, ex);
+            this.channel.close();
+            return false;
+        }
+        if (System.currentTimeMillis() > deadline) {
+            logger.error("Shared memory ring {} of the peer not found", this.inboundPath);
+            this.channel.close();
+            return false;
+        }
+        return true;
+    }
+
+    private void deliver(ByteBuffer data, boolean binary) {
+        try {
+            this.channel.onMessage(new RTCDataChannelBuffer(data, binary));
+        } catch (Exception ex) {
+            logger.error("Error delivering message of channel {}", this.name, ex);
+        }
+    }
+
+    private void checkBufferedAmount() {
+        long used = this.outbound.getUsedBytes();
+        if (used < this.lastUsedBytes) {
+            this.channel.onBufferedAmountChange(this.lastUsedBytes);
+        }
+        this.lastUsedBytes = used;
+    }
+
+    private void idle(int count) {
+        if (count < IDLE_SPINS) {
+            Thread.onSpinWait();
+        } else if (count < IDLE_SPINS + IDLE_YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(this.options.getIdleParkNanos());
+        }
+    }
+
+    /**
+     * Stop the reader thread and unblock senders.  The mapped rings are released by garbage collection.
+     */
+    void close() {
+        this.closed = true;
+        try {
+            // the peer may never have opened it
+            Files.deleteIfExists(this.outboundPath);
+        } catch (IOException ex) {
+            logger.debug("Error deleting {}", this.outboundPath, ex);
+        }
+    }
+}
@@ -8,4 +8,10 @@ public interface SignalingListener {
     public void onSignalingAnswer(JSONObject answer);
     public void onSignalingIceCandidate(JSONObject candidate);
     public void onSignalingTrickleReady(String code);
+
+    /**
+     * Called when signaling reaches a setup phase
+     */
+    default void onSignalingPhase(SetupPhase phase) {
+    }
 }
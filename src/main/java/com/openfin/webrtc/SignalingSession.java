@@ -0,0 +1,325 @@
+/**
+ * Connection to a signaling server, with its auth check and socket.io socket, that joins one room per pairing code.
+ * Events of the server are routed to the SignalingListener of their room: ready and joined by the room they name,
+ * trickle by the pairing code it carries, and message by the pairingCode field that sending sessions add to it.  A
+ * message without one goes to the only room of the session, and is dropped if the session has several rooms.
+ *
+ * Sessions shared by connections to one server come from get(), so connecting to many peers takes one socket, one
+ * auth check and one rtcConfig request.  The rtcConfig is requested once the socket connects, without blocking the
+ * socket.io event thread, and is used by every room until the session disconnects.  The server has to relay messages
+ * to every room of a socket, or by their pairingCode field, and peers of a shared session must send messages with the
+ * field, which Java peers do.
+ */
+package com.openfin.webrtc;
+
+import io.socket.client.IO;
+import io.socket.client.Socket;
+import io.socket.emitter.Emitter;
+import io.socket.engineio.client.transports.WebSocket;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.CookieHandler;
+import java.net.CookieManager;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+class SignalingSession {
+    private final static Logger logger = LoggerFactory.getLogger(SignalingSession.class);
+    static final String PAIRING_CODE_FIELD = "pairingCode";
+    private static final long RTC_CONFIG_TIMEOUT_MILLIS = 10000;
+    private static final Map<String, SignalingSession> sharedSessions = new HashMap<>();    // guarded by itself
+
+    private final String baseUrl;
+    private final boolean shared;
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private HttpClient httpClient;
+    private Socket socket;              // guarded by this, set once connecting
+    private boolean connected;          // guarded by this
+    private CompletableFuture<JSONObject> rtcConfig;    // guarded by this, requested once per socket
+
+    /**
+     * State of a joined room
+     */
+    private static class Room {
+        final String pairingCode;
+        final SignalingListener listener;
+        volatile boolean peerLeader;
+
+        Room(String pairingCode, SignalingListener listener) {
+            this.pairingCode = pairingCode;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * @param shared true if the session is in the registry of shared sessions
+     */
+    SignalingSession(String baseUrl, boolean shared) {
+        this.baseUrl = baseUrl;
+        this.shared = shared;
+    }
+
+    /**
+     * @return the session shared by connections to a signaling server, created on first use
+     */
+    static SignalingSession get(String baseUrl) {
+        synchronized (sharedSessions) {
+            return sharedSessions.computeIfAbsent(baseUrl, url -> new SignalingSession(url, true));
+        }
+    }
+
+    /**
+     * Join the room of a pairing code, connecting to the server first if this is the first room
+     */
+    void join(String pairingCode, SignalingListener listener) throws Exception {
+        synchronized (this) {
+            // added under the lock, so a socket connecting meanwhile joins the room once
+            if (nonNull(this.rooms.putIfAbsent(pairingCode, new Room(pairingCode, listener)))) {
+                throw new IllegalStateException(String.format("Room %s already joined on %s", pairingCode, this.baseUrl));
+            }
+            if (isNull(this.socket)) {
+                try {
+                    this.connect();
+                } catch (Exception ex) {
+                    this.rooms.remove(pairingCode);
+                    throw ex;
+                }
+                listener.onSignalingPhase(SetupPhase.SIGNALING_AUTH);
+                return;
+            }
+            listener.onSignalingPhase(SetupPhase.SIGNALING_AUTH);
+            if (this.connected) {
+                listener.onSignalingPhase(SetupPhase.SIGNALING_CONNECTED);
+                this.socket.emit("join", pairingCode);
+            }
+        }
+        logger.debug("Joined {} on session {}, {} rooms", pairingCode, this.baseUrl, this.rooms.size());
+    }
+
+    /**
+     * Leave the room of a pairing code, and disconnect when no room is left
+     */
+    void leave(String pairingCode) {
+        if (isNull(this.rooms.remove(pairingCode))) {
+            return;
+        }
+        if (this.shared) {
+            synchronized (sharedSessions) {
+                if (!this.rooms.isEmpty()) {
+                    return;
+                }
+                sharedSessions.remove(this.baseUrl);
+            }
+        } else if (!this.rooms.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            // a room joined meanwhile keeps the socket
+            if (this.rooms.isEmpty() && nonNull(this.socket)) {
+                this.socket.off();
+                this.socket.disconnect();
+                this.socket = null;
+                this.connected = false;
+                this.rtcConfig = null;
+            }
+        }
+    }
+
+    int getRoomCount() {
+        return this.rooms.size();
+    }
+
+    boolean isPeerLeader(String pairingCode) {
+        var room = this.rooms.get(pairingCode);
+        return nonNull(room) && room.peerLeader;
+    }
+
+    /**
+     * Emit an event for a room.  JSON messages carry the pairing code, so the peer can route them.
+     */
+    synchronized Emitter emit(String pairingCode, String event, Object... args) throws Exception {
+        if (isNull(this.socket) || !this.socket.connected()) {
+            throw new Exception("Socket is not connected");
+        }
+        if ("message".equals(event) && args.length > 0 && args[0] instanceof JSONObject) {
+            ((JSONObject) args[0]).put(PAIRING_CODE_FIELD, pairingCode);
+        }
+        return this.socket.emit(event, args);
+    }
+
+    private void connect() throws Exception {
+        CookieHandler.setDefault(new CookieManager());
+        this.httpClient = HttpClient.newBuilder()
+                .cookieHandler(CookieHandler.getDefault())
+                .build();
+        URI uri = URI.create(String.format("%s/api/auth/check", this.baseUrl));
+        var response = this.makeHTTPRequest(uri);
+        var cookies = this.httpClient.cookieHandler().get().get(uri, response.headers().map());
+
+        IO.Options options = IO.Options.builder()
+                .setMultiplex(true)
+                .setUpgrade(true)
+                .setTransports(new String[]{WebSocket.NAME})
+                .setExtraHeaders(cookies)
+                .setTimeout(10000)
+                .build();
+        this.socket = IO.socket(URI.create(this.baseUrl), options);
+        this.addSocketListeners();
+        logger.debug("Connecting {}", this.baseUrl);
+        this.socket.connect();
+    }
+
+    private HttpRequest createHTTPRequest(URI uri) {
+        var request = HttpRequest.newBuilder().uri(uri)
+                .version(HttpClient.Version.HTTP_1_1)
+                .GET()
+                .build();
+        logger.debug("Requesting {}", request.uri().toString());
+        return request;
+    }
+
+    private HttpResponse<String> makeHTTPRequest(URI uri) throws Exception {
+        var response = this.httpClient.send(this.createHTTPRequest(uri), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            throw new Exception(String.format("Signaling request %s failed %d", uri.getPath(), response.statusCode()));
+        }
+        return response;
+    }
+
+    /**
+     * Request the rtcConfig without blocking, with the cookies of the auth check
+     */
+    private CompletableFuture<JSONObject> requestRtcConfig() {
+        URI uri = URI.create(String.format("%s/api/webrtc/rtcConfig", this.baseUrl));
+        return this.httpClient.sendAsync(this.createHTTPRequest(uri), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                        throw new CompletionException(new Exception(String.format("Signaling request %s failed %d", uri.getPath(), response.statusCode())));
+                    }
+                    logger.debug("Got {}", response.body());
+                    return new JSONObject(response.body());
+                });
+    }
+
+    /**
+     * @return rtcConfig of the session, requested again if the last request failed
+     */
+    private CompletableFuture<JSONObject> getRtcConfig() {
+        synchronized (this) {
+            if (isNull(this.rtcConfig) || this.rtcConfig.isCompletedExceptionally()) {
+                this.rtcConfig = this.requestRtcConfig();
+            }
+            return this.rtcConfig;
+        }
+    }
+
+    private void addSocketListeners() {
+        this.socket.on(Socket.EVENT_CONNECT, objects -> {
+            logger.info("Connected {}", this.baseUrl);
+            synchronized (this) {
+                this.connected = true;
+                this.getRtcConfig();
+                // joins every room again after a reconnect
+                for (Room room : this.rooms.values()) {
+                    room.listener.onSignalingPhase(SetupPhase.SIGNALING_CONNECTED);
+                    this.socket.emit("join", room.pairingCode);
+                }
+            }
+        });
+        this.socket.on(Socket.EVENT_DISCONNECT, objects -> {
+            logger.info("Disconnected {}", this.baseUrl);
+            synchronized (this) {
+                this.connected = false;
+            }
+        });
+        this.socket.on(Socket.EVENT_CONNECT_ERROR, objects -> logger.info("Connect Error {}", this.baseUrl));
+
+        this.socket.on("ready", objects -> {
+            logger.info("Room is ready {} leader {}", objects[0], objects[1]);
+            var room = this.rooms.get(String.valueOf(objects[0]));
+            if (isNull(room)) {
+                logger.warn("Ready for unknown room {}", objects[0]);
+                return;
+            }
+            room.peerLeader = this.socket.id().equals(objects[1]);
+            logger.debug("setting peer leader {} for {}", room.peerLeader, room.pairingCode);
+            room.listener.onSignalingPhase(SetupPhase.SIGNALING_READY);
+            this.createWebRTCConnection(room);
+        });
+
+        this.socket.on("joined", objects -> logger.info("This peer has joined room {} with client ID {}", objects[0], objects[1]));
+
+        this.socket.on(Connection.SDPTrickleReady, objects -> {
+            logger.info("peer trickle ready {}", objects[0]);
+            var room = this.rooms.get(String.valueOf(objects[0]));
+            if (nonNull(room)) {
+                room.listener.onSignalingTrickleReady(objects[0].toString());
+            } else {
+                logger.warn("Trickle ready for unknown room {}", objects[0]);
+            }
+        });
+
+        this.socket.on("message", objects -> {
+            logger.info("Got message {} ", objects[0]);
+            this.processSignalingMessage((JSONObject) objects[0]);
+        });
+    }
+
+    /**
+     * Pass the rtcConfig to the room, on the socket.io event thread so signaling messages of the room that follow
+     * wait for it.  Only waits for the request made when the socket connected, not once per room.
+     */
+    private void createWebRTCConnection(Room room) {
+        try {
+            JSONObject config = this.getRtcConfig().get(RTC_CONFIG_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            room.listener.onSignalingPhase(SetupPhase.RTC_CONFIG);
+            room.listener.onRtcConfig(config);
+        } catch (Exception ex) {
+            logger.error("Error creating WebRTC connection", ex);
+        }
+    }
+
+    private Room roomOf(JSONObject message) {
+        String pairingCode = message.optString(PAIRING_CODE_FIELD, null);
+        if (nonNull(pairingCode)) {
+            return this.rooms.get(pairingCode);
+        }
+        // from a peer that does not multiplex
+        return this.rooms.size() == 1 ? this.rooms.values().iterator().next() : null;
+    }
+
+    private void processSignalingMessage(JSONObject message) {
+        logger.debug("Got signaling message {}", message);
+        var room = this.roomOf(message);
+        if (isNull(room)) {
+            logger.warn("Dropped signaling message for unknown room {}", message.optString(PAIRING_CODE_FIELD, null));
+            return;
+        }
+        var listener = room.listener;
+        String type = message.getString("type");
+        if (Connection.SDPOffer.equals(type)) {
+            logger.debug("got offer");
+            listener.onSignalingOffer(message);
+        }
+        else if (Connection.SDPAnswer.equals(type)) {
+            listener.onSignalingAnswer(message);
+        }
+        else if (Connection.SDPCandidate.equals(type)) {
+            listener.onSignalingIceCandidate(message.getJSONObject("candidate"));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Token bucket refilled at a constant rate up to its capacity.  Not thread-safe.
+ */
+package com.openfin.webrtc;
+
+import java.util.concurrent.TimeUnit;
+
+class TokenBucket {
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(double tokensPerSecond, double capacity, long now) {
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(capacity, 1);
+        this.tokens = this.capacity;
+        this.lastRefill = now;
+    }
+
+    private void refill(long now) {
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.tokensPerNano);
+        this.lastRefill = now;
+    }
+
+    /**
+     * @return nanoseconds until the tokens are available, 0 if they are available now.  Requests larger than the
+     * capacity are available when the bucket is full
+     */
+    long delay(double requested, long now) {
+        this.refill(now);
+        double missing = Math.min(requested, this.capacity) - this.tokens;
+        return missing <= 0 ? 0 : Math.max((long) Math.ceil(missing / this.tokensPerNano), 1);
+    }
+
+    /**
+     * Take tokens, which can leave the bucket in debt
+     */
+    void take(double requested) {
+        this.tokens -= requested;
+    }
+}
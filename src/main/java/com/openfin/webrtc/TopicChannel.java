@@ -0,0 +1,253 @@
+/**
+ * Publish/subscribe of many topics multiplexed over one Channel.
+ *
+ * A subscriber assigns an int id to each topic and sends it with the topic name in a SUBSCRIBE frame.  After that,
+ * the publisher sends messages of the topic with the id only, and only while the peer is subscribed.
+ *
+ * Frames are binary: [type][topic id][topic name] for SUBSCRIBE and UNSUBSCRIBE, [type][topic id][payload] for PUBLISH.
+ * The Channel should be dedicated to TopicChannel, ordered and reliable.
+ */
+package com.openfin.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.isNull;
+
+public class TopicChannel implements ChannelListener {
+    private final static Logger logger = LoggerFactory.getLogger(TopicChannel.class);
+
+    private static final byte SUBSCRIBE = 1;
+    private static final byte UNSUBSCRIBE = 2;
+    private static final byte PUBLISH = 3;
+    private static final int HEADER_SIZE = 1 + Integer.BYTES;
+
+    private final Channel channel;
+
+    // local subscriptions, modified under subscriptionLock.  subscriptionsById is copied on write for the receiving thread
+    private final Object subscriptionLock = new Object();
+    private final Map<String, Subscription> subscriptionsByName;
+    private volatile IntObjectMap<Subscription> subscriptionsById;
+    private int lastTopicId;
+
+    // topics subscribed by the peer
+    private final Map<String, Publisher> publishers;
+    private ByteBuffer sendBuffer;
+    private final LongAdder unknownTopicMessages;
+
+    private static class Subscription {
+        private final String topic;
+        private final int id;
+        private volatile TopicListener[] listeners;
+
+        private Subscription(String topic, int id, TopicListener listener) {
+            this.topic = topic;
+            this.id = id;
+            this.listeners = new TopicListener[] { listener };
+        }
+    }
+
+    /**
+     * Handle for publishing to a topic without looking it up for every message
+     */
+    public static class Publisher {
+        private final String topic;
+        private volatile int remoteId = -1;
+
+        private Publisher(String topic) {
+            this.topic = topic;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        /**
+         * @return true if the peer is subscribed to the topic
+         */
+        public boolean hasSubscribers() {
+            return this.remoteId >= 0;
+        }
+    }
+
+    public TopicChannel(Channel channel) {
+        this.channel = channel;
+        this.subscriptionsByName = new HashMap<>();
+        this.subscriptionsById = new IntObjectMap<>(64);
+        this.publishers = new ConcurrentHashMap<>();
+        this.sendBuffer = ByteBuffer.allocate(4096);
+        this.unknownTopicMessages = new LongAdder();
+        this.channel.addChannelListener(this);
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public void subscribe(String topic, TopicListener listener) {
+        synchronized (this.subscriptionLock) {
+            var subscription = this.subscriptionsByName.get(topic);
+            if (isNull(subscription)) {
+                subscription = new Subscription(topic, ++this.lastTopicId, listener);
+                this.subscriptionsByName.put(topic, subscription);
+                var subscriptions = this.subscriptionsById.copy();
+                subscriptions.put(subscription.id, subscription);
+                this.subscriptionsById = subscriptions;
+                this.sendSubscription(SUBSCRIBE, subscription);
+            } else {
+                var listeners = Arrays.copyOf(subscription.listeners, subscription.listeners.length + 1);
+                listeners[listeners.length - 1] = listener;
+                subscription.listeners = listeners;
+            }
+        }
+    }
+
+    public void unsubscribe(String topic, TopicListener listener) {
+        synchronized (this.subscriptionLock) {
+            var subscription = this.subscriptionsByName.get(topic);
+            if (isNull(subscription)) {
+                return;
+            }
+            var listeners = Arrays.stream(subscription.listeners).filter(l -> l != listener).toArray(TopicListener[]::new);
+            if (listeners.length > 0) {
+                subscription.listeners = listeners;
+            } else {
+                this.subscriptionsByName.remove(topic);
+                var subscriptions = this.subscriptionsById.copy();
+                subscriptions.remove(subscription.id);
+                this.subscriptionsById = subscriptions;
+                this.sendSubscription(UNSUBSCRIBE, subscription);
+            }
+        }
+    }
+
+    private void sendSubscription(byte type, Subscription subscription) {
+        byte[] name = subscription.topic.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + name.length);
+        frame.put(type).putInt(subscription.id).put(name).flip();
+        try {
+            this.channel.send(frame);
+        } catch (Exception ex) {
+            // subscriptions are sent again when the channel opens
+            logger.debug("Error sending subscription {} {}", subscription.topic, ex.getMessage());
+        }
+    }
+
+    public Publisher getPublisher(String topic) {
+        return this.publishers.computeIfAbsent(topic, Publisher::new);
+    }
+
+    /**
+     * Publish a message to a topic
+     *
+     * @return false if the peer is not subscribed to the topic
+     * @throws Exception
+     */
+    public boolean publish(String topic, ByteBuffer payload) throws Exception {
+        return this.publish(this.getPublisher(topic), payload);
+    }
+
+    /**
+     * Publish a message to a topic.  Nothing is allocated for publishing, except by Channel.
+     *
+     * @param publisher publisher of the topic
+     * @param payload message from position to limit.  Position is not changed
+     * @return false if the peer is not subscribed to the topic
+     * @throws Exception
+     */
+    public boolean publish(Publisher publisher, ByteBuffer payload) throws Exception {
+        int id = publisher.remoteId;
+        if (id < 0) {
+            return false;
+        }
+        synchronized (this) {
+            this.sendBuffer = encodePublish(this.sendBuffer, id, payload);
+            this.channel.send(this.sendBuffer);
+        }
+        return true;
+    }
+
+    /**
+     * Encode a PUBLISH frame into a reused buffer, from position 0 to the end of the frame
+     *
+     * @return buffer, or a larger one if the frame does not fit
+     */
+    static ByteBuffer encodePublish(ByteBuffer buffer, int id, ByteBuffer payload) {
+        int length = HEADER_SIZE + payload.remaining();
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+        }
+        int position = payload.position();
+        buffer.clear();
+        buffer.put(PUBLISH).putInt(id).put(payload).flip();
+        payload.position(position);
+        return buffer;
+    }
+
+    /**
+     * @return number of received messages for topics that are not subscribed any more
+     */
+    public long getUnknownTopicMessages() {
+        return this.unknownTopicMessages.sum();
+    }
+
+    public void close() {
+        this.channel.removeChannelListener(this);
+    }
+
+    @Override
+    public void onStateChange(State state) {
+        if (state == State.OPEN) {
+            synchronized (this.subscriptionLock) {
+                for (var subscription : this.subscriptionsByName.values()) {
+                    this.sendSubscription(SUBSCRIBE, subscription);
+                }
+            }
+        } else if (state == State.CLOSED) {
+            for (var publisher : this.publishers.values()) {
+                publisher.remoteId = -1;
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(String message) {
+        logger.debug("Ignoring text message on topic channel {}", this.channel.getName());
+    }
+
+    @Override
+    public void onBinaryMessage(ByteBuffer data) {
+        int start = data.position();
+        if (data.remaining() < HEADER_SIZE) {
+            logger.debug("Ignoring short frame on topic channel {}", this.channel.getName());
+            return;
+        }
+        byte type = data.get(start);
+        int id = data.getInt(start + 1);
+        if (type == PUBLISH) {
+            var subscription = this.subscriptionsById.get(id);
+            if (isNull(subscription)) {
+                this.unknownTopicMessages.increment();
+                return;
+            }
+            int limit = data.limit();
+            for (TopicListener listener : subscription.listeners) {
+                data.limit(limit).position(start + HEADER_SIZE);
+                listener.onMessage(subscription.topic, data);
+            }
+        } else if (type == SUBSCRIBE || type == UNSUBSCRIBE) {
+            data.position(start + HEADER_SIZE);
+            String topic = StandardCharsets.UTF_8.decode(data).toString();
+            logger.debug("Peer {} topic {}", type == SUBSCRIBE ? "subscribed" : "unsubscribed", topic);
+            this.getPublisher(topic).remoteId = type == SUBSCRIBE ? id : -1;
+        }
+    }
+}
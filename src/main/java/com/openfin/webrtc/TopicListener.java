@@ -0,0 +1,14 @@
+/**
+ * Listener for messages of a topic subscribed with TopicChannel
+ */
+package com.openfin.webrtc;
+
+import java.nio.ByteBuffer;
+
+public interface TopicListener {
+    /**
+     * @param topic name of the topic
+     * @param payload message from position to limit.  The buffer is only valid during the call
+     */
+    public void onMessage(String topic, ByteBuffer payload);
+}
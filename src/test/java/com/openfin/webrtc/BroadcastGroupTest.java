@@ -0,0 +1,38 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BroadcastGroupTest {
+
+    @Test
+    public void partialBufferSentFromPositionToLimit() {
+        byte[] bytes = {0, 1, 2, 3, 4, 5, 6, 7};
+        ByteBuffer data = ByteBuffer.wrap(bytes, 2, 4).slice().position(1);
+        ByteBuffer shared = data.asReadOnlyBuffer();
+        // each member sends its own view, which Channel copies from position to limit
+        for (int member = 0; member < 3; member++) {
+            ByteBuffer view = shared.duplicate();
+            assertTrue(view.isReadOnly());
+            assertArrayEquals(new byte[]{3, 4, 5}, Channel.exactFrame(view).array());
+            assertEquals(1, view.position());
+        }
+        assertEquals(1, data.position());
+        assertEquals(4, data.limit());
+    }
+
+    @Test
+    public void emptyGroup() {
+        BroadcastGroup group = new BroadcastGroup();
+        ByteBuffer data = ByteBuffer.allocate(16).position(4).limit(12);
+        assertEquals(0, group.broadcast(data));
+        assertEquals(0, group.broadcast("text"));
+        assertEquals(2, group.getBroadcasts());
+        assertEquals(4, data.position());
+        assertEquals(12, data.limit());
+        assertEquals(0, group.size());
+    }
+}
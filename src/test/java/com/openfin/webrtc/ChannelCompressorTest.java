@@ -0,0 +1,119 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelCompressorTest {
+
+    private static ByteBuffer repeated(String text, int times) {
+        return ByteBuffer.wrap(text.repeat(times).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CompressionOptions options(int threshold) {
+        CompressionOptions options = new CompressionOptions();
+        options.setThreshold(threshold);
+        return options;
+    }
+
+    @Test
+    public void roundTripDeflated() throws DataFormatException {
+        ChannelCompressor compressor = new ChannelCompressor(options(64));
+        ByteBuffer payload = repeated("{\"bid\":1.2345,\"ask\":1.2346}", 40);
+        ByteBuffer frame = compressor.encode(payload, true);
+        assertEquals(ChannelCompressor.FLAG_TEXT | ChannelCompressor.FLAG_DEFLATED, frame.get(0));
+        assertTrue(frame.remaining() < payload.remaining());
+        assertTrue(ChannelCompressor.isText(frame));
+        assertEquals(payload, compressor.decode(frame));
+        assertEquals(0, payload.position());
+        assertEquals(1, compressor.getDeflatedFrames());
+        compressor.close();
+    }
+
+    @Test
+    public void smallPayloadSentAsIs() throws DataFormatException {
+        ChannelCompressor compressor = new ChannelCompressor(options(256));
+        ByteBuffer payload = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        ByteBuffer frame = compressor.encode(payload, false);
+        assertEquals(4, frame.remaining());
+        assertEquals(0, frame.get(0));
+        assertFalse(ChannelCompressor.isText(frame));
+        assertEquals(payload, compressor.decode(frame));
+        assertEquals(0, compressor.getDeflatedFrames());
+        compressor.close();
+    }
+
+    @Test
+    public void slicedPayload() throws DataFormatException {
+        ChannelCompressor compressor = new ChannelCompressor(options(16));
+        ByteBuffer whole = repeated("abcd", 100);
+        ByteBuffer payload = whole.position(8).limit(208).slice();
+        assertEquals(payload, compressor.decode(compressor.encode(payload, false)));
+        compressor.close();
+    }
+
+    @Test
+    public void dictionary() throws DataFormatException {
+        byte[] dictionary = "{\"symbol\":\"EURUSD\",\"bid\":,\"ask\":}".getBytes(StandardCharsets.UTF_8);
+        CompressionOptions options = options(16);
+        options.setDictionary(dictionary);
+        ChannelCompressor sender = new ChannelCompressor(options);
+        ChannelCompressor receiver = new ChannelCompressor(options);
+        ByteBuffer payload = repeated("{\"symbol\":\"EURUSD\",\"bid\":1.1,\"ask\":1.2}", 4);
+        ByteBuffer frame = sender.encode(payload, true);
+        assertEquals(payload, receiver.decode(frame));
+
+        // a receiver without the dictionary can not inflate the frame
+        ChannelCompressor plain = new ChannelCompressor(options(16));
+        assertThrows(DataFormatException.class, () -> plain.decode(frame));
+        sender.close();
+        receiver.close();
+        plain.close();
+    }
+
+    @Test
+    public void rejectsMalformedHeaders() {
+        ChannelCompressor compressor = new ChannelCompressor(options(16));
+        assertThrows(DataFormatException.class, () -> compressor.decode(ByteBuffer.allocate(0)));
+        // deflated flag without a length
+        assertThrows(DataFormatException.class, () -> compressor.decode(ByteBuffer.wrap(new byte[]{ChannelCompressor.FLAG_DEFLATED, 0, 0})));
+        ByteBuffer negative = ByteBuffer.allocate(8).put(ChannelCompressor.FLAG_DEFLATED).putInt(-1).flip();
+        assertThrows(DataFormatException.class, () -> compressor.decode(negative));
+        compressor.close();
+    }
+
+    @Test
+    public void rejectsFramesInflatingBeyondMaximum() {
+        ChannelCompressor sender = new ChannelCompressor(options(16));
+        CompressionOptions options = options(16);
+        options.setMaxInflatedSize(1000);
+        ChannelCompressor receiver = new ChannelCompressor(options);
+        ByteBuffer frame = sender.encode(ByteBuffer.allocate(2000), false);
+        assertThrows(DataFormatException.class, () -> receiver.decode(frame));
+        sender.close();
+        receiver.close();
+    }
+
+    @Test
+    public void rejectsTruncatedFrames() {
+        ChannelCompressor compressor = new ChannelCompressor(options(16));
+        ByteBuffer frame = compressor.encode(repeated("truncated ", 100), true);
+        ByteBuffer truncated = frame.limit(frame.limit() / 2);
+        assertThrows(DataFormatException.class, () -> compressor.decode(truncated));
+        compressor.close();
+    }
+
+    @Test
+    public void closedCompressorReturnsNull() throws DataFormatException {
+        ChannelCompressor compressor = new ChannelCompressor(options(16));
+        ByteBuffer frame = compressor.encode(repeated("closed ", 100), true);
+        compressor.close();
+        compressor.close();
+        assertNull(compressor.encode(repeated("closed ", 100), true));
+        assertNull(compressor.decode(frame));
+    }
+}
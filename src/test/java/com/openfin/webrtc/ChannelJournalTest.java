@@ -0,0 +1,134 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private JournalOptions options(int maxBytes, long retentionMillis) {
+        JournalOptions options = new JournalOptions();
+        options.setDirectory(this.directory.toString());
+        options.setMaxBytes(maxBytes);
+        options.setRetentionMillis(retentionMillis);
+        return options;
+    }
+
+    private static ByteBuffer frame(long sequence, int size) {
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        frame.putLong(0, sequence);
+        return frame;
+    }
+
+    private static List<Long> replay(ChannelJournal journal, long after) throws Exception {
+        List<Long> sequences = new ArrayList<>();
+        journal.lock();
+        try {
+            journal.replay(after, frame -> sequences.add(frame.getLong(frame.position())));
+        } finally {
+            journal.unlock();
+        }
+        return sequences;
+    }
+
+    private static void append(ChannelJournal journal, long first, long last, int size) {
+        journal.lock();
+        try {
+            for (long s = first; s <= last; s++) {
+                journal.append(s, frame(s, size));
+            }
+        } finally {
+            journal.unlock();
+        }
+    }
+
+    @Test
+    public void replaysFramesAfterSequence() throws Exception {
+        ChannelJournal journal = ChannelJournal.attach(this.directory.resolve("journal"), options(64 * 1024, 0), null);
+        append(journal, 1, 10, 100);
+        assertEquals(10, journal.getLastSequence());
+        assertEquals(List.of(8L, 9L, 10L), replay(journal, 7));
+        assertEquals(List.of(), replay(journal, 10));
+        journal.detach(null);
+    }
+
+    @Test
+    public void wrapDropsOldestFrames() throws Exception {
+        ChannelJournal journal = ChannelJournal.attach(this.directory.resolve("journal"), options(4096, 0), null);
+        // records of 128 bytes, 32 fit in the journal
+        append(journal, 1, 100, 104);
+        List<Long> replayed = replay(journal, 0);
+        assertEquals(32, replayed.size());
+        assertEquals(69L, (long) replayed.get(0));
+        assertEquals(100L, (long) replayed.get(31));
+        // records of 200 bytes do not divide the journal, so it is padded
+        append(journal, 101, 150, 176);
+        replayed = replay(journal, 0);
+        assertEquals(150L, (long) replayed.get(replayed.size() - 1));
+        for (int i = 1; i < replayed.size(); i++) {
+            assertEquals(replayed.get(i - 1) + 1, (long) replayed.get(i));
+        }
+        assertTrue(replayed.size() >= 4096 / 200 - 1);
+        journal.detach(null);
+    }
+
+    @Test
+    public void retentionDropsExpiredFrames() throws Exception {
+        ChannelJournal journal = ChannelJournal.attach(this.directory.resolve("journal"), options(64 * 1024, 50), null);
+        append(journal, 1, 5, 100);
+        Thread.sleep(100);
+        assertEquals(List.of(), replay(journal, 0));
+        append(journal, 6, 7, 100);
+        assertEquals(List.of(6L, 7L), replay(journal, 0));
+        journal.detach(null);
+    }
+
+    @Test
+    public void reopensAfterDetach() throws Exception {
+        Path path = this.directory.resolve("journal");
+        ChannelJournal journal = ChannelJournal.attach(path, options(64 * 1024, 0), null);
+        append(journal, 1, 5, 100);
+        journal.setLastTransmitted(4);
+        journal.setLastReceived(9);
+        journal.detach(null);
+
+        ChannelJournal reopened = ChannelJournal.attach(path, options(64 * 1024, 0), null);
+        assertNotSame(journal, reopened);
+        assertEquals(5, reopened.getLastSequence());
+        assertEquals(4, reopened.getLastTransmitted());
+        assertEquals(9, reopened.getLastReceived());
+        assertEquals(List.of(5L), replay(reopened, 4));
+        reopened.detach(null);
+    }
+
+    @Test
+    public void sharedByAttachedChannels() throws Exception {
+        Path path = this.directory.resolve("journal");
+        ChannelJournal first = ChannelJournal.attach(path, options(64 * 1024, 0), null);
+        ChannelJournal second = ChannelJournal.attach(path, options(64 * 1024, 0), null);
+        assertSame(first, second);
+        first.detach(null);
+        second.detach(null);
+    }
+
+    @Test
+    public void rejectsFramesLargerThanHalfTheJournal() throws Exception {
+        ChannelJournal journal = ChannelJournal.attach(this.directory.resolve("journal"), options(4096, 0), null);
+        journal.lock();
+        try {
+            assertThrows(IllegalArgumentException.class, () -> journal.append(1, ByteBuffer.allocate(2048)));
+        } finally {
+            journal.unlock();
+        }
+        journal.detach(null);
+    }
+}
@@ -0,0 +1,101 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelMessageTest {
+    private static final String[] MESSAGES = { "", "{\"payload\":\"0008\",\"id\":1}", "\u00e9t\u00e9 \u20ac \uD83D\uDE00" };
+
+    private static ByteBuffer heap(byte[] bytes) {
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Slice of a larger array, with an array offset and a position that are not 0
+     */
+    private static ByteBuffer sliced(byte[] bytes) {
+        byte[] padded = new byte[bytes.length + 16];
+        Arrays.fill(padded, (byte) '#');
+        System.arraycopy(bytes, 0, padded, 8, bytes.length);
+        return ByteBuffer.wrap(padded, 4, bytes.length + 8).slice().position(4).limit(4 + bytes.length);
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    }
+
+    private static void check(String expected, ByteBuffer data, boolean binary) {
+        byte[] bytes = expected.getBytes(StandardCharsets.UTF_8);
+        int position = data.position();
+        ChannelMessage message = new ChannelMessage();
+        message.set(data, binary);
+        assertEquals(binary, message.isBinary());
+        assertEquals(bytes.length, message.size());
+        ByteBuffer view = message.getData();
+        assertTrue(view.isReadOnly());
+        byte[] copy = new byte[view.remaining()];
+        view.get(copy);
+        assertArrayEquals(bytes, copy);
+        // the next listener sees the whole message again
+        message.rewind();
+        assertEquals(bytes.length, message.getData().remaining());
+        assertEquals(expected, message.getText());
+        assertSame(message.getText(), message.getText());
+        assertEquals(position, data.position(), "received buffer is not changed");
+
+        ChannelMessage kept = message.copy();
+        message.clear();
+        assertEquals(expected, kept.getText());
+        assertEquals(binary, kept.isBinary());
+        assertEquals(bytes.length, kept.size());
+    }
+
+    @Test
+    public void heapBuffers() {
+        for (String expected : MESSAGES) {
+            check(expected, heap(expected.getBytes(StandardCharsets.UTF_8)), false);
+            check(expected, heap(expected.getBytes(StandardCharsets.UTF_8)), true);
+        }
+    }
+
+    @Test
+    public void slicedBuffers() {
+        for (String expected : MESSAGES) {
+            check(expected, sliced(expected.getBytes(StandardCharsets.UTF_8)), false);
+            check(expected, sliced(expected.getBytes(StandardCharsets.UTF_8)), true);
+        }
+    }
+
+    @Test
+    public void directBuffers() {
+        for (String expected : MESSAGES) {
+            check(expected, direct(expected.getBytes(StandardCharsets.UTF_8)), false);
+            check(expected, direct(expected.getBytes(StandardCharsets.UTF_8)), true);
+        }
+    }
+
+    @Test
+    public void zeroLength() {
+        ChannelMessage message = new ChannelMessage();
+        message.set(ByteBuffer.allocate(0), false);
+        assertEquals(0, message.size());
+        assertEquals("", message.getText());
+        assertEquals(0, message.copy().size());
+    }
+
+    @Test
+    public void directTextAfterLargerMessage() {
+        ChannelMessage message = new ChannelMessage();
+        String large = "x".repeat(4096);
+        message.set(direct(large.getBytes(StandardCharsets.UTF_8)), false);
+        assertEquals(large, message.getText());
+        // the scratch array of the larger message is reused
+        message.set(direct("small".getBytes(StandardCharsets.UTF_8)), false);
+        assertEquals("small", message.getText());
+    }
+}
@@ -0,0 +1,113 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelRecordingTest {
+
+    @TempDir
+    Path directory;
+
+    private static ByteBuffer text(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(ByteBuffer data) {
+        return StandardCharsets.UTF_8.decode(data.duplicate()).toString();
+    }
+
+    @Test
+    public void varLongs() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        for (long value : new long[] { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1 }) {
+            buffer.clear();
+            ChannelRecorder.putVarLong(buffer, value);
+            buffer.flip();
+            long decoded = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                decoded |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            assertEquals(value, decoded);
+            assertFalse(buffer.hasRemaining());
+            assertTrue(buffer.limit() <= 10);
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        Path path = this.directory.resolve("recording");
+        ByteBuffer large = ByteBuffer.allocate(100 * 1024);
+        for (int i = 0; i < large.capacity(); i++) {
+            large.put(i, (byte) i);
+        }
+        try (ChannelRecorder recorder = new ChannelRecorder(path, 4096)) {
+            recorder.record("quotes", true, text("{\"id\":1}"), false);
+            recorder.record("orders", false, ByteBuffer.wrap(new byte[] { 1, 2, 3 }), true);
+            recorder.record("quotes", true, large, true);
+            recorder.record("quotes", false, ByteBuffer.allocate(0), false);
+            assertEquals(4, recorder.getMessages());
+        }
+        try (ChannelRecording recording = new ChannelRecording(path)) {
+            assertTrue(recording.getStartTimeMillis() > 0);
+            assertTrue(recording.next());
+            assertEquals("quotes", recording.getChannel());
+            assertTrue(recording.isOutbound());
+            assertFalse(recording.isBinary());
+            assertEquals("{\"id\":1}", text(recording.getData()));
+            long time = recording.getTimeNanos();
+
+            assertTrue(recording.next());
+            assertEquals("orders", recording.getChannel());
+            assertFalse(recording.isOutbound());
+            assertTrue(recording.isBinary());
+            assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), recording.getData());
+            assertTrue(recording.getTimeNanos() >= time);
+
+            assertTrue(recording.next());
+            assertEquals("quotes", recording.getChannel());
+            assertEquals(large.rewind(), recording.getData());
+
+            assertTrue(recording.next());
+            assertEquals(0, recording.getData().remaining());
+            assertFalse(recording.next());
+        }
+    }
+
+    @Test
+    public void truncatedRecordEndsRecording() throws IOException {
+        Path path = this.directory.resolve("recording");
+        try (ChannelRecorder recorder = new ChannelRecorder(path)) {
+            recorder.record("quotes", true, text("first"), false);
+            recorder.record("quotes", true, text("second message"), false);
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            file.truncate(file.size() - 4);
+        }
+        try (ChannelRecording recording = new ChannelRecording(path)) {
+            assertTrue(recording.next());
+            assertEquals("first", text(recording.getData()));
+            assertFalse(recording.next());
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Path path = this.directory.resolve("other");
+        Files.write(path, new byte[64]);
+        assertThrows(IOException.class, () -> new ChannelRecording(path));
+    }
+}
@@ -0,0 +1,110 @@
+package com.openfin.webrtc;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelRpcTest {
+
+    @Test
+    public void matchesCallsById() {
+        ChannelRpc.PendingCalls calls = new ChannelRpc.PendingCalls(8);
+        ChannelRpc.PendingCall first = new ChannelRpc.PendingCall();
+        ChannelRpc.PendingCall second = new ChannelRpc.PendingCall();
+        assertEquals(1, calls.add(first));
+        assertEquals(2, calls.add(second));
+        assertSame(first, calls.get(1));
+        assertSame(second, calls.get(2));
+        assertNull(calls.get(3));
+        assertNull(calls.get(0));
+        assertNull(calls.get(-1));
+        // same slot as call 1
+        assertNull(calls.get(9));
+        assertEquals(2, calls.size());
+
+        assertTrue(calls.remove(first));
+        assertFalse(calls.remove(first));
+        assertNull(calls.get(1));
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    public void rejectsCallsBeyondMaximum() {
+        ChannelRpc.PendingCalls calls = new ChannelRpc.PendingCalls(3);
+        List<ChannelRpc.PendingCall> pending = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ChannelRpc.PendingCall call = new ChannelRpc.PendingCall();
+            assertTrue(calls.add(call) > 0);
+            pending.add(call);
+        }
+        assertEquals(-1, calls.add(new ChannelRpc.PendingCall()));
+        assertEquals(3, calls.size());
+        calls.remove(pending.get(1));
+        assertTrue(calls.add(new ChannelRpc.PendingCall()) > 0);
+    }
+
+    @Test
+    public void skipsSlotsOfOlderCalls() {
+        ChannelRpc.PendingCalls calls = new ChannelRpc.PendingCalls(4);
+        ChannelRpc.PendingCall slow = new ChannelRpc.PendingCall();
+        assertEquals(1, calls.add(slow));
+        long lastId = 1;
+        for (int i = 0; i < 20; i++) {
+            ChannelRpc.PendingCall call = new ChannelRpc.PendingCall();
+            long id = calls.add(call);
+            assertTrue(id > lastId);
+            // ids in the slot of the slow call are skipped
+            assertTrue(id % 4 != 1);
+            assertSame(call, calls.get(id));
+            assertTrue(calls.remove(call));
+            lastId = id;
+        }
+        assertSame(slow, calls.get(1));
+        assertNull(calls.get(5));
+        final int[] failed = new int[1];
+        calls.forEach(call -> failed[0]++);
+        assertEquals(1, failed[0]);
+    }
+
+    @Test
+    public void respondsToRequests() {
+        Map<String, RpcAction> actions = Map.of(
+                "echo", (action, payload) -> payload,
+                "fail", (action, payload) -> {
+                    throw new Exception("failed");
+                });
+        JSONObject payload = new JSONObject().put("value", 42);
+        JSONObject response = ChannelRpc.createResponse(actions,
+                new JSONObject().put("rpc", "request").put("cid", 7).put("action", "echo").put("payload", payload));
+        assertEquals("response", response.getString("rpc"));
+        assertEquals(7, response.getLong("cid"));
+        assertEquals(42, response.getJSONObject("payload").getInt("value"));
+
+        response = ChannelRpc.createResponse(actions, new JSONObject().put("rpc", "request").put("cid", 8).put("action", "fail"));
+        assertEquals("error", response.getString("rpc"));
+        assertEquals(8, response.getLong("cid"));
+        assertEquals("failed", response.getString("message"));
+    }
+
+    @Test
+    public void repliesErrorToMalformedRequests() {
+        Map<String, RpcAction> actions = Map.of("echo", (action, payload) -> payload);
+        JSONObject response = ChannelRpc.createResponse(actions, new JSONObject().put("rpc", "request").put("cid", 3));
+        assertEquals("error", response.getString("rpc"));
+        assertEquals(3, response.getLong("cid"));
+        assertEquals("Request without action", response.getString("message"));
+
+        response = ChannelRpc.createResponse(actions, new JSONObject().put("rpc", "request").put("cid", 4).put("action", "missing"));
+        assertEquals("error", response.getString("rpc"));
+        assertEquals("No action registered for missing", response.getString("message"));
+
+        // nothing to reply to without a call id
+        assertNull(ChannelRpc.createResponse(actions, new JSONObject().put("rpc", "request").put("action", "echo")));
+        assertNull(ChannelRpc.createResponse(actions, new JSONObject().put("rpc", "request").put("cid", "x").put("action", "echo")));
+    }
+}
@@ -0,0 +1,129 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntObjectMapTest {
+
+    /**
+     * @return keys whose home slot is the slot, in a map of the same capacity
+     */
+    private static List<Integer> keysInSlot(IntObjectMap<?> map, int slot, int count) {
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 0; keys.size() < count; key++) {
+            if (map.slotOf(key) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void putGetRemove() {
+        IntObjectMap<String> map = new IntObjectMap<>(4);
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(-2, "minus two"));
+        assertEquals("one", map.put(1, "uno"));
+        assertEquals("uno", map.get(1));
+        assertEquals("minus two", map.get(-2));
+        assertNull(map.get(3));
+        assertEquals(2, map.size());
+        assertEquals("uno", map.remove(1));
+        assertNull(map.remove(1));
+        assertNull(map.get(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void collidingKeys() {
+        IntObjectMap<String> map = new IntObjectMap<>(4);
+        List<Integer> keys = keysInSlot(map, 2, 3);
+        for (int key : keys) {
+            map.put(key, "v" + key);
+        }
+        for (int key : keys) {
+            assertEquals("v" + key, map.get(key));
+        }
+        // removing the head of the probe sequence keeps the others reachable
+        assertEquals("v" + keys.get(0), map.remove(keys.get(0)));
+        assertNull(map.get(keys.get(0)));
+        assertEquals("v" + keys.get(1), map.get(keys.get(1)));
+        assertEquals("v" + keys.get(2), map.get(keys.get(2)));
+        assertEquals("v" + keys.get(1), map.remove(keys.get(1)));
+        assertEquals("v" + keys.get(2), map.get(keys.get(2)));
+    }
+
+    @Test
+    public void removeAcrossWrapAround() {
+        // 8 slots, keys at home in the last one wrap to slots 0 and 1
+        IntObjectMap<String> map = new IntObjectMap<>(4);
+        List<Integer> keys = keysInSlot(map, 7, 3);
+        for (int key : keys) {
+            map.put(key, "v" + key);
+        }
+        assertEquals(3, map.size());
+        assertEquals("v" + keys.get(0), map.remove(keys.get(0)));
+        assertEquals("v" + keys.get(1), map.get(keys.get(1)));
+        assertEquals("v" + keys.get(2), map.get(keys.get(2)));
+        // a key at home in slot 0 must not be shifted before its home
+        int home0 = keysInSlot(map, 0, 1).get(0);
+        map.put(home0, "home0");
+        assertEquals("v" + keys.get(2), map.remove(keys.get(2)));
+        assertEquals("home0", map.get(home0));
+        assertEquals("v" + keys.get(1), map.get(keys.get(1)));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void resize() {
+        IntObjectMap<Integer> map = new IntObjectMap<>(1);
+        for (int key = 0; key < 1000; key++) {
+            map.put(key * 31, key);
+        }
+        assertEquals(1000, map.size());
+        for (int key = 0; key < 1000; key++) {
+            assertEquals(key, map.get(key * 31));
+        }
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        IntObjectMap<String> map = new IntObjectMap<>(4);
+        map.put(1, "one");
+        IntObjectMap<String> copy = map.copy();
+        copy.put(2, "two");
+        copy.remove(1);
+        assertEquals("one", map.get(1));
+        assertNull(map.get(2));
+        assertEquals(1, map.size());
+        assertEquals("two", copy.get(2));
+        assertNull(copy.get(1));
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(42);
+        IntObjectMap<Integer> map = new IntObjectMap<>(2);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(200) - 100;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = -100; key < 100; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
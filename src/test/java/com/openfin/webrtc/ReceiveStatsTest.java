@@ -0,0 +1,103 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReceiveStatsTest {
+    private static final byte[] KEY = "\"id\"".getBytes(StandardCharsets.UTF_8);
+
+    private static long findId(String text) {
+        ByteBuffer data = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        long id = ReceiveStats.findId(data, KEY);
+        assertEquals(0, data.position());
+        return id;
+    }
+
+    @Test
+    public void findsId() {
+        assertEquals(42, findId("{\"id\":42}"));
+        assertEquals(7, findId("{\"payload\":\"0008\",\"id\":7}"));
+        assertEquals(12, findId("{ \"id\" :\t 12 , \"x\":1}"));
+        assertEquals(0, findId("{\"id\":0}"));
+        assertEquals(Long.parseLong("1234567890123456789"), findId("{\"id\":1234567890123456789}"));
+    }
+
+    @Test
+    public void skipsOtherFields() {
+        assertEquals(5, findId("{\"uid\":3,\"id\":5}"));
+        assertEquals(5, findId("{\"idx\":3,\"id\":5}"));
+        assertEquals(5, findId("{\"name\":\"id\",\"id\":5}"));
+    }
+
+    @Test
+    public void noId() {
+        assertEquals(ReceiveStats.NO_ID, findId(""));
+        assertEquals(ReceiveStats.NO_ID, findId("{\"id\""));
+        assertEquals(ReceiveStats.NO_ID, findId("{\"id\":"));
+        assertEquals(ReceiveStats.NO_ID, findId("{\"id\":\"5\"}"));
+        assertEquals(ReceiveStats.NO_ID, findId("{\"id\":-5}"));
+        assertEquals(ReceiveStats.NO_ID, findId("{\"other\":5}"));
+    }
+
+    @Test
+    public void slicedBuffer() {
+        byte[] bytes = "xx{\"id\":9}{\"id\":8}".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer data = ByteBuffer.wrap(bytes, 2, 8).slice();
+        assertEquals(9, ReceiveStats.findId(data, KEY));
+        data = ByteBuffer.wrap(bytes).position(10);
+        assertEquals(8, ReceiveStats.findId(data, KEY));
+    }
+
+    private static ReceiveStats record(long... ids) {
+        ReceiveStats stats = new ReceiveStats();
+        for (long id : ids) {
+            stats.record(System.nanoTime(), 10, id);
+        }
+        return stats;
+    }
+
+    @Test
+    public void lateIdsFillTheirGap() {
+        ReceiveStats stats = record(1, 2, 5, 3, 6);
+        assertEquals(1, stats.getMissing());
+        assertEquals(1, stats.getReordered());
+        assertEquals(6, stats.getLastId());
+    }
+
+    @Test
+    public void duplicatesDoNotHideLoss() {
+        ReceiveStats stats = record(1, 2, 5, 2, 2, 5);
+        assertEquals(2, stats.getMissing());
+        assertEquals(0, stats.getReordered());
+        assertEquals(3, stats.getDuplicates());
+        assertEquals(6, stats.getMessages());
+    }
+
+    @Test
+    public void lateFirstIdIsNotAStartOver() {
+        ReceiveStats stats = record(2, 3, 1, 4);
+        assertEquals(0, stats.getMissing());
+        assertEquals(4, stats.getLastId());
+    }
+
+    @Test
+    public void startOver() {
+        ReceiveStats stats = record(1, 2, 4, 1, 2, 3, 5);
+        assertEquals(2, stats.getMissing());
+        assertEquals(5, stats.getLastId());
+        assertEquals(0, stats.getDuplicates());
+    }
+
+    @Test
+    public void unnumberedMessages() {
+        ReceiveStats stats = record(ReceiveStats.NO_ID, ReceiveStats.NO_ID);
+        assertEquals(ReceiveStats.NO_ID, stats.getLastId());
+        assertEquals(0, stats.getMissing());
+        assertEquals(2, stats.getMessages());
+        assertEquals(20, stats.getBytes());
+    }
+}
@@ -0,0 +1,31 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceTrackerTest {
+
+    @Test
+    public void reportsHandlesUntilClosed() {
+        long channels = ResourceTracker.getOpenChannels();
+        long connections = ResourceTracker.getOpenConnections();
+        int open = ResourceTracker.reportOpen();
+        ResourceTracker.Handle channel = ResourceTracker.trackChannel("tracked");
+        ResourceTracker.Handle connection = ResourceTracker.trackConnection("tracked");
+        assertEquals(channels + 1, ResourceTracker.getOpenChannels());
+        assertEquals(connections + 1, ResourceTracker.getOpenConnections());
+        assertTrue(ResourceTracker.getOpenResources().contains("Channel tracked"));
+        assertTrue(ResourceTracker.getOpenResources().contains("Connection tracked"));
+        assertEquals(open + 2, ResourceTracker.reportOpen());
+
+        assertTrue(channel.close());
+        assertFalse(channel.close());
+        assertTrue(channel.isClosed());
+        assertFalse(ResourceTracker.getOpenResources().contains("Channel tracked"));
+        assertEquals(channels, ResourceTracker.getOpenChannels());
+        assertTrue(connection.close());
+        assertEquals(connections, ResourceTracker.getOpenConnections());
+        assertEquals(open, ResourceTracker.reportOpen());
+    }
+}
@@ -0,0 +1,100 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequenceTrackerTest {
+
+    @Test
+    public void inOrder() {
+        SequenceTracker tracker = new SequenceTracker(64);
+        for (long s = 1; s <= 1000; s++) {
+            assertEquals(0, tracker.onSequence(s));
+        }
+        assertEquals(1000, tracker.getHighestSequence());
+        assertEquals(0, tracker.getGaps());
+        assertEquals(0, tracker.getLost());
+        assertEquals(0, tracker.getReordered());
+    }
+
+    @Test
+    public void gapFilledWithinWindow() {
+        SequenceTracker tracker = new SequenceTracker(64);
+        tracker.onSequence(1);
+        assertEquals(2, tracker.onSequence(4));
+        assertEquals(0, tracker.onSequence(3));
+        assertEquals(0, tracker.onSequence(2));
+        assertEquals(2, tracker.getGaps());
+        assertEquals(2, tracker.getReordered());
+        assertEquals(2, tracker.getMaxReorderDepth());
+        // the filled gap is not lost when it slides out, only 5 to 136 that are behind the window of 200
+        tracker.onSequence(200);
+        assertEquals(132, tracker.getLost());
+    }
+
+    @Test
+    public void duplicates() {
+        SequenceTracker tracker = new SequenceTracker(64);
+        tracker.onSequence(1);
+        tracker.onSequence(2);
+        tracker.onSequence(2);
+        tracker.onSequence(1);
+        assertEquals(2, tracker.getDuplicates());
+        assertEquals(0, tracker.getReordered());
+        assertEquals(4, tracker.getReceived());
+    }
+
+    @Test
+    public void lostWhenSlidingOutOfWindow() {
+        SequenceTracker tracker = new SequenceTracker(64);
+        tracker.onSequence(1);
+        tracker.onSequence(3);
+        for (long s = 4; s <= 65; s++) {
+            tracker.onSequence(s);
+            assertEquals(0, tracker.getLost(), "2 is still in the window at " + s);
+        }
+        tracker.onSequence(66);
+        assertEquals(1, tracker.getLost());
+        // arriving after sliding out is late, not reordered
+        tracker.onSequence(2);
+        assertEquals(1, tracker.getLate());
+        assertEquals(0, tracker.getReordered());
+    }
+
+    @Test
+    public void jumpBeyondWindow() {
+        SequenceTracker tracker = new SequenceTracker(64);
+        tracker.onSequence(1);
+        assertEquals(999, tracker.onSequence(1001));
+        assertEquals(999, tracker.getGaps());
+        // 938 to 1000 are still in the window
+        assertEquals(936, tracker.getLost());
+        assertEquals(0, tracker.onSequence(1002));
+        assertEquals(937, tracker.getLost());
+    }
+
+    @Test
+    public void windowRoundedToWords() {
+        SequenceTracker tracker = new SequenceTracker(100);
+        tracker.onSequence(1);
+        tracker.onSequence(3);
+        for (long s = 4; s <= 129; s++) {
+            tracker.onSequence(s);
+        }
+        assertEquals(0, tracker.getLost());
+        tracker.onSequence(130);
+        assertEquals(1, tracker.getLost());
+    }
+
+    @Test
+    public void startAfter() {
+        SequenceTracker tracker = new SequenceTracker(64);
+        tracker.startAfter(100);
+        assertEquals(0, tracker.onSequence(101));
+        assertEquals(0, tracker.getGaps());
+        // only before the first sequence number
+        tracker.startAfter(500);
+        assertEquals(101, tracker.getHighestSequence());
+    }
+}
@@ -0,0 +1,100 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedMemoryRingTest {
+    private static final int CAPACITY = 1024;
+
+    @TempDir
+    Path directory;
+
+    private static ByteBuffer message(int size, int seed) {
+        ByteBuffer data = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            data.put((byte) (seed + i));
+        }
+        return data.flip();
+    }
+
+    private static List<ByteBuffer> pollAll(SharedMemoryRing ring, List<Boolean> binaries) {
+        List<ByteBuffer> messages = new ArrayList<>();
+        ring.poll((data, binary) -> {
+            // data is only valid during the call
+            messages.add(ByteBuffer.allocate(data.remaining()).put(data).flip());
+            binaries.add(binary);
+        }, Integer.MAX_VALUE);
+        return messages;
+    }
+
+    @Test
+    public void wrapsWithPadding() throws IOException {
+        Path path = this.directory.resolve("ring");
+        SharedMemoryRing producer = SharedMemoryRing.create(path, CAPACITY);
+        SharedMemoryRing consumer = SharedMemoryRing.open(path);
+        // records of 112 bytes leave 16 bytes at the end of the ring, which are padded
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(producer.offer(message(100, round + i), (i & 1) == 0));
+            }
+            List<Boolean> binaries = new ArrayList<>();
+            List<ByteBuffer> messages = pollAll(consumer, binaries);
+            assertEquals(3, messages.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(message(100, round + i), messages.get(i));
+                assertEquals((i & 1) == 0, binaries.get(i));
+            }
+            assertEquals(0, producer.getUsedBytes());
+        }
+    }
+
+    @Test
+    public void fullRingRefusesUntilRead() throws IOException {
+        Path path = this.directory.resolve("ring");
+        SharedMemoryRing producer = SharedMemoryRing.create(path, CAPACITY);
+        SharedMemoryRing consumer = SharedMemoryRing.open(path);
+        int written = 0;
+        while (producer.offer(message(120, written), true)) {
+            written++;
+        }
+        assertEquals(CAPACITY / 128, written);
+        assertEquals(CAPACITY, producer.getUsedBytes());
+        assertEquals(1, consumer.poll((data, binary) -> { }, 1));
+        assertTrue(producer.offer(message(120, written), true));
+        List<ByteBuffer> messages = pollAll(consumer, new ArrayList<>());
+        assertEquals(written, messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals(message(120, i + 1), messages.get(i));
+        }
+    }
+
+    @Test
+    public void messageSizes() throws IOException {
+        Path path = this.directory.resolve("ring");
+        SharedMemoryRing producer = SharedMemoryRing.create(path, CAPACITY);
+        SharedMemoryRing consumer = SharedMemoryRing.open(path);
+        assertThrows(IllegalArgumentException.class, () -> producer.offer(message(producer.getMaxMessageSize() + 1, 0), true));
+        for (int size = 0; size <= producer.getMaxMessageSize(); size += 37) {
+            assertTrue(producer.offer(message(size, size), true));
+            List<ByteBuffer> messages = pollAll(consumer, new ArrayList<>());
+            assertEquals(1, messages.size());
+            assertEquals(message(size, size), messages.get(0));
+        }
+    }
+
+    @Test
+    public void openRejectsOtherFiles() throws IOException {
+        Path path = this.directory.resolve("other");
+        Files.write(path, new byte[CAPACITY]);
+        assertThrows(IOException.class, () -> SharedMemoryRing.open(path));
+    }
+}
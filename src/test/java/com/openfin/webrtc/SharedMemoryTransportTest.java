@@ -0,0 +1,47 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedMemoryTransportTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void sendFailsWhenPeerDoesNotRead() throws Exception {
+        SharedMemoryOptions options = new SharedMemoryOptions();
+        options.setRingCapacity(1024);
+        options.setSendTimeoutMillis(50);
+        SharedMemoryTransport transport = new SharedMemoryTransport(this.directory, "session", "test", true, options);
+        ByteBuffer data = ByteBuffer.allocate(100);
+        // nothing reads the ring, so it fills up
+        for (int i = 0; i < 9; i++) {
+            transport.send(data.duplicate(), true);
+        }
+        long start = System.nanoTime();
+        assertThrows(TimeoutException.class, () -> transport.send(data.duplicate(), true));
+        assertTrue(System.nanoTime() - start >= 50_000_000L);
+        transport.close();
+    }
+
+    @Test
+    public void sendFailsWhenClosed() throws Exception {
+        SharedMemoryOptions options = new SharedMemoryOptions();
+        options.setRingCapacity(1024);
+        options.setSendTimeoutMillis(0);
+        SharedMemoryTransport transport = new SharedMemoryTransport(this.directory, "session", "test", true, options);
+        ByteBuffer data = ByteBuffer.allocate(100);
+        for (int i = 0; i < 9; i++) {
+            transport.send(data.duplicate(), true);
+        }
+        transport.close();
+        assertThrows(IllegalStateException.class, () -> transport.send(data.duplicate(), true));
+    }
+}
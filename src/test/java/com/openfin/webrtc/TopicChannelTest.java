@@ -0,0 +1,77 @@
+package com.openfin.webrtc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopicChannelTest {
+
+    /**
+     * @return bytes RTCDataChannel.send would send for a frame written by Channel: the whole array of a heap buffer
+     */
+    private static byte[] sent(ByteBuffer frame) {
+        ByteBuffer exact = Channel.exactFrame(frame);
+        assertTrue(exact.hasArray());
+        return exact.array();
+    }
+
+    @Test
+    public void publishedFramesHaveTheirOwnLength() {
+        ByteBuffer sendBuffer = ByteBuffer.allocate(4096);
+        ByteBuffer longPayload = ByteBuffer.wrap("a longer message of the first topic".getBytes(StandardCharsets.UTF_8));
+        ByteBuffer shortPayload = ByteBuffer.wrap("short".getBytes(StandardCharsets.UTF_8));
+
+        sendBuffer = TopicChannel.encodePublish(sendBuffer, 1, longPayload);
+        byte[] first = sent(sendBuffer);
+        assertEquals(5 + longPayload.remaining(), first.length);
+        assertEquals(0, longPayload.position());
+
+        // the reused buffer still holds the end of the longer frame
+        sendBuffer = TopicChannel.encodePublish(sendBuffer, 2, shortPayload);
+        byte[] second = sent(sendBuffer);
+        assertEquals(5 + shortPayload.remaining(), second.length);
+        ByteBuffer frame = ByteBuffer.wrap(second);
+        assertEquals(3, frame.get());
+        assertEquals(2, frame.getInt());
+        assertEquals("short", StandardCharsets.UTF_8.decode(frame).toString());
+    }
+
+    @Test
+    public void sendBufferGrows() {
+        ByteBuffer sendBuffer = ByteBuffer.allocate(16);
+        ByteBuffer payload = ByteBuffer.allocate(100);
+        ByteBuffer grown = TopicChannel.encodePublish(sendBuffer, 7, payload);
+        assertNotSame(sendBuffer, grown);
+        assertEquals(105, grown.remaining());
+        assertEquals(105, sent(grown).length);
+    }
+
+    @Test
+    public void exactFrames() {
+        ByteBuffer whole = ByteBuffer.wrap(new byte[]{1, 2, 3, 4});
+        assertSame(whole, Channel.exactFrame(whole));
+        ByteBuffer direct = ByteBuffer.allocateDirect(4);
+        assertSame(direct, Channel.exactFrame(direct));
+
+        ByteBuffer partial = ByteBuffer.wrap(new byte[]{1, 2, 3, 4}, 1, 2);
+        ByteBuffer copy = Channel.exactFrame(partial);
+        assertArrayEquals(new byte[]{2, 3}, copy.array());
+        assertEquals(1, partial.position());
+
+        ByteBuffer slice = ByteBuffer.wrap(new byte[]{1, 2, 3, 4}).position(2).slice();
+        assertArrayEquals(new byte[]{3, 4}, Channel.exactFrame(slice).array());
+
+        // array offset 0, but shorter than its array
+        ByteBuffer head = ByteBuffer.wrap(new byte[]{1, 2, 3, 4}).limit(2).slice();
+        assertArrayEquals(new byte[]{1, 2}, Channel.exactFrame(head).array());
+
+        ByteBuffer readOnly = whole.asReadOnlyBuffer();
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, Channel.exactFrame(readOnly).array());
+
+        ByteBuffer empty = ByteBuffer.allocate(8).limit(0);
+        assertEquals(0, Channel.exactFrame(empty).array().length);
+    }
+}